@@ -0,0 +1,58 @@
+package hudson.plugins.clearcase.benchmark;
+
+import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
+import hudson.plugins.clearcase.base.BaseHistoryAction;
+import hudson.plugins.clearcase.history.DefaultFilter;
+import hudson.plugins.clearcase.history.DestroySubBranchFilter;
+import hudson.plugins.clearcase.history.ExcludedRegionsFilter;
+import hudson.plugins.clearcase.history.Filter;
+import hudson.plugins.clearcase.history.FilterChain;
+import hudson.plugins.clearcase.history.HistoryEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Base history action without cleartool, giving the benchmarks access to the steps of the history processing: parsing of the lshistory output,
+ * filtering and merging of the entries in changelog entries.
+ */
+class BenchmarkHistoryAction extends BaseHistoryAction {
+
+    /**
+     * Time window of the merge of the changelog entries, as configured by default.
+     */
+    private static final int MAX_TIME_DIFFERENCE_MILLIS = 1000;
+
+    /**
+     * @return the filters of a typical job, with excluded regions which do not match the elements of the fixtures, so that the entries go through the
+     *         whole chain
+     */
+    static FilterChain createFilterChain() {
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new DefaultFilter());
+        filters.add(new DestroySubBranchFilter());
+        filters.add(ExcludedRegionsFilter.get(new String[] { ".*\\.bak", ".*/generated/.*", ".*\\.tmp" }));
+        return new FilterChain(filters);
+    }
+
+    BenchmarkHistoryAction(Filter filter) {
+        super(null, false, filter, MAX_TIME_DIFFERENCE_MILLIS);
+    }
+
+    List<HistoryEntry> filter(List<HistoryEntry> entries) throws IOException, InterruptedException {
+        return filterEntries(entries);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<ClearCaseChangeLogEntry> merge(List<HistoryEntry> entries) {
+        return (List<ClearCaseChangeLogEntry>) buildChangelog(null, entries);
+    }
+
+    void parse(BufferedReader reader, Collection<HistoryEntry> history) throws IOException, InterruptedException, ParseException {
+        parseLsHistory(reader, history);
+    }
+}
@@ -0,0 +1,66 @@
+package hudson.plugins.clearcase.benchmark;
+
+import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
+import hudson.plugins.clearcase.util.ChangeLogEntryMerger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merges synthetic histories, such as the ones of an integration user delivering many elements with a few comments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ChangeLogEntryMergerBenchmark {
+
+    @Param({ "5" })
+    public int                            comments;
+
+    @Param({ "1000", "10000", "40000" })
+    public int                            entries;
+
+    @Param({ "1", "20" })
+    public int                            users;
+
+    private List<ClearCaseChangeLogEntry> history;
+
+    @Benchmark
+    public List<ClearCaseChangeLogEntry> merge() {
+        return new ChangeLogEntryMerger(0).getMergedList(history);
+    }
+
+    /**
+     * Merging modifies the entries, so each invocation gets a new history, in descending time order like lshistory.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        Random random = new Random(42);
+        long time = System.currentTimeMillis();
+        history = new ArrayList<ClearCaseChangeLogEntry>(entries);
+        for (int i = 0; i < entries; i++) {
+            time -= random.nextInt(10) * 1000L;
+            history.add(new ClearCaseChangeLogEntry(new Date(time), "user" + random.nextInt(users), "checkin", "comment " + random.nextInt(comments),
+                    "vobs/project/src/File" + i + ".java", "/main/" + i));
+        }
+    }
+}
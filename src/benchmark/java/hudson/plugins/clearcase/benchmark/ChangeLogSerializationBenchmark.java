@@ -0,0 +1,135 @@
+package hudson.plugins.clearcase.benchmark;
+
+import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
+import hudson.plugins.clearcase.ClearCaseChangeLogParser;
+import hudson.plugins.clearcase.ClearCaseChangeLogSet;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.digester.Digester;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads and writes multi-megabyte base ClearCase changelogs. The digester benchmark reproduces the rules used before the StAX reader, as a baseline. Run
+ * with <code>-prof gc</code> to compare allocations. The indexed benchmark reads the first page of entries and the authors of a changelog saved with
+ * its index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ChangeLogSerializationBenchmark {
+
+    @Param({ "2000", "20000" })
+    public int                            entries;
+
+    @Param({ "5" })
+    public int                            elementsPerEntry;
+
+    private File                          file;
+    private List<ClearCaseChangeLogEntry> history;
+    private File                          indexedFile;
+    private byte[]                        xml;
+
+    @Benchmark
+    public int firstPageWithIndex() throws IOException, SAXException {
+        ClearCaseChangeLogSet logSet = ClearCaseChangeLogSet.parse(null, indexedFile);
+        int elements = 0;
+        for (ClearCaseChangeLogEntry entry : logSet.getLogs(0, 50)) {
+            elements += entry.getElements().size();
+        }
+        return elements + logSet.getAuthorNames().size();
+    }
+
+    @Benchmark
+    public List<ClearCaseChangeLogEntry> parseWithDigester() throws IOException, SAXException {
+        ArrayList<ClearCaseChangeLogEntry> result = new ArrayList<ClearCaseChangeLogEntry>();
+        Digester digester = new Digester();
+        digester.setClassLoader(ClearCaseChangeLogSet.class.getClassLoader());
+        digester.push(result);
+        digester.addObjectCreate("*/entry", ClearCaseChangeLogEntry.class);
+        digester.addBeanPropertySetter("*/entry/date", "dateStr");
+        digester.addBeanPropertySetter("*/entry/comment");
+        digester.addBeanPropertySetter("*/entry/user");
+        digester.addBeanPropertySetter("*/entry/file");
+        digester.addBeanPropertySetter("*/entry/action");
+        digester.addBeanPropertySetter("*/entry/version");
+        digester.addObjectCreate("*/entry/element", ClearCaseChangeLogEntry.FileElement.class);
+        digester.addBeanPropertySetter("*/entry/element/file");
+        digester.addBeanPropertySetter("*/entry/element/version");
+        digester.addBeanPropertySetter("*/entry/element/action");
+        digester.addBeanPropertySetter("*/entry/element/operation");
+        digester.addSetNext("*/entry/element", "addElement");
+        digester.addSetNext("*/entry", "add");
+        digester.parse(new ByteArrayInputStream(xml));
+        return result;
+    }
+
+    @Benchmark
+    public List<ClearCaseChangeLogEntry> parseWithStax() throws IOException, SAXException {
+        return ((ClearCaseChangeLogSet) new ClearCaseChangeLogParser().parse(null, file)).getLogs();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        ClearCaseChangeLogSet.saveToChangeLog(new NullOutputStream(), history);
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        history = new ArrayList<ClearCaseChangeLogEntry>(entries);
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < entries; i++) {
+            ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry(new Date(time - i * 60000L), "user" + (i % 50), "Fix <defect " + i
+                    + "> & 'cleanup' of the \"component\"");
+            for (int j = 0; j < elementsPerEntry; j++) {
+                entry.addElement(new ClearCaseChangeLogEntry.FileElement("vobs/project/component" + (i % 20) + "/src/File" + j + ".java",
+                        "/main/integration/" + i, "create version", "checkin"));
+            }
+            history.add(entry);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ClearCaseChangeLogSet.saveToChangeLog(out, history);
+        xml = out.toByteArray();
+        file = File.createTempFile("changelog", ".xml");
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try {
+            fileOut.write(xml);
+        } finally {
+            fileOut.close();
+        }
+        indexedFile = File.createTempFile("changelog", ".xml");
+        ClearCaseChangeLogSet.saveToChangeLog(indexedFile, history);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        indexedFile.delete();
+        ChangeLogIndex.getFile(indexedFile).delete();
+    }
+}
@@ -0,0 +1,117 @@
+package hudson.plugins.clearcase.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Synthetic lshistory output of any size, made by repeating the lines of a recorded fixture of the test resources. The error lines of the fixture are
+ * dropped, and the version number of each repeated entry is replaced by the repetition number, so that the entries stay distinct.
+ */
+class HistoryFixture {
+
+    private static final Pattern VERSION_NUMBER = Pattern.compile("[\\\\/](\\d+)\"");
+
+    private final String[]       prefixes;
+    private final String[]       suffixes;
+
+    /**
+     * @param name
+     *            the name of a fixture of the test resources, e.g. ct-lshistory-1.log
+     */
+    HistoryFixture(String name) throws IOException {
+        InputStream in = HistoryFixture.class.getResourceAsStream("/hudson/plugins/clearcase/" + name);
+        List<String> lines;
+        try {
+            lines = IOUtils.readLines(in, "UTF-8");
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        List<String> templates = new ArrayList<String>();
+        for (String line : lines) {
+            if (!line.startsWith("cleartool: Error:")) {
+                templates.add(line);
+            }
+        }
+        prefixes = new String[templates.size()];
+        suffixes = new String[templates.size()];
+        for (int i = 0; i < prefixes.length; i++) {
+            String template = templates.get(i);
+            Matcher matcher = VERSION_NUMBER.matcher(template);
+            int start = -1;
+            int end = -1;
+            while (matcher.find()) {
+                start = matcher.start(1);
+                end = matcher.end(1);
+            }
+            if (start < 0) {
+                prefixes[i] = template;
+            } else {
+                prefixes[i] = template.substring(0, start);
+                suffixes[i] = template.substring(end);
+            }
+        }
+    }
+
+    /**
+     * @return the line at the given index of the synthetic output
+     */
+    String line(long index) {
+        int template = (int) (index % prefixes.length);
+        if (suffixes[template] == null) {
+            return prefixes[template];
+        }
+        return prefixes[template] + (index / prefixes.length) + suffixes[template];
+    }
+
+    /**
+     * @return the first lines of the synthetic output, kept in memory
+     */
+    String[] lines(int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = line(i);
+        }
+        return lines;
+    }
+
+    /**
+     * @return a reader of the first lines of the synthetic output, generated while they are read, so that outputs larger than the heap can be read
+     */
+    Reader open(final long count) {
+        return new Reader() {
+            private String current = "";
+            private long   next;
+            private int    position;
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                while (position == current.length()) {
+                    if (next == count) {
+                        return -1;
+                    }
+                    current = line(next++) + '\n';
+                    position = 0;
+                }
+                int read = Math.min(length, current.length() - position);
+                current.getChars(position, position + read, buffer, offset);
+                position += read;
+                return read;
+            }
+        };
+    }
+}
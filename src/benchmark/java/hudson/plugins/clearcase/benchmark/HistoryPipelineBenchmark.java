@@ -0,0 +1,194 @@
+package hudson.plugins.clearcase.benchmark;
+
+import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
+import hudson.plugins.clearcase.ClearCaseChangeLogSet;
+import hudson.plugins.clearcase.history.FilterChain;
+import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.util.ChangeLogBinaryFile;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.SAXException;
+
+/**
+ * Runs the steps of the history processing of a base ClearCase job on synthetic lshistory outputs made by {@link HistoryFixture}: parsing of the
+ * lines, filtering with a {@link FilterChain}, merging in changelog entries, and saving and reading of the changelog.
+ * <p>
+ * The streaming benchmarks keep no entry, so they run up to 10<sup>7</sup> lines. The other benchmarks keep the entries in memory: give the fork a larger
+ * heap (e.g. <code>-jvmArgs -Xmx4g</code>) for the largest outputs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HistoryPipelineBenchmark {
+
+    /**
+     * Collection which only hands the entries to a blackhole, to parse without keeping the entries.
+     */
+    private static class BlackholeCollection extends AbstractCollection<HistoryEntry> {
+
+        private final Blackhole   blackhole;
+        private final FilterChain filter;
+
+        BlackholeCollection(Blackhole blackhole, FilterChain filter) {
+            this.blackhole = blackhole;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean add(HistoryEntry entry) {
+            blackhole.consume(filter == null || filter.accept(entry));
+            blackhole.consume(entry);
+            return true;
+        }
+
+        @Override
+        public Iterator<HistoryEntry> iterator() {
+            return Collections.<HistoryEntry> emptyIterator();
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Changelog {
+
+        @Param({ "ct-lshistory-1.log", "ct-lshistory-ucm-1.log" })
+        public String              fixture;
+
+        @Param({ "1000", "10000", "100000" })
+        public long                lines;
+
+        private List<HistoryEntry> entries;
+        private File               file;
+        private HistoryFixture     history;
+
+        @Setup
+        public void setUp() throws IOException, InterruptedException, ParseException {
+            history = new HistoryFixture(fixture);
+            entries = new BenchmarkHistoryAction(null).filter(parse(new BenchmarkHistoryAction(null), history, lines));
+            file = File.createTempFile("changelog", ".xml");
+        }
+
+        @TearDown
+        public void tearDown() {
+            file.delete();
+            ChangeLogIndex.getFile(file).delete();
+            ChangeLogBinaryFile.getFile(file).delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Streaming {
+
+        @Param({ "ct-lshistory-1.log", "ct-lshistory-ucm-1.log" })
+        public String          fixture;
+
+        @Param({ "1000", "100000", "10000000" })
+        public long            lines;
+
+        private HistoryFixture history;
+
+        @Setup
+        public void setUp() throws IOException {
+            history = new HistoryFixture(fixture);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Filters {
+
+        private FilterChain filter;
+
+        /**
+         * A new chain for each iteration, so that the statistics of the chain do not grow across iterations.
+         */
+        @Setup(Level.Iteration)
+        public void setUp() {
+            filter = BenchmarkHistoryAction.createFilterChain();
+        }
+    }
+
+    private static List<HistoryEntry> parse(BenchmarkHistoryAction action, HistoryFixture history, long lines) throws IOException, InterruptedException,
+            ParseException {
+        List<HistoryEntry> entries = new ArrayList<HistoryEntry>();
+        action.parse(new BufferedReader(history.open(lines)), entries);
+        return entries;
+    }
+
+    /**
+     * Parses, filters and merges the entries, then saves the changelog with its index and binary copy and reads all its entries back from the XML, as a
+     * build and its changes page do when the changelog has no valid index nor binary copy.
+     */
+    @Benchmark
+    public void endToEnd(Changelog state, Filters filters, Blackhole blackhole) throws IOException, InterruptedException, ParseException, SAXException {
+        BenchmarkHistoryAction action = new BenchmarkHistoryAction(filters.filter);
+        List<ClearCaseChangeLogEntry> changelog = action.merge(action.filter(parse(action, state.history, state.lines)));
+        ClearCaseChangeLogSet.saveToChangeLog(state.file, changelog);
+        // without them, the changelog is read from the XML instead of lazily from the index or from the binary copy
+        ChangeLogIndex.delete(state.file);
+        ChangeLogBinaryFile.delete(state.file);
+        for (ClearCaseChangeLogEntry entry : ClearCaseChangeLogSet.parse(null, state.file).getLogs()) {
+            blackhole.consume(entry);
+        }
+    }
+
+    @Benchmark
+    public List<HistoryEntry> filter(Changelog state, Filters filters) throws IOException, InterruptedException {
+        return new BenchmarkHistoryAction(filters.filter).filter(state.entries);
+    }
+
+    /**
+     * Creates the changelog entries of the parsed entries and merges them with {@link hudson.plugins.clearcase.util.ChangeLogEntryMerger}. The repeated
+     * entries of a fixture share their user, comment and date, so they are merged in a few changelog entries with many elements.
+     */
+    @Benchmark
+    public List<ClearCaseChangeLogEntry> merge(Changelog state) {
+        return new BenchmarkHistoryAction(null).merge(state.entries);
+    }
+
+    /**
+     * Parses the output as it is generated, without keeping the entries.
+     */
+    @Benchmark
+    public void parse(Streaming state, Blackhole blackhole) throws IOException, InterruptedException, ParseException {
+        new BenchmarkHistoryAction(null).parse(new BufferedReader(state.history.open(state.lines)), new BlackholeCollection(blackhole, null));
+    }
+
+    /**
+     * Parses the output as it is generated and filters each entry, without keeping the entries.
+     */
+    @Benchmark
+    public void parseAndFilter(Streaming state, Filters filters, Blackhole blackhole) throws IOException, InterruptedException, ParseException {
+        new BenchmarkHistoryAction(null).parse(new BufferedReader(state.history.open(state.lines)), new BlackholeCollection(blackhole, filters.filter));
+    }
+}
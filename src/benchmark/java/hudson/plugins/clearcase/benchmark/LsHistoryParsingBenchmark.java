@@ -0,0 +1,84 @@
+package hudson.plugins.clearcase.benchmark;
+
+import static hudson.plugins.clearcase.util.OutputFormat.DATE_NUMERIC;
+import static hudson.plugins.clearcase.util.OutputFormat.EVENT;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
+import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
+import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the regular expression of {@link ClearToolFormatHandler#checkLine(String)} with {@link ClearToolFormatTokenizer} on lshistory outputs. The
+ * fixture is read from the test resources and scaled up by {@link HistoryFixture} to the given number of lines.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class LsHistoryParsingBenchmark {
+
+    private static final String[]    HISTORY_FORMAT = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION };
+
+    @Param({ "ct-lshistory-1.log", "ct-lshistory-ucm-1.log" })
+    public String                    fixture;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int                       lines;
+
+    private ClearToolFormatHandler   handler;
+    private String[]                 output;
+    private ClearToolFormatTokenizer tokenizer;
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (String line : output) {
+            Matcher matcher = handler.checkLine(line);
+            if (matcher != null) {
+                blackhole.consume(matcher.group(1));
+                for (int i = 2; i <= HISTORY_FORMAT.length; i++) {
+                    blackhole.consume(matcher.group(i).trim());
+                }
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        handler = new ClearToolFormatHandler(HISTORY_FORMAT);
+        tokenizer = handler.createTokenizer();
+        output = new HistoryFixture(fixture).lines(lines);
+    }
+
+    @Benchmark
+    public void tokenizer(Blackhole blackhole) {
+        for (String line : output) {
+            if (tokenizer.tokenize(line)) {
+                blackhole.consume(tokenizer.field(1));
+                for (int i = 2; i <= HISTORY_FORMAT.length; i++) {
+                    blackhole.consume(tokenizer.trimmedField(i));
+                }
+            }
+        }
+    }
+}
@@ -35,6 +35,7 @@ import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Computer;
 import hudson.model.Hudson;
+import hudson.model.Items;
 import hudson.model.Node;
 import hudson.model.Run;
 import hudson.plugins.clearcase.action.CheckoutAction;
@@ -42,10 +43,14 @@ import hudson.plugins.clearcase.action.SaveChangeLogAction;
 import hudson.plugins.clearcase.history.AbstractHistoryAction;
 import hudson.plugins.clearcase.history.DefaultFilter;
 import hudson.plugins.clearcase.history.DestroySubBranchFilter;
-import hudson.plugins.clearcase.history.FileFilter;
+import hudson.plugins.clearcase.history.ExcludedRegionsFilter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
 import hudson.plugins.clearcase.history.HistoryAction;
+import hudson.plugins.clearcase.history.HistoryWatermark;
+import hudson.plugins.clearcase.history.LoadRuleFilter;
+import hudson.plugins.clearcase.history.PollingCoordinator;
+import hudson.plugins.clearcase.session.ClearToolSessionPool;
 import hudson.plugins.clearcase.ucm.UcmWorkflow;
 import hudson.plugins.clearcase.util.BuildUtils;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
@@ -78,6 +83,9 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -85,6 +93,7 @@ import java.util.regex.Pattern;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.jenkinsci.remoting.Role;
@@ -395,6 +404,9 @@ public abstract class AbstractClearCaseScm extends SCM {
             returnValue = saveChangeLog(build, launcher, listener, changelogFile, clearToolLauncher, variableResolver, saveChangeLogAction,
                     coNormalizedViewName, returnValue, updtFile);
         }
+        if (clearToolLauncher instanceof HudsonClearToolLauncher) {
+            ((HudsonClearToolLauncher) clearToolLauncher).getMetrics().printSummary(logger);
+        }
 
         return returnValue;
     }
@@ -403,23 +415,15 @@ public abstract class AbstractClearCaseScm extends SCM {
         List<Filter> filters = new ArrayList<Filter>();
         filters.add(new DefaultFilter());
 
-        String[] excludedStrings = getExcludedRegionsNormalized();
-
-        if (excludedStrings != null && excludedStrings.length > 0) {
-            for (String s : excludedStrings) {
-                if (!s.equals("")) {
-                    filters.add(new FileFilter(FileFilter.Type.DoesNotContainRegxp, s));
-                }
-            }
+        ExcludedRegionsFilter excludedRegionsFilter = ExcludedRegionsFilter.get(getExcludedRegionsNormalized());
+        if (!excludedRegionsFilter.isEmpty()) {
+            filters.add(excludedRegionsFilter);
         }
 
-        String filterRegexp = "";
         String[] viewPaths = getViewPaths(variableResolver, build, launcher, false);
-        if (viewPaths != null) {
-            filterRegexp = getViewPathsRegexp(viewPaths, launcher.isUnix());
-        }
-        if (StringUtils.isNotEmpty(filterRegexp)) {
-            filters.add(new FileFilter(FileFilter.Type.ContainsRegxp, filterRegexp));
+        LoadRuleFilter loadRuleFilter = new LoadRuleFilter(viewPaths, launcher.isUnix());
+        if (!loadRuleFilter.isEmpty()) {
+            filters.add(loadRuleFilter);
         }
 
         if (isFilteringOutDestroySubBranchEvent()) {
@@ -441,6 +445,9 @@ public abstract class AbstractClearCaseScm extends SCM {
      */
     public ClearToolLauncher createClearToolLauncher(TaskListener listener, FilePath workspace, Launcher launcher) {
         String cleartoolExe = PluginImpl.BASE_DESCRIPTOR.getCleartoolExe(launcher.getComputer().getNode(), listener);
+        if (ClearToolSessionPool.ENABLED) {
+            return new InteractiveClearToolLauncher(cleartoolExe, getDescriptor().getDisplayName(), listener, workspace, launcher);
+        }
         return new HudsonClearToolLauncher(cleartoolExe, getDescriptor().getDisplayName(), listener, workspace, launcher);
     }
 
@@ -909,12 +916,28 @@ public abstract class AbstractClearCaseScm extends SCM {
             } else {
                 buildTime = build.getTime();
             }
+            HistoryWatermark watermark = null;
+            if (HistoryWatermark.ENABLED && historyAction instanceof AbstractHistoryAction) {
+                watermark = HistoryWatermark.load(project.getRootDir(), getWatermarkConfiguration(viewTag, branchNames, viewPaths),
+                        TimeUnit.MINUTES.toMillis(getMultiSitePollBuffer()));
+                ((AbstractHistoryAction) historyAction).setWatermark(watermark);
+            }
             logger.println("Checking if there are changes in history");
-            if (historyAction.hasChanges(buildTime, viewPath, viewTag, branchNames, viewPaths)) {
+            boolean hasChanges;
+            if (PollingCoordinator.ENABLED && watermark == null && historyAction instanceof AbstractHistoryAction) {
+                hasChanges = hasChangesCoordinated((AbstractHistoryAction) historyAction, buildTime, viewPath, viewTag, branchNames, viewPaths);
+            } else {
+                hasChanges = historyAction.hasChanges(buildTime, viewPath, viewTag, branchNames, viewPaths);
+            }
+            if (hasChanges) {
                 logger.println("REASON: Found changes in history");
                 change = Change.SIGNIFICANT;
             } else {
                 change = Change.NONE;
+                if (watermark != null) {
+                    // only moved forward when nothing was found, so that changes are reported again until they are built
+                    watermark.save(project.getRootDir());
+                }
             }
         } else {
             // Error when calculating the new baseline => Probably clearcase server error, not launching the build
@@ -924,6 +947,46 @@ public abstract class AbstractClearCaseScm extends SCM {
         return new PollingResult(baseline, calcRevisionsFromPoll(build, launcher, listener), change);
     }
 
+    /**
+     * Looks for changes in history through the {@link PollingCoordinator}, so that the jobs polling the same branches and load rules with the same filters
+     * share their polls. The state of the job itself, such as its view or the UCM baselines, is checked by the history action for each job.
+     */
+    private boolean hasChangesCoordinated(AbstractHistoryAction historyAction, Date buildTime, String viewPath, String viewTag, String[] branchNames,
+            String[] viewPaths) throws IOException, InterruptedException {
+        StringBuilder configuration = new StringBuilder(historyAction.getClass().getName());
+        configuration.append('\n').append(getMultiSitePollBuffer());
+        configuration.append('\n').append(StringUtils.join(new TreeSet<String>(Arrays.asList(ArrayUtils.nullToEmpty(branchNames))), '\n'));
+        configuration.append('\n').append(StringUtils.join(normalizeLoadRules(viewPaths), '\n'));
+        configuration.append('\n').append(historyAction.getFilter());
+        return historyAction.hasChanges(PollingCoordinator.get(), Util.getDigestOf(configuration.toString()), buildTime, viewPath, viewTag, branchNames,
+                viewPaths);
+    }
+
+    /**
+     * @return the load rules without duplicates, in the same order whatever the separators and the order of the configuration
+     */
+    private static Set<String> normalizeLoadRules(String[] loadRules) {
+        Set<String> normalized = new TreeSet<String>();
+        for (String loadRule : ArrayUtils.nullToEmpty(loadRules)) {
+            String rule = StringUtils.stripStart(loadRule.trim().replace('\\', '/'), "/");
+            if (rule.length() > 0) {
+                normalized.add(rule);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * @return a digest of the configuration of this SCM and of the polled branches and load rules, identifying the history watermark to use
+     */
+    private String getWatermarkConfiguration(String viewTag, String[] branchNames, String[] viewPaths) {
+        StringBuilder configuration = new StringBuilder(Items.XSTREAM.toXML(this));
+        configuration.append('\n').append(viewTag);
+        configuration.append('\n').append(StringUtils.join(ArrayUtils.nullToEmpty(branchNames), '\n'));
+        configuration.append('\n').append(StringUtils.join(ArrayUtils.nullToEmpty(viewPaths), '\n'));
+        return Util.getDigestOf(configuration.toString());
+    }
+
     protected String computeExtendedViewPath(VariableResolver<String> variableResolver, ClearTool ct) {
         try {
             String viewPath = getViewPath(variableResolver);
@@ -957,9 +1020,9 @@ public abstract class AbstractClearCaseScm extends SCM {
     protected ClearTool createClearTool(VariableResolver<String> variableResolver, ClearToolLauncher launcher) {
         int endViewDelay = PluginImpl.BASE_DESCRIPTOR.getEndViewDelay();
         if (isUseDynamicView()) {
-            return new ClearToolDynamic(variableResolver, launcher, getViewDrive(), getMkviewOptionalParam(), endViewDelay);
+            return MemoizingClearTool.decorate(new ClearToolDynamic(variableResolver, launcher, getViewDrive(), getMkviewOptionalParam(), endViewDelay));
         }
-        return new ClearToolSnapshot(variableResolver, launcher, mkviewOptionalParam, endViewDelay);
+        return MemoizingClearTool.decorate(new ClearToolSnapshot(variableResolver, launcher, mkviewOptionalParam, endViewDelay));
     }
 
     /**
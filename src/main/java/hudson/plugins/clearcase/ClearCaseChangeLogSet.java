@@ -25,32 +25,50 @@
 package hudson.plugins.clearcase;
 
 import hudson.model.AbstractBuild;
+import hudson.plugins.clearcase.util.ChangeLogBinaryFile;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
+import hudson.plugins.clearcase.util.ChangeLogXmlReader;
+import hudson.plugins.clearcase.util.ChangeLogXmlWriter;
+import hudson.plugins.clearcase.util.LazyChangeLogList;
 import hudson.scm.ChangeLogSet;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import org.apache.commons.digester.Digester;
+import org.apache.commons.io.IOUtils;
 import org.xml.sax.SAXException;
 
 /**
  * ClearCase change log set.
+ * <p>
+ * When a changelog saved with its index has many entries, the entries are read page by page when accessed, and the authors and counts come from the
+ * index. Otherwise, the entries are read from the binary copy of the changelog if it is valid, or from the XML.
+ * </p>
  * 
  * @author Erik Ramfelt
  */
 public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry> {
 
-    static final String[]                 TAGS    = new String[] { "user", "comment", "date" };
+    static final String[]                 TAGS          = new String[] { "user", "comment", "date" };
 
-    private List<ClearCaseChangeLogEntry> history = null;
+    private static final String           BINARY_FORMAT = "base";
+    private static final Logger           LOGGER        = Logger.getLogger(ClearCaseChangeLogSet.class.getName());
+
+    private List<ClearCaseChangeLogEntry> history       = null;
+    private ChangeLogIndex                index;
 
     public ClearCaseChangeLogSet(AbstractBuild<?, ?> build, List<ClearCaseChangeLogEntry> logs) {
         super(build);
@@ -60,10 +78,89 @@ public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry>
         this.history = Collections.unmodifiableList(logs);
     }
 
+    /**
+     * Creates a change log set reading the entries of an indexed changelog when they are accessed.
+     */
+    ClearCaseChangeLogSet(AbstractBuild<?, ?> build, File changeLogFile, ChangeLogIndex index) {
+        super(build);
+        this.index = index;
+        this.history = new LazyChangeLogList<ClearCaseChangeLogEntry>(changeLogFile, index, new LazyChangeLogList.PageLoader<ClearCaseChangeLogEntry>() {
+            @Override
+            public List<ClearCaseChangeLogEntry> load(InputStream changeLogStream) throws IOException, SAXException {
+                List<ClearCaseChangeLogEntry> entries = parseEntries(changeLogStream);
+                for (ClearCaseChangeLogEntry entry : entries) {
+                    entry.setParent(ClearCaseChangeLogSet.this);
+                }
+                return entries;
+            }
+        });
+    }
+
+    /**
+     * @return the distinct users of the entries
+     */
+    public Set<String> getAuthorNames() {
+        if (index != null) {
+            return index.getAuthorNames();
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (ClearCaseChangeLogEntry entry : history) {
+            if (entry.getUser() != null) {
+                names.add(entry.getUser());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @return the total number of elements of the entries
+     */
+    public long getElementCount() {
+        if (index != null) {
+            return index.getTotalElementCount();
+        }
+        long count = 0;
+        for (ClearCaseChangeLogEntry entry : history) {
+            count += entry.getElements().size();
+        }
+        return count;
+    }
+
     public List<ClearCaseChangeLogEntry> getLogs() {
         return history;
     }
 
+    /**
+     * @return a page of at most <code>count</code> entries, starting at <code>start</code>
+     */
+    public List<ClearCaseChangeLogEntry> getLogs(int start, int count) {
+        int from = Math.max(0, Math.min(start, history.size()));
+        return history.subList(from, Math.max(from, Math.min(start + count, history.size())));
+    }
+
+    /**
+     * @return the number of entries shown by a page of the views, all of them unless they are read when accessed
+     */
+    public int getPageSize() {
+        return isLazy() ? LazyChangeLogList.PAGE_SIZE : history.size();
+    }
+
+    /**
+     * @param start
+     *            the <code>start</code> request parameter of the views, may be null
+     * @return the first of the entries shown by the page of the views
+     */
+    public int getPageStart(String start) {
+        return isLazy() ? LazyChangeLogList.pageStart(start, history.size()) : 0;
+    }
+
+    /**
+     * @return true if the entries are read when accessed
+     */
+    public boolean isLazy() {
+        return index != null;
+    }
+
     @Override
     public boolean isEmptySet() {
         return history.size() == 0;
@@ -120,10 +217,24 @@ public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry>
      * @return the change log set
      */
     public static ClearCaseChangeLogSet parse(AbstractBuild<?, ?> build, File changeLogFile) throws IOException, SAXException {
+        ChangeLogIndex index = ChangeLogIndex.read(changeLogFile);
+        if (index != null && index.size() >= ChangeLogIndex.LAZY_THRESHOLD) {
+            return new ClearCaseChangeLogSet(build, changeLogFile, index);
+        }
+        ChangeLogBinaryFile.Input binaryFile = ChangeLogBinaryFile.open(changeLogFile, BINARY_FORMAT);
+        if (binaryFile != null) {
+            try {
+                return new ClearCaseChangeLogSet(build, readBinaryFile(binaryFile));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Ignoring invalid binary copy of " + changeLogFile, e);
+            }
+        }
         FileInputStream fileInputStream = new FileInputStream(changeLogFile);
-        ClearCaseChangeLogSet logSet = parse(build, fileInputStream);
-        fileInputStream.close();
-        return logSet;
+        try {
+            return parse(build, new BufferedInputStream(fileInputStream));
+        } finally {
+            fileInputStream.close();
+        }
     }
 
     /**
@@ -136,43 +247,79 @@ public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry>
      * @throws IOException
      */
     public static void saveToChangeLog(OutputStream outputStream, List<ClearCaseChangeLogEntry> history) throws IOException {
-        PrintStream stream = new PrintStream(outputStream, false, "UTF-8");
+        saveToChangeLog(new ChangeLogXmlWriter(outputStream), history, null);
+    }
 
+    /**
+     * Stores the history objects to the change log file as xml, with the index of its entries and its binary copy.
+     * 
+     * @param changeLogFile
+     *            the file to write to
+     * @param history
+     *            the history objects to store
+     * @throws IOException
+     */
+    public static void saveToChangeLog(File changeLogFile, List<ClearCaseChangeLogEntry> history) throws IOException {
+        ChangeLogIndex.delete(changeLogFile);
+        ChangeLogBinaryFile.delete(changeLogFile);
+        ChangeLogIndex.Builder index = new ChangeLogIndex.Builder();
+        FileOutputStream outputStream = new FileOutputStream(changeLogFile);
+        try {
+            saveToChangeLog(new ChangeLogXmlWriter(outputStream), history, index);
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+        try {
+            index.build(changeLogFile.length()).write(changeLogFile);
+        } catch (IOException e) {
+            // the changelog is complete, it is only read without its index
+            LOGGER.log(Level.WARNING, "Unable to write the index of " + changeLogFile, e);
+            ChangeLogIndex.delete(changeLogFile);
+        }
+        if (!ChangeLogBinaryFile.DISABLED) {
+            try {
+                writeBinaryFile(history).write(changeLogFile, BINARY_FORMAT);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write the binary copy of " + changeLogFile, e);
+                ChangeLogBinaryFile.delete(changeLogFile);
+            }
+        }
+    }
+
+    private static void saveToChangeLog(ChangeLogXmlWriter writer, List<ClearCaseChangeLogEntry> history, ChangeLogIndex.Builder index) throws IOException {
         int tagcount = ClearCaseChangeLogSet.TAGS.length;
-        stream.println("<?xml version='1.0' encoding='UTF-8'?>");
-        stream.println("<history>");
+        writer.line("<?xml version='1.0' encoding='UTF-8'?>");
+        writer.line("<history>");
         for (ClearCaseChangeLogEntry entry : history) {
-            stream.println("\t<entry>");
+            long offset = index != null ? writer.getPosition() : 0;
+            writer.line("\t<entry>");
             String[] strings = getEntryAsStrings(entry);
             for (int tag = 0; tag < tagcount; tag++) {
-                stream.print("\t\t<");
-                stream.print(ClearCaseChangeLogSet.TAGS[tag]);
-                stream.print('>');
-                stream.print(escapeForXml(strings[tag]));
-                stream.print("</");
-                stream.print(ClearCaseChangeLogSet.TAGS[tag]);
-                stream.println('>');
+                writer.element("\t\t", ClearCaseChangeLogSet.TAGS[tag], strings[tag]);
             }
             for (ClearCaseChangeLogEntry.FileElement file : entry.getElements()) {
-                stream.println("\t\t<element>");
-                stream.println("\t\t\t<file>");
-                stream.println(escapeForXml(file.getFile()));
-                stream.println("\t\t\t</file>");
-                stream.println("\t\t\t<action>");
-                stream.println(escapeForXml(file.getAction()));
-                stream.println("\t\t\t</action>");
-                stream.println("\t\t\t<version>");
-                stream.println(escapeForXml(file.getVersion()));
-                stream.println("\t\t\t</version>");
-                stream.println("\t\t\t<operation>");
-                stream.println(escapeForXml(file.getOperation()));
-                stream.println("\t\t\t</operation>");
-                stream.println("\t\t</element>");
+                writer.line("\t\t<element>");
+                writer.line("\t\t\t<file>");
+                writer.escapedLine(file.getFile());
+                writer.line("\t\t\t</file>");
+                writer.line("\t\t\t<action>");
+                writer.escapedLine(file.getAction());
+                writer.line("\t\t\t</action>");
+                writer.line("\t\t\t<version>");
+                writer.escapedLine(file.getVersion());
+                writer.line("\t\t\t</version>");
+                writer.line("\t\t\t<operation>");
+                writer.escapedLine(file.getOperation());
+                writer.line("\t\t\t</operation>");
+                writer.line("\t\t</element>");
+            }
+            writer.line("\t</entry>");
+            if (index != null) {
+                index.add(offset, writer.getPosition(), entry.getUser(), entry.getElements().size());
             }
-            stream.println("\t</entry>");
         }
-        stream.println("</history>");
-        stream.close();
+        writer.line("</history>");
+        writer.close();
     }
 
     /**
@@ -185,33 +332,92 @@ public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry>
      * @return the change log set
      */
     static ClearCaseChangeLogSet parse(AbstractBuild<?, ?> build, InputStream changeLogStream) throws IOException, SAXException {
+        return new ClearCaseChangeLogSet(build, parseEntries(changeLogStream));
+    }
 
-        ArrayList<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
+    private static List<ClearCaseChangeLogEntry> parseEntries(InputStream changeLogStream) throws IOException, SAXException {
+        final ArrayList<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
 
-        // Parse the change log file.
-        Digester digester = new Digester();
-        digester.setClassLoader(ClearCaseChangeLogSet.class.getClassLoader());
-        digester.push(history);
-        digester.addObjectCreate("*/entry", ClearCaseChangeLogEntry.class);
+        // Parse the change log file: entries, anywhere, with their properties and elements
+        new ChangeLogXmlReader() {
+            private ClearCaseChangeLogEntry entry;
+            private ClearCaseChangeLogEntry.FileElement element;
 
-        digester.addBeanPropertySetter("*/entry/date", "dateStr");
-        digester.addBeanPropertySetter("*/entry/comment");
-        digester.addBeanPropertySetter("*/entry/user");
-        digester.addBeanPropertySetter("*/entry/file");
-        digester.addBeanPropertySetter("*/entry/action");
-        digester.addBeanPropertySetter("*/entry/version");
+            @Override
+            protected void endElement(String name, String text) {
+                if ("entry".equals(name)) {
+                    history.add(entry);
+                    entry = null;
+                } else if (element != null && "element".equals(name)) {
+                    entry.addElement(element);
+                    element = null;
+                } else if (text != null && element != null) {
+                    if ("file".equals(name)) {
+                        element.setFile(text);
+                    } else if ("version".equals(name)) {
+                        element.setVersion(text);
+                    } else if ("action".equals(name)) {
+                        element.setAction(text);
+                    } else if ("operation".equals(name)) {
+                        element.setOperation(text);
+                    }
+                } else if (text != null) {
+                    setEntryProperty(entry, name, text);
+                }
+            }
 
-        digester.addObjectCreate("*/entry/element", ClearCaseChangeLogEntry.FileElement.class);
-        digester.addBeanPropertySetter("*/entry/element/file");
-        digester.addBeanPropertySetter("*/entry/element/version");
-        digester.addBeanPropertySetter("*/entry/element/action");
-        digester.addBeanPropertySetter("*/entry/element/operation");
-        digester.addSetNext("*/entry/element", "addElement");
+            @Override
+            protected boolean startElement(String name) {
+                if ("entry".equals(name)) {
+                    entry = new ClearCaseChangeLogEntry();
+                    return false;
+                }
+                if (entry == null || !"entry".equals(getAncestor(element == null ? 1 : 2))) {
+                    return false;
+                }
+                if (element == null && "element".equals(name)) {
+                    element = new ClearCaseChangeLogEntry.FileElement();
+                    return false;
+                }
+                return element != null ? "element".equals(getAncestor(1)) : true;
+            }
+        }.read(changeLogStream);
 
-        digester.addSetNext("*/entry", "add");
-        digester.parse(changeLogStream);
+        return history;
+    }
+
+    private static List<ClearCaseChangeLogEntry> readBinaryFile(ChangeLogBinaryFile.Input in) throws IOException {
+        int count = in.readInt();
+        List<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>(count);
+        for (int i = 0; i < count; i++) {
+            ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry();
+            entry.setUser(in.readString());
+            entry.setComment(in.readString());
+            entry.setDateStr(in.readString());
+            int elementCount = in.readInt();
+            for (int j = 0; j < elementCount; j++) {
+                entry.addElement(new ClearCaseChangeLogEntry.FileElement(in.readPath(), in.readPath(), in.readString(), in.readString()));
+            }
+            history.add(entry);
+        }
+        return history;
+    }
 
-        return new ClearCaseChangeLogSet(build, history);
+    @SuppressWarnings("deprecation")
+    private static void setEntryProperty(ClearCaseChangeLogEntry entry, String name, String value) {
+        if ("date".equals(name)) {
+            entry.setDateStr(value);
+        } else if ("comment".equals(name)) {
+            entry.setComment(value);
+        } else if ("user".equals(name)) {
+            entry.setUser(value);
+        } else if ("file".equals(name)) {
+            entry.setFile(value);
+        } else if ("action".equals(name)) {
+            entry.setAction(value);
+        } else if ("version".equals(name)) {
+            entry.setVersion(value);
+        }
     }
 
     private static String[] getEntryAsStrings(ClearCaseChangeLogEntry entry) {
@@ -221,4 +427,18 @@ public class ClearCaseChangeLogSet extends ChangeLogSet<ClearCaseChangeLogEntry>
         array[2] = entry.getDateStr();
         return array;
     }
+
+    private static ChangeLogBinaryFile.Output writeBinaryFile(List<ClearCaseChangeLogEntry> history) throws IOException {
+        ChangeLogBinaryFile.Output out = new ChangeLogBinaryFile.Output();
+        out.writeInt(history.size());
+        for (ClearCaseChangeLogEntry entry : history) {
+            String[] strings = getEntryAsStrings(entry);
+            out.writeString(strings[0]).writeString(strings[1]).writeString(strings[2]);
+            out.writeInt(entry.getElements().size());
+            for (ClearCaseChangeLogEntry.FileElement file : entry.getElements()) {
+                out.writePath(file.getFile()).writePath(file.getVersion()).writeString(file.getAction()).writeString(file.getOperation());
+            }
+        }
+        return out;
+    }
 }
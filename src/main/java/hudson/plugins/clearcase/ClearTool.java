@@ -25,9 +25,12 @@
 package hudson.plugins.clearcase;
 
 import hudson.plugins.clearcase.command.LsHistoryCommand;
+import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.history.LsHistoryParser;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.text.ParseException;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
@@ -124,6 +127,38 @@ public interface ClearTool {
      */
     Reader describe(String format, String[] objectSelectors) throws IOException, InterruptedException;
 
+    /**
+     * Call the cleartool describe with the provided format on the specified object selectors, from the given view path. The output of the object selectors
+     * is returned in their order. See http://www.ipnom.com/ClearCase-Commands/describe.html for valid options
+     * 
+     * @param format
+     * @param viewPath
+     *            the view path to run describe from, or null
+     * @param objectSelectors
+     * @return A reader to the command output
+     * @throws IOException
+     *             If cleartool throws an error code, for instance if one of the object selectors cannot be described
+     * @throws InterruptedException
+     *             If the process is interrupted
+     */
+    Reader describe(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException;
+
+    /**
+     * Call the cleartool describe like {@link #describe(String, String, String[])}, without failing nor reporting a failure in the build log when some of the
+     * object selectors cannot be described. Their errors are then part of the output, as lines starting with <code>cleartool: Error:</code>.
+     * 
+     * @param format
+     * @param viewPath
+     *            the view path to run describe from, or null
+     * @param objectSelectors
+     * @return A reader to the command output, read while the command is running, which must be closed
+     * @throws IOException
+     *             If cleartool cannot be run
+     * @throws InterruptedException
+     *             If the process is interrupted
+     */
+    Reader describeIgnoringErrors(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException;
+
     /**
      * Call diffbl using the two provided baselines (can be stream or baseline)
      * 
@@ -217,6 +252,22 @@ public interface ClearTool {
      * @throws InterruptedException
      */
     Reader lsactivity(String activity, String commandFormat, String viewPath) throws IOException, InterruptedException;
+
+    /**
+     * Call lsactivity on several activities with a single command. The output of the activities is returned in their order.
+     * 
+     * @param activities
+     *            the activities to list, see {@link #lsactivity(String, String, String)}
+     * @param commandFormat
+     *            The output format to be used (-fmt &lt;commandFormat&gt;)
+     * @param viewPath
+     *            view path name to use in order to list activity
+     * @return A reader to the lsactivity command output
+     * @throws IOException
+     *             If cleartool throws an error code, for instance if one of the activities cannot be found
+     * @throws InterruptedException
+     */
+    Reader lsactivity(String[] activities, String commandFormat, String viewPath) throws IOException, InterruptedException;
     
     Reader lsactivityIn(String streamSelector, String commandFormat, String viewPath) throws IOException, InterruptedException;
 
@@ -249,6 +300,15 @@ public interface ClearTool {
     Reader lshistory(String format, Date lastBuildDate, String viewPath, String branch, String[] pathsInView, boolean getMinor, boolean useRecurse)
             throws IOException, InterruptedException;
 
+    /**
+     * Same as {@link #lshistory(String, Date, String, String, String[], boolean, boolean)}, but the output is parsed by the given parser on the node of the
+     * view, and only the entries it accepts are sent back.
+     * 
+     * @return the accepted entries, or null if the output cannot be parsed on the node of the view
+     */
+    List<HistoryEntry> lshistory(LsHistoryParser parser, String format, Date lastBuildDate, String viewPath, String branch, String[] pathsInView,
+            boolean getMinor, boolean useRecurse) throws IOException, InterruptedException, ParseException;
+
     /**
      * List attributes of a project
      * 
@@ -29,22 +29,22 @@ import hudson.FilePath;
 import hudson.Util;
 import hudson.plugins.clearcase.command.CleartoolOutput;
 import hudson.plugins.clearcase.command.LsHistoryCommand;
-import hudson.plugins.clearcase.util.DeleteOnCloseFileInputStream;
+import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.history.LsHistoryParser;
 import hudson.plugins.clearcase.util.PathUtil;
+import hudson.plugins.clearcase.util.SpillingOutputStream;
 import hudson.util.ArgumentListBuilder;
 import hudson.util.VariableResolver;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Reader;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -122,15 +122,16 @@ public abstract class ClearToolExec implements ClearTool {
         if (viewPath != null) {
             workingDirectory = new FilePath(getRootViewPath(launcher), viewPath);
         }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        launcher.run(cmd.toCommandArray(), null, baos, workingDirectory, true);
-        Reader reader = new InputStreamReader(new ByteArrayInputStream(baos.toByteArray()));
-        baos.close();
-        return reader;
+        return runToReader(cmd, workingDirectory);
     }
 
     @Override
     public Reader describe(String format, String[] objectSelectors) throws IOException, InterruptedException {
+        return describe(format, null, objectSelectors);
+    }
+
+    @Override
+    public Reader describe(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException {
         Validate.notNull(objectSelectors);
         Validate.isTrue(objectSelectors.length > 0);
         ArgumentListBuilder cmd = new ArgumentListBuilder();
@@ -142,11 +143,29 @@ public abstract class ClearToolExec implements ClearTool {
             cmd.add(selector);
         }
         FilePath workingDirectory = null;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        launcher.run(cmd.toCommandArray(), null, baos, workingDirectory, true);
-        Reader reader = new InputStreamReader(new ByteArrayInputStream(baos.toByteArray()));
-        baos.close();
-        return reader;
+        if (viewPath != null) {
+            workingDirectory = new FilePath(getRootViewPath(launcher), viewPath);
+        }
+        return runToReader(cmd, workingDirectory);
+    }
+
+    @Override
+    public Reader describeIgnoringErrors(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException {
+        Validate.notNull(objectSelectors);
+        Validate.isTrue(objectSelectors.length > 0);
+        ArgumentListBuilder cmd = new ArgumentListBuilder();
+        cmd.add("desc");
+        if (StringUtils.isNotBlank(format)) {
+            cmd.add("-fmt", format);
+        }
+        for (String selector : objectSelectors) {
+            cmd.add(selector);
+        }
+        FilePath workingDirectory = null;
+        if (viewPath != null) {
+            workingDirectory = new FilePath(getRootViewPath(launcher), viewPath);
+        }
+        return new InputStreamReader(launcher.runAndStream(cmd.toCommandArray(), workingDirectory, false));
     }
 
     @Override
@@ -161,14 +180,8 @@ public abstract class ClearToolExec implements ClearTool {
         cmd.add(baseline1);
         cmd.add(baseline2);
 
-        // Output to a temporary file since the output can become quite large
-        File tmpFile = null;
-        try {
-            tmpFile = File.createTempFile("cleartool-diffbl", null);
-        } catch (IOException e) {
-            throw new IOException("Couldn't create a temporary file", e);
-        }
-        OutputStream out = new FileOutputStream(tmpFile);
+        // The output can become quite large, it is written to a temporary file beyond the threshold
+        SpillingOutputStream out = new SpillingOutputStream("cleartool-diffbl");
 
         FilePath workingDirectory = launcher.getWorkspace();
         if (viewPath != null) {
@@ -179,8 +192,7 @@ public abstract class ClearToolExec implements ClearTool {
         } catch (IOException e) {
         } catch (InterruptedException e) {
         }
-        out.close();
-        return new InputStreamReader(new DeleteOnCloseFileInputStream(tmpFile));
+        return out.getReader();
     }
 
     @Override
@@ -326,6 +338,12 @@ public abstract class ClearToolExec implements ClearTool {
         return lsactivity(viewPath, "-fmt", commandFormat, activity);
     }
 
+    @Override
+    public Reader lsactivity(String[] activities, String commandFormat, String viewPath) throws IOException, InterruptedException {
+        Validate.notEmpty(activities);
+        return lsactivity(viewPath, (String[]) ArrayUtils.addAll(new String[] { "-fmt", commandFormat }, activities));
+    }
+
     @Override
     public Reader lsactivityIn(String streamSelector, String commandFormat, String viewPath) throws IOException, InterruptedException {
         return lsactivity(viewPath, "-fmt", commandFormat, "-in", streamSelector);
@@ -339,11 +357,7 @@ public abstract class ClearToolExec implements ClearTool {
         // changed the path from workspace to getRootViewPath to make Dynamic UCM work
         FilePath filePath = getRootViewPath(launcher).child(viewPath);
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        launcher.run(cmd.toCommandArray(), null, baos, filePath, true);
-        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(baos.toByteArray()));
-        baos.close();
-        return reader;
+        return runToReader(cmd, filePath);
     }
 
     @Override
@@ -398,6 +412,16 @@ public abstract class ClearToolExec implements ClearTool {
         return new InputStreamReader(output.getInputStream());
     }
 
+    @Override
+    public List<HistoryEntry> lshistory(LsHistoryParser parser, String format, Date lastBuildDate, String viewPath, String branch, String[] pathsInView,
+            boolean getMinor, boolean useRecurse) throws IOException, InterruptedException, ParseException {
+        LsHistoryCommand lsHistory = lshistory();
+        lsHistory.format(format).since(lastBuildDate).viewPath(getRootViewPath(launcher).child(viewPath)).branch(branch).pathsInView(pathsInView);
+        lsHistory.setConsiderMinorEvents(getMinor);
+        lsHistory.setUseRecurse(useRecurse);
+        return lsHistory.executeAndParse(launcher, parser);
+    }
+
     @Override
     public String lsproject(String viewTag, String format) throws InterruptedException, IOException {
         ArgumentListBuilder cmd = new ArgumentListBuilder();
@@ -441,11 +465,7 @@ public abstract class ClearToolExec implements ClearTool {
         ArgumentListBuilder cmd = new ArgumentListBuilder();
         cmd.add("lsview");
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        if (launcher.run(cmd.toCommandArray(), null, baos, null, true)) {
-            return parseListOutput(new InputStreamReader(new ByteArrayInputStream(baos.toByteArray())), onlyActiveDynamicViews);
-        }
-        return new ArrayList<String>();
+        return parseListOutput(runToReader(cmd, null), onlyActiveDynamicViews);
     }
 
     @Override
@@ -454,11 +474,7 @@ public abstract class ClearToolExec implements ClearTool {
         ArgumentListBuilder cmd = new ArgumentListBuilder();
         cmd.add("lsvob");
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        if (launcher.run(cmd.toCommandArray(), null, baos, null, true)) {
-            return parseListOutput(new InputStreamReader(new ByteArrayInputStream(baos.toByteArray())), onlyMounted);
-        }
-        return new ArrayList<String>();
+        return parseListOutput(runToReader(cmd, null), onlyMounted);
     }
 
     @Override
@@ -880,20 +896,13 @@ public abstract class ClearToolExec implements ClearTool {
     @Override
     public CleartoolVersion version() throws IOException, InterruptedException, CleartoolVersionParsingException {
         if (version == null) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            InputStreamReader reader = null;
-            ByteArrayInputStream is = null;
             ArgumentListBuilder cmd = new ArgumentListBuilder();
             cmd.add("-version");
+            Reader reader = runToReader(cmd, null);
             try {
-                launcher.run(cmd.toCommandArray(), null, baos, null, true);
-                is = new ByteArrayInputStream(baos.toByteArray());
-                reader = new InputStreamReader(is);
                 version = CleartoolVersion.parseCmdOutput(reader);
             } finally {
                 org.apache.commons.io.IOUtils.closeQuietly(reader);
-                org.apache.commons.io.IOUtils.closeQuietly(is);
-                org.apache.commons.io.IOUtils.closeQuietly(baos);
             }
         }
         return version;
@@ -910,20 +919,20 @@ public abstract class ClearToolExec implements ClearTool {
     protected String runAndProcessOutput(ArgumentListBuilder cmd, InputStream in, FilePath workFolder, boolean catchExceptions, List<IOException> exceptions,
             boolean log) throws IOException, InterruptedException {
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpillingOutputStream out = new SpillingOutputStream("cleartool");
         try {
-            launcher.run(cmd.toCommandArray(), in, baos, workFolder, log);
+            launcher.run(cmd.toCommandArray(), in, out, workFolder, log);
         } catch (IOException e) {
             if (!catchExceptions) {
+                out.discard();
                 throw e;
             }
             exceptions.add(e);
+        } catch (InterruptedException e) {
+            out.discard();
+            throw e;
         }
-        byte[] byteArray = baos.toByteArray();
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(byteArray);
-        InputStreamReader inputStreamReader = new InputStreamReader(byteArrayInputStream);
-        BufferedReader reader = new BufferedReader(inputStreamReader);
-        baos.close();
+        BufferedReader reader = new BufferedReader(out.getReader());
         String line = reader.readLine();
         StringBuilder builder = new StringBuilder();
         while (line != null) {
@@ -940,6 +949,25 @@ public abstract class ClearToolExec implements ClearTool {
         return builder.toString();
     }
 
+    /**
+     * Runs a command whose output is read back, failing if it returns an error code.
+     *
+     * @return the output of the command, which must be closed
+     */
+    protected Reader runToReader(ArgumentListBuilder cmd, FilePath workFolder) throws IOException, InterruptedException {
+        SpillingOutputStream out = new SpillingOutputStream("cleartool");
+        boolean ran = false;
+        try {
+            launcher.run(cmd.toCommandArray(), null, out, workFolder, true);
+            ran = true;
+        } finally {
+            if (!ran) {
+                out.discard();
+            }
+        }
+        return out.getReader();
+    }
+
     private void displayLogFile(PrintStream logger, FilePath logFile) throws IOException, InterruptedException {
         if (logFile != null && logFile.exists()) {
             InputStream stream = logFile.read();
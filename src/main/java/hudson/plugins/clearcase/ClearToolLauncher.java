@@ -103,4 +103,18 @@ public interface ClearToolLauncher {
      * @return true if the command was successful, false otherwise
      */
     boolean run(String[] cmd, InputStream in, OutputStream out, FilePath execPath, boolean logCommand) throws IOException, InterruptedException;
+
+    /**
+     * Launches a cleartool command with arguments, and gives access to its output while it is running. The output is not buffered: the command waits while
+     * the returned stream is not read. Closing the stream before its end kills the command. The exit code of the command is not checked.
+     * 
+     * @param cmd
+     *            the command to launch using the clear tool executable
+     * @param execPath
+     *            optional, the path where the command should be launched
+     * @param logCommand
+     *            optional, log the output of the command as it is read
+     * @return the output of the command
+     */
+    InputStream runAndStream(String[] cmd, FilePath execPath, boolean logCommand) throws IOException, InterruptedException;
 }
@@ -27,7 +27,10 @@ package hudson.plugins.clearcase;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Proc;
+import hudson.model.Computer;
 import hudson.model.TaskListener;
+import hudson.plugins.clearcase.metrics.CleartoolMetrics;
+import hudson.plugins.clearcase.util.ProcInputStream;
 import hudson.util.ForkOutputStream;
 
 import java.io.BufferedReader;
@@ -40,6 +43,9 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -47,12 +53,13 @@ import org.apache.commons.lang.StringUtils;
  */
 public class HudsonClearToolLauncher implements ClearToolLauncher {
 
-    private final String       executable;
-    private final Launcher     launcher;
-    private final TaskListener listener;
+    private final String           executable;
+    private final Launcher         launcher;
+    private final TaskListener     listener;
+    private final CleartoolMetrics metrics = new CleartoolMetrics(CleartoolMetrics.get());
 
-    private final String       scmName;
-    private final FilePath     workspace;
+    private final String           scmName;
+    private final FilePath         workspace;
 
     public HudsonClearToolLauncher(String executable, String scmName, TaskListener listener, FilePath workspace, Launcher launcher) {
         this.executable = executable;
@@ -67,10 +74,24 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
         return StringUtils.join(cmd, ' ');
     }
 
+    /**
+     * @return the variables, as name=value, added to the environment of the node for the commands launched
+     */
+    public String[] getEnv() {
+        return new String[0];
+    }
+
     public Proc getLaunchedProc(String[] cmdWithExec, String[] env, InputStream inputStream, OutputStream out, FilePath path) throws IOException {
         return getLauncher().launch().cmds(cmdWithExec).envs(env).stdin(inputStream).stdout(out).pwd(path).start();
     }
 
+    /**
+     * @return the cleartool executable used to launch the commands
+     */
+    public String getExecutable() {
+        return executable;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -81,11 +102,29 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
         return this.launcher;
     }
 
+    /**
+     * @return the metrics of the commands run by this launcher
+     */
+    public CleartoolMetrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public TaskListener getListener() {
         return listener;
     }
 
+    /**
+     * @return the name of the node where the commands are launched, under which they are recorded in the metrics
+     */
+    public String getNodeName() {
+        Computer computer = launcher == null ? null : launcher.getComputer();
+        if (computer == null || StringUtils.isEmpty(computer.getName())) {
+            return "master";
+        }
+        return computer.getName();
+    }
+
     @Override
     public FilePath getWorkspace() {
         return workspace;
@@ -114,7 +153,6 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
 
         OutputStream out = outputStream;
         FilePath path = filePath;
-        String[] env = new String[0];
 
         if (path == null) {
             path = workspace;
@@ -136,11 +174,15 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
                 out = new ForkOutputStream(out, logger);
             }
 
-            String[] cmdWithExec = new String[cmd.length + 1];
-            cmdWithExec[0] = executable;
-            System.arraycopy(cmd, 0, cmdWithExec, 1, cmd.length);
-
-            int r = getLaunchedProc(cmdWithExec, env, inputStream, out, path).join();
+            CountingOutputStream counter = new CountingOutputStream(out);
+            String node = getNodeName();
+            long begin = metrics.begin(node);
+            int r = -1;
+            try {
+                r = launch(cmd, inputStream, counter, path);
+            } finally {
+                metrics.end(getVerb(cmd), node, begin, counter.getByteCount(), r != 0);
+            }
             if (logCommand) {
                 listener.getLogger().println();
             }
@@ -162,6 +204,73 @@ public class HudsonClearToolLauncher implements ClearToolLauncher {
         return true;
     }
 
+    @Override
+    public InputStream runAndStream(String[] cmd, FilePath filePath, boolean logCommand) throws IOException, InterruptedException {
+        logCommand |= StringUtils.equals("1", System.getenv("HUDSON_CLEARCASE_VERBOSE"));
+        FilePath path = filePath;
+        if (path == null) {
+            path = workspace;
+        }
+        final String verb = getVerb(cmd);
+        final String node = getNodeName();
+        final long begin = metrics.begin(node);
+        Proc proc;
+        try {
+            proc = getLauncher().launch().cmds(withExecutable(cmd)).envs(getEnv()).readStdout().pwd(path).start();
+        } catch (IOException e) {
+            metrics.end(verb, node, begin, 0, true);
+            throw e;
+        }
+        final ProcInputStream procOutput = new ProcInputStream(proc, proc.getStdout());
+        InputStream output = new CountingInputStream(procOutput) {
+            private boolean ended;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!ended) {
+                        ended = true;
+                        metrics.end(verb, node, begin, getByteCount(), procOutput.getExitCode() > 0);
+                    }
+                }
+            }
+        };
+        if (logCommand) {
+            output = new TeeInputStream(output, listener.getLogger());
+        }
+        return output;
+    }
+
+    /**
+     * Launches the given cleartool command and waits for its completion.
+     * 
+     * @param cmd
+     *            the command to launch using the clear tool executable
+     * @param inputStream
+     *            optional, if the command should be able to receive input
+     * @param out
+     *            the stream receiving the output of the command
+     * @param path
+     *            the path where the command should be launched
+     * @return the exit code of the command
+     */
+    protected int launch(String[] cmd, InputStream inputStream, OutputStream out, FilePath path) throws IOException, InterruptedException {
+        return getLaunchedProc(withExecutable(cmd), getEnv(), inputStream, out, path).join();
+    }
+
+    private String getVerb(String[] cmd) {
+        return cmd.length == 0 ? "" : cmd[0];
+    }
+
+    private String[] withExecutable(String[] cmd) {
+        String[] cmdWithExec = new String[cmd.length + 1];
+        cmdWithExec[0] = executable;
+        System.arraycopy(cmd, 0, cmdWithExec, 1, cmd.length);
+        return cmdWithExec;
+    }
+
     private void printToLogger(File logFile) throws FileNotFoundException, IOException {
         FileReader fileReader = new FileReader(logFile);
         BufferedReader br = new BufferedReader(fileReader);
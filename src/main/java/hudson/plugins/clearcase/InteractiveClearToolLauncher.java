@@ -0,0 +1,47 @@
+package hudson.plugins.clearcase;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.plugins.clearcase.session.ClearToolSession;
+import hudson.plugins.clearcase.session.ClearToolSessionPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Executes the cleartool commands in interactive cleartool sessions kept alive between commands, instead of starting a new process for each command.
+ * <p>
+ * Commands requiring an input stream, or with arguments that cannot be expressed in interactive mode, are still launched in their own process.
+ * </p>
+ *
+ * @see ClearToolSessionPool
+ */
+public class InteractiveClearToolLauncher extends HudsonClearToolLauncher {
+
+    public InteractiveClearToolLauncher(String executable, String scmName, TaskListener listener, FilePath workspace, Launcher launcher) {
+        super(executable, scmName, listener, workspace, launcher);
+    }
+
+    @Override
+    protected int launch(String[] cmd, InputStream inputStream, OutputStream out, FilePath path) throws IOException, InterruptedException {
+        String commandLine = ClearToolSession.toCommandLine(cmd);
+        if (inputStream != null || commandLine == null) {
+            return super.launch(cmd, inputStream, out, path);
+        }
+        String directory = null;
+        if (path != null) {
+            directory = path.getRemote();
+            getListener().getLogger().print("[" + path.getName() + "] ");
+        }
+        getListener().getLogger().println("$ " + getExecutable() + " " + commandLine);
+        ClearToolSessionPool pool = ClearToolSessionPool.get();
+        ClearToolSession session = pool.borrow(getLauncher(), getExecutable());
+        try {
+            return session.execute(commandLine, directory, out);
+        } finally {
+            pool.release(session);
+        }
+    }
+}
@@ -0,0 +1,663 @@
+package hudson.plugins.clearcase;
+
+import hudson.plugins.clearcase.command.LsHistoryCommand;
+import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.history.LsHistoryParser;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Decorator of a {@link ClearTool} remembering the results of read-only commands for the duration of a poll or a build.
+ * <p>
+ * The results are shared by all the decorators using the same {@link ClearToolLauncher}, which is created once per poll or build. A command changing a
+ * view, a config spec or UCM objects forgets the results it may affect, before and after it runs. Failed commands are not remembered, nor outputs longer
+ * than {@link #MAX_OUTPUT_LENGTH}.
+ * </p>
+ */
+public class MemoizingClearTool implements ClearTool {
+
+    /**
+     * Set to true to run every read-only command each time it is called.
+     */
+    public static final boolean DISABLED          = Boolean.getBoolean(MemoizingClearTool.class.getName() + ".disabled");
+
+    /**
+     * Maximum length, in characters, of a remembered describe output.
+     */
+    public static final int     MAX_OUTPUT_LENGTH = Integer.getInteger(MemoizingClearTool.class.getName() + ".maxOutputLength", 64 * 1024);
+
+    private static final int    BUFFER_SIZE       = 4096;
+    private static final String CATCS             = "catcs";
+    private static final String DESCRIBE          = "describe";
+    private static final String DOES_STREAM_EXIST = "doesStreamExist";
+    private static final String DOES_VIEW_EXIST   = "doesViewExist";
+    private static final String GET_VIEW_DATA     = "getViewData";
+    private static final String LSCURRENTVIEW     = "lscurrentview";
+    private static final String LSPROJECT         = "lsproject";
+    private static final String LSSTREAM          = "lsstream";
+    private static final String LSVIEW            = "lsview";
+    private static final String LSVOB             = "lsvob";
+    private static final String PWV               = "pwv";
+
+    /**
+     * Commands affected by a change of config spec
+     */
+    private static final String[] CONFIG_SPEC = { CATCS, DESCRIBE, GET_VIEW_DATA };
+
+    /**
+     * Commands affected by a change of UCM objects
+     */
+    private static final String[] UCM         = { CATCS, DESCRIBE, DOES_STREAM_EXIST, LSPROJECT, LSSTREAM };
+
+    /**
+     * Commands affected by the creation, removal, start or end of a view
+     */
+    private static final String[] VIEW        = { CATCS, DESCRIBE, DOES_VIEW_EXIST, GET_VIEW_DATA, LSCURRENTVIEW, LSVIEW, LSVOB, PWV };
+
+    /**
+     * Results of each poll or build, dropped with its launcher
+     */
+    private static final Map<ClearToolLauncher, ConcurrentMap<String, Object>> SCOPES = new WeakHashMap<ClearToolLauncher, ConcurrentMap<String, Object>>();
+
+    private final ClearTool                     delegate;
+    private final ConcurrentMap<String, Object> results;
+
+    public MemoizingClearTool(ClearTool delegate, ConcurrentMap<String, Object> results) {
+        this.delegate = delegate;
+        this.results = results;
+    }
+
+    /**
+     * @return the given cleartool, decorated to share the results of read-only commands with the other cleartools using the same launcher, unless it is
+     *         {@link #DISABLED}
+     */
+    public static ClearTool decorate(ClearTool clearTool) {
+        ClearToolLauncher launcher = clearTool.getLauncher();
+        if (DISABLED || launcher == null) {
+            return clearTool;
+        }
+        ConcurrentMap<String, Object> results;
+        synchronized (SCOPES) {
+            results = SCOPES.get(launcher);
+            if (results == null) {
+                results = new ConcurrentHashMap<String, Object>();
+                SCOPES.put(launcher, results);
+            }
+        }
+        return new MemoizingClearTool(clearTool, results);
+    }
+
+    @Override
+    public String catcs(String viewTag) throws IOException, InterruptedException {
+        String key = getKey(CATCS, viewTag);
+        String result = (String) results.get(key);
+        if (result == null) {
+            result = delegate.catcs(viewTag);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public Reader describe(String format, String objectSelector) throws IOException, InterruptedException {
+        String key = getKey(DESCRIBE, format, null, objectSelector);
+        String result = (String) results.get(key);
+        if (result == null) {
+            return remember(key, delegate.describe(format, objectSelector));
+        }
+        return new StringReader(result);
+    }
+
+    @Override
+    public Reader describe(String format, String viewPath, String objectSelector) throws IOException, InterruptedException {
+        String key = getKey(DESCRIBE, format, viewPath, objectSelector);
+        String result = (String) results.get(key);
+        if (result == null) {
+            return remember(key, delegate.describe(format, viewPath, objectSelector));
+        }
+        return new StringReader(result);
+    }
+
+    @Override
+    public Reader describe(String format, String[] objectSelectors) throws IOException, InterruptedException {
+        String key = getKey(DESCRIBE, format, null, StringUtils.join(objectSelectors, ' '));
+        String result = (String) results.get(key);
+        if (result == null) {
+            return remember(key, delegate.describe(format, objectSelectors));
+        }
+        return new StringReader(result);
+    }
+
+    @Override
+    public Reader describe(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException {
+        String key = getKey(DESCRIBE, format, viewPath, StringUtils.join(objectSelectors, ' '));
+        String result = (String) results.get(key);
+        if (result == null) {
+            return remember(key, delegate.describe(format, viewPath, objectSelectors));
+        }
+        return new StringReader(result);
+    }
+
+    @Override
+    public Reader describeIgnoringErrors(String format, String viewPath, String[] objectSelectors) throws IOException, InterruptedException {
+        return delegate.describeIgnoringErrors(format, viewPath, objectSelectors);
+    }
+
+    @Override
+    public Reader diffbl(EnumSet<DiffBlOptions> options, String baseline1, String baseline2, String viewPath) throws IOException {
+        return delegate.diffbl(options, baseline1, baseline2, viewPath);
+    }
+
+    @Override
+    public boolean doesSetcsSupportOverride() throws IOException, InterruptedException {
+        return delegate.doesSetcsSupportOverride();
+    }
+
+    @Override
+    public boolean doesStreamExist(String streamSelector) throws IOException, InterruptedException {
+        String key = getKey(DOES_STREAM_EXIST, streamSelector);
+        Boolean result = (Boolean) results.get(key);
+        if (result == null) {
+            result = delegate.doesStreamExist(streamSelector);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean doesViewExist(String viewTag) throws IOException, InterruptedException {
+        String key = getKey(DOES_VIEW_EXIST, viewTag);
+        Boolean result = (Boolean) results.get(key);
+        if (result == null) {
+            result = delegate.doesViewExist(viewTag);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void endView(String viewTag) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.endView(viewTag);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void endViewServer(String viewTag) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.endViewServer(viewTag);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    /**
+     * @return the decorated cleartool
+     */
+    public ClearTool getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ClearToolLauncher getLauncher() {
+        return delegate.getLauncher();
+    }
+
+    @Override
+    public Properties getViewData(String viewTag) throws IOException, InterruptedException {
+        String key = getKey(GET_VIEW_DATA, viewTag);
+        Properties result = (Properties) results.get(key);
+        if (result == null) {
+            result = delegate.getViewData(viewTag);
+            remember(key, result);
+        }
+        // the properties are mutable
+        Properties copy = new Properties();
+        if (result != null) {
+            copy.putAll(result);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean lock(String comment, String objectSelector) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            return delegate.lock(comment, objectSelector);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void logRedundantCleartoolError(String[] cmd, Exception ex) {
+        delegate.logRedundantCleartoolError(cmd, ex);
+    }
+
+    @Override
+    public Reader lsactivity(String activity, String commandFormat, String viewPath) throws IOException, InterruptedException {
+        return delegate.lsactivity(activity, commandFormat, viewPath);
+    }
+
+    @Override
+    public Reader lsactivity(String[] activities, String commandFormat, String viewPath) throws IOException, InterruptedException {
+        return delegate.lsactivity(activities, commandFormat, viewPath);
+    }
+
+    @Override
+    public Reader lsactivityIn(String streamSelector, String commandFormat, String viewPath) throws IOException, InterruptedException {
+        return delegate.lsactivityIn(streamSelector, commandFormat, viewPath);
+    }
+
+    @Override
+    public String lsbl(String baselineName, String format) throws IOException, InterruptedException {
+        return delegate.lsbl(baselineName, format);
+    }
+
+    @Override
+    public String lscurrentview(String viewPath) throws IOException, InterruptedException {
+        String key = getKey(LSCURRENTVIEW, viewPath);
+        String result = (String) results.get(key);
+        if (result == null) {
+            result = delegate.lscurrentview(viewPath);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public LsHistoryCommand lshistory() throws IOException, InterruptedException {
+        return delegate.lshistory();
+    }
+
+    @Override
+    @Deprecated
+    public Reader lshistory(String format, Date lastBuildDate, String viewPath, String branch, String[] pathsInView, boolean getMinor) throws IOException,
+            InterruptedException {
+        return delegate.lshistory(format, lastBuildDate, viewPath, branch, pathsInView, getMinor);
+    }
+
+    @Override
+    @Deprecated
+    public Reader lshistory(String format, Date lastBuildDate, String viewPath, String branch, String[] pathsInView, boolean getMinor, boolean useRecurse)
+            throws IOException, InterruptedException {
+        return delegate.lshistory(format, lastBuildDate, viewPath, branch, pathsInView, getMinor, useRecurse);
+    }
+
+    @Override
+    public List<HistoryEntry> lshistory(LsHistoryParser parser, String format, Date lastBuildDate, String viewPath, String branch, String[] pathsInView,
+            boolean getMinor, boolean useRecurse) throws IOException, InterruptedException, ParseException {
+        return delegate.lshistory(parser, format, lastBuildDate, viewPath, branch, pathsInView, getMinor, useRecurse);
+    }
+
+    @Override
+    public String lsproject(String viewTag, String format) throws InterruptedException, IOException {
+        String key = getKey(LSPROJECT, viewTag, format);
+        String result = (String) results.get(key);
+        if (result == null) {
+            result = delegate.lsproject(viewTag, format);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public String lsstream(String stream, String viewTag, String format) throws IOException, InterruptedException {
+        String key = getKey(LSSTREAM, stream, viewTag, format);
+        String result = (String) results.get(key);
+        if (result == null) {
+            result = delegate.lsstream(stream, viewTag, format);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> lsview(boolean onlyActiveDynamicViews) throws IOException, InterruptedException {
+        String key = getKey(LSVIEW, String.valueOf(onlyActiveDynamicViews));
+        List<String> result = (List<String>) results.get(key);
+        if (result == null) {
+            result = delegate.lsview(onlyActiveDynamicViews);
+            remember(key, result);
+        }
+        return result == null ? null : new ArrayList<String>(result);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> lsvob(boolean onlyMounted) throws IOException, InterruptedException {
+        String key = getKey(LSVOB, String.valueOf(onlyMounted));
+        List<String> result = (List<String>) results.get(key);
+        if (result == null) {
+            result = delegate.lsvob(onlyMounted);
+            remember(key, result);
+        }
+        return result == null ? null : new ArrayList<String>(result);
+    }
+
+    @Override
+    public List<Baseline> mkbl(String name, String viewTag, String comment, boolean fullBaseline, boolean identical, List<String> components, String dDependOn,
+            String aDependOn) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            return delegate.mkbl(name, viewTag, comment, fullBaseline, identical, components, dDependOn, aDependOn);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void mklabel(String viewPath, String label) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.mklabel(viewPath, label);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void mkstream(String parentStream, String stream) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.mkstream(parentStream, stream);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void mkview(MkViewParameters params) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.mkview(params);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void mkview(String viewPath, String viewTag, String streamSelector) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.mkview(viewPath, viewTag, streamSelector);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void mkview(String viewPath, String viewTag, String streamSelector, String defaultStorageDir) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.mkview(viewPath, viewTag, streamSelector, defaultStorageDir);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void mountVobs() throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.mountVobs();
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public String pwv(String viewPath) throws IOException, InterruptedException {
+        String key = getKey(PWV, viewPath);
+        String result = (String) results.get(key);
+        if (result == null) {
+            result = delegate.pwv(viewPath);
+            remember(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void rebaseDynamic(String viewTag, String baseline) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.rebaseDynamic(viewTag, baseline);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void recommendBaseline(String streamSelector) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.recommendBaseline(streamSelector);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void rmtag(String tag) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.rmtag(tag);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void rmview(String viewPath) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.rmview(viewPath);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void rmviewtag(String viewTag) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.rmviewtag(viewTag);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void rmviewUuid(String viewUuid) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.rmviewUuid(viewUuid);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void setBaselinePromotionLevel(String baselineName, DefaultPromotionLevel promotionLevel) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.setBaselinePromotionLevel(baselineName, promotionLevel);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void setBaselinePromotionLevel(String baselineName, String promotionLevel) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.setBaselinePromotionLevel(baselineName, promotionLevel);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void setcs(String viewPath, SetcsOption option, String configSpec) throws IOException, InterruptedException {
+        forget(CONFIG_SPEC);
+        try {
+            delegate.setcs(viewPath, option, configSpec);
+        } finally {
+            forget(CONFIG_SPEC);
+        }
+    }
+
+    @Override
+    public CleartoolUpdateResult setcs2(String viewPath, SetcsOption option, String configSpec) throws IOException, InterruptedException {
+        forget(CONFIG_SPEC);
+        try {
+            return delegate.setcs2(viewPath, option, configSpec);
+        } finally {
+            forget(CONFIG_SPEC);
+        }
+    }
+
+    @Override
+    public void setcsTag(String viewTag, SetcsOption option, String configSpec) throws IOException, InterruptedException {
+        forget(CONFIG_SPEC);
+        try {
+            delegate.setcsTag(viewTag, option, configSpec);
+        } finally {
+            forget(CONFIG_SPEC);
+        }
+    }
+
+    @Override
+    public void startView(String viewTags) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.startView(viewTags);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void unlock(String comment, String objectSelector) throws IOException, InterruptedException {
+        forget(UCM);
+        try {
+            delegate.unlock(comment, objectSelector);
+        } finally {
+            forget(UCM);
+        }
+    }
+
+    @Override
+    public void unregisterView(String viewUuid) throws IOException, InterruptedException {
+        forget(VIEW);
+        try {
+            delegate.unregisterView(viewUuid);
+        } finally {
+            forget(VIEW);
+        }
+    }
+
+    @Override
+    public void update(String viewPath, String[] loadRules) throws IOException, InterruptedException {
+        forget(CONFIG_SPEC);
+        try {
+            delegate.update(viewPath, loadRules);
+        } finally {
+            forget(CONFIG_SPEC);
+        }
+    }
+
+    @Override
+    public CleartoolUpdateResult update2(String viewPath, String[] loadRules) throws IOException, InterruptedException {
+        forget(CONFIG_SPEC);
+        try {
+            return delegate.update2(viewPath, loadRules);
+        } finally {
+            forget(CONFIG_SPEC);
+        }
+    }
+
+    @Override
+    public CleartoolVersion version() throws IOException, InterruptedException, CleartoolVersionParsingException {
+        return delegate.version();
+    }
+
+    /**
+     * Forgets the results of the given commands. Called before the changing command runs, so that its results are forgotten even if it fails, and after
+     * it, so that the results of the commands run in parallel while it ran are forgotten too.
+     */
+    private void forget(String... commands) {
+        for (Iterator<String> it = results.keySet().iterator(); it.hasNext();) {
+            String command = StringUtils.substringBefore(it.next(), "\n");
+            for (String forgotten : commands) {
+                if (forgotten.equals(command)) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    private String getKey(String command, String... args) {
+        StringBuilder key = new StringBuilder(command);
+        for (String arg : args) {
+            key.append('\n').append(arg);
+        }
+        return key.toString();
+    }
+
+    private void remember(String key, Object result) {
+        if (result != null) {
+            results.put(key, result);
+        }
+    }
+
+    /**
+     * Remembers an output if it is not longer than {@link #MAX_OUTPUT_LENGTH}.
+     *
+     * @return a reader of the whole output
+     */
+    private Reader remember(String key, Reader reader) throws IOException {
+        if (reader == null) {
+            return null;
+        }
+        // reads at most one character more than the maximum length, with a buffer growing with the output
+        StringBuilder output = new StringBuilder();
+        char[] buffer = new char[Math.min(BUFFER_SIZE, MAX_OUTPUT_LENGTH + 1)];
+        int read = 0;
+        while (output.length() <= MAX_OUTPUT_LENGTH
+                && (read = reader.read(buffer, 0, Math.min(buffer.length, MAX_OUTPUT_LENGTH + 1 - output.length()))) >= 0) {
+            output.append(buffer, 0, read);
+        }
+        if (output.length() <= MAX_OUTPUT_LENGTH) {
+            reader.close();
+            String result = output.toString();
+            results.put(key, result);
+            return new StringReader(result);
+        }
+        PushbackReader pushbackReader = new PushbackReader(reader, output.length());
+        pushbackReader.unread(output.toString().toCharArray());
+        return pushbackReader;
+    }
+}
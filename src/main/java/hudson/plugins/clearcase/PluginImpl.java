@@ -26,6 +26,7 @@ package hudson.plugins.clearcase;
 
 import hudson.Extension;
 import hudson.Plugin;
+import hudson.plugins.clearcase.metrics.CleartoolMetrics;
 
 /**
  * ClearCase plugin.
@@ -44,4 +45,14 @@ public class PluginImpl extends Plugin {
     public static ClearCaseSCM.ClearCaseScmDescriptor getDescriptor() {
         return BASE_DESCRIPTOR;
     }
+
+    @Override
+    public void start() throws Exception {
+        CleartoolMetrics.get().register();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        CleartoolMetrics.get().unregister();
+    }
 }
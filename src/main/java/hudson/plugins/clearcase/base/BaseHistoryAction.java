@@ -34,24 +34,35 @@ import hudson.FilePath;
 import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
 import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
 import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.ClearToolLauncher;
 import hudson.plugins.clearcase.UpdtEntry;
 import hudson.plugins.clearcase.history.AbstractHistoryAction;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.HistoryEntry;
 import hudson.plugins.clearcase.util.ChangeLogEntryMerger;
 import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
+import hudson.plugins.clearcase.util.ConcurrencyUtils;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.io.LineIterator;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 
 /**
@@ -59,9 +70,22 @@ import org.apache.commons.lang.Validate;
  */
 public class BaseHistoryAction extends AbstractHistoryAction {
 
-    private static final String[]  HISTORY_FORMAT = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION };
+    /**
+     * Maximum number of describe commands run in parallel to compute an UPDT change set. 1 (the default) runs them sequentially.
+     */
+    private static final int       DESCRIBE_CONCURRENCY      = Integer.getInteger(BaseHistoryAction.class.getName() + ".describeConcurrency", 1);
 
-    private ClearToolFormatHandler historyHandler = new ClearToolFormatHandler(HISTORY_FORMAT);
+    /**
+     * Maximum length of the object selectors given to a single describe command, to stay below the command line limit of the node. The default depends
+     * on the node: cmd.exe limits command lines to 8191 characters on Windows.
+     */
+    private static final int       DESCRIBE_SELECTORS_LENGTH = Integer.getInteger(BaseHistoryAction.class.getName() + ".describeSelectorsLength", 0);
+
+    private static final String[]  HISTORY_FORMAT            = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION };
+
+    private static final Logger    LOG                       = Logger.getLogger(BaseHistoryAction.class.getName());
+
+    private ClearToolFormatHandler historyHandler            = new ClearToolFormatHandler(HISTORY_FORMAT);
     private int                    maxTimeDifferenceMillis;
 
     public BaseHistoryAction(ClearTool cleartool, boolean useDynamicView, Filter filter, ChangeSetLevel changeset, boolean useRecurse,
@@ -95,30 +119,130 @@ public class BaseHistoryAction extends AbstractHistoryAction {
         return entryMerger.getMergedList(fullList);
     }
 
+    /**
+     * Splits the object selectors in chunks short enough to be given to a single describe command.
+     */
+    static List<String[]> chunkSelectors(List<String> selectors, int maxLength) {
+        List<String[]> chunks = new ArrayList<String[]>();
+        int start = 0;
+        int length = 0;
+        for (int i = 0; i < selectors.size(); i++) {
+            // a separator and quotes for each argument
+            int selectorLength = selectors.get(i).length() + 3;
+            if (i > start && length + selectorLength > maxLength) {
+                chunks.add(selectors.subList(start, i).toArray(new String[i - start]));
+                start = i;
+                length = 0;
+            }
+            length += selectorLength;
+        }
+        if (start < selectors.size()) {
+            chunks.add(selectors.subList(start, selectors.size()).toArray(new String[selectors.size() - start]));
+        }
+        return chunks;
+    }
+
+    /**
+     * Describes versions with the history format. If describe fails for some of them, the versions are split in two halves which are described separately,
+     * so that a version which cannot be described only loses its own history. Failures are not reported in the build log: the versions which cannot be
+     * described are added to <code>dropped</code> instead.
+     */
+    private List<HistoryEntry> describeVersions(String viewPath, String[] selectors, List<String> dropped) throws IOException, InterruptedException {
+        List<HistoryEntry> history = new ArrayList<HistoryEntry>();
+        try {
+            String output = readDescribeOutput(viewPath, selectors);
+            if (output != null) {
+                parseLsHistory(new BufferedReader(new StringReader(output)), history);
+                return history;
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Unable to describe " + selectors.length + " versions", e);
+        } catch (ParseException e) {
+            LOG.log(Level.FINE, "Unable to parse the description of " + selectors.length + " versions", e);
+            if (selectors.length == 1) {
+                // keep what was parsed
+                return history;
+            }
+        }
+        if (selectors.length == 1) {
+            // skip describe errors
+            dropped.add(selectors[0]);
+            return history;
+        }
+        int half = selectors.length / 2;
+        List<HistoryEntry> halves = describeVersions(viewPath, Arrays.copyOfRange(selectors, 0, half), dropped);
+        halves.addAll(describeVersions(viewPath, Arrays.copyOfRange(selectors, half, selectors.length), dropped));
+        return halves;
+    }
+
+    private List<HistoryEntry> describeVersionsInParallel(final String viewPath, List<String[]> chunks, List<String> dropped) throws IOException,
+    InterruptedException {
+        final Semaphore nodeSemaphore = ConcurrencyUtils.getNodeSemaphore(cleartool.getLauncher());
+        ExecutorService executor = ConcurrencyUtils.newExecutor("ClearCase describe", Math.min(DESCRIBE_CONCURRENCY, chunks.size()));
+        try {
+            List<Future<List<HistoryEntry>>> results = new ArrayList<Future<List<HistoryEntry>>>();
+            final List<List<String>> droppedByChunk = new ArrayList<List<String>>();
+            for (final String[] chunk : chunks) {
+                final List<String> chunkDropped = new ArrayList<String>();
+                droppedByChunk.add(chunkDropped);
+                results.add(executor.submit(new Callable<List<HistoryEntry>>() {
+                    @Override
+                    public List<HistoryEntry> call() throws Exception {
+                        nodeSemaphore.acquire();
+                        try {
+                            return describeVersions(viewPath, chunk, chunkDropped);
+                        } finally {
+                            nodeSemaphore.release();
+                        }
+                    }
+                }));
+            }
+            // Merge in the order of the chunks, so that the result is the same as when running sequentially
+            List<HistoryEntry> history = new ArrayList<HistoryEntry>();
+            for (int i = 0; i < results.size(); i++) {
+                history.addAll(ConcurrencyUtils.getResult(results.get(i)));
+                dropped.addAll(droppedByChunk.get(i));
+            }
+            return history;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int getDescribeSelectorsLength() {
+        if (DESCRIBE_SELECTORS_LENGTH > 0) {
+            return DESCRIBE_SELECTORS_LENGTH;
+        }
+        ClearToolLauncher launcher = cleartool.getLauncher();
+        return launcher != null && launcher.isUnix() ? 65536 : 7000;
+    }
+
     @Override
     protected ClearToolFormatHandler getHistoryFormatHandler() {
         return historyHandler;
     }
 
     @Override
-    protected HistoryEntry parseEventLine(Matcher matcher, String line) throws ParseException {
+    protected HistoryEntry parseEventLine(ClearToolFormatTokenizer fields, String line) throws ParseException {
         // read values;
         HistoryEntry entry = new HistoryEntry();
         entry.setLine(line);
 
-        entry.setDateText(matcher.group(1));
-        entry.setUser(matcher.group(2).trim());
-        entry.setElement(matcher.group(3).trim());
-        entry.setVersionId(matcher.group(4).trim());
-        entry.setEvent(matcher.group(5).trim());
-        entry.setOperation(matcher.group(6).trim());
+        entry.setDateText(fields.field(1));
+        entry.setUser(fields.trimmedField(2));
+        entry.setElement(fields.trimmedField(3));
+        entry.setVersionId(fields.trimmedField(4));
+        entry.setEvent(fields.trimmedField(5));
+        entry.setOperation(fields.trimmedField(6));
         return entry;
     }
 
+    /**
+     * Computes the history of the new and updated versions of an update, describing them in as few commands as the command line limit allows.
+     */
     protected List<HistoryEntry> parseUpdt(FilePath updtFile, String viewPath) throws IOException, InterruptedException {
         Validate.notNull(updtFile);
-        List<HistoryEntry> history = new ArrayList<HistoryEntry>();
-        List<UpdtEntry> updtEntries = new ArrayList<UpdtEntry>();
+        List<String> selectors = new ArrayList<String>();
         InputStream is = updtFile.read();
         try {
             LineIterator it = org.apache.commons.io.IOUtils.lineIterator(is, "UTF-8");
@@ -126,28 +250,56 @@ public class BaseHistoryAction extends AbstractHistoryAction {
                 String line = it.nextLine();
                 UpdtEntry entry = UpdtEntry.getEntryFromLine(line);
                 if (entry.getState() == UpdtEntry.State.NEW || entry.getState() == UpdtEntry.State.UPDATED) {
-                    updtEntries.add(entry);
+                    selectors.add(entry.getObjectSelectorNewVersion());
                 }
             }
         } finally {
             org.apache.commons.io.IOUtils.closeQuietly(is);
         }
-        for (UpdtEntry entry : updtEntries) {
-            try {
-                BufferedReader reader = new BufferedReader(cleartool.describe(getLsHistoryFormat(), viewPath, entry.getObjectSelectorNewVersion()));
-                try {
-                    parseLsHistory(reader, history);
-                } catch (ParseException e) {
-                    // no op
-                }
-                reader.close();
-            } catch (IOException e) {
-                // skip describe errors
+        List<String[]> chunks = chunkSelectors(selectors, getDescribeSelectorsLength());
+        List<String> dropped = new ArrayList<String>();
+        List<HistoryEntry> history;
+        if (DESCRIBE_CONCURRENCY > 1 && chunks.size() > 1) {
+            history = describeVersionsInParallel(viewPath, chunks, dropped);
+        } else {
+            history = new ArrayList<HistoryEntry>();
+            for (String[] chunk : chunks) {
+                history.addAll(describeVersions(viewPath, chunk, dropped));
+            }
+        }
+        if (!dropped.isEmpty()) {
+            String message = "Unable to describe " + dropped.size() + " updated versions, they are not in the change log: " + StringUtils.join(dropped, ", ");
+            ClearToolLauncher launcher = cleartool.getLauncher();
+            if (launcher != null && launcher.getListener() != null) {
+                launcher.getListener().getLogger().println(message);
+            } else {
+                LOG.warning(message);
             }
         }
         return history;
     }
 
+    /**
+     * @return the output of describe, or null if it reports errors
+     */
+    private String readDescribeOutput(String viewPath, String[] selectors) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(cleartool.describeIgnoringErrors(getLsHistoryFormat(), viewPath, selectors));
+        try {
+            StringBuilder output = new StringBuilder();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("cleartool: Error:")) {
+                    LOG.log(Level.FINE, "Unable to describe {0} versions: {1}", new Object[] { selectors.length, line });
+                    return null;
+                }
+                output.append(line).append('\n');
+            }
+            return output.toString();
+        } finally {
+            // stops describe if it is still running
+            reader.close();
+        }
+    }
+
     @Override
     protected List<HistoryEntry> runLsHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
     InterruptedException {
@@ -30,7 +30,6 @@ import hudson.plugins.clearcase.action.SaveChangeLogAction;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 
@@ -41,8 +40,6 @@ public class BaseSaveChangeLogAction implements SaveChangeLogAction {
 
     @Override
     public void saveChangeLog(File changeLogFile, List<? extends Entry> entries) throws IOException, InterruptedException {
-        FileOutputStream fileOutputStream = new FileOutputStream(changeLogFile);
-        ClearCaseChangeLogSet.saveToChangeLog(fileOutputStream, (List<ClearCaseChangeLogEntry>) entries);
-        fileOutputStream.close();
+        ClearCaseChangeLogSet.saveToChangeLog(changeLogFile, (List<ClearCaseChangeLogEntry>) entries);
     }
 }
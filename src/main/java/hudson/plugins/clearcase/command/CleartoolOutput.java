@@ -5,17 +5,35 @@ import java.io.InputStream;
 public class CleartoolOutput {
     
     private final InputStream inputStream;
+    private final boolean streaming;
     private final boolean successful;
     
     CleartoolOutput(InputStream inputStream, boolean successful){
+        this(inputStream, successful, false);
+    }
+
+    /**
+     * @param streaming
+     *            true if the input stream reads the output of the command while it is still running; it must then be closed by the caller
+     */
+    CleartoolOutput(InputStream inputStream, boolean successful, boolean streaming){
         this.inputStream = inputStream;
         this.successful = successful;
+        this.streaming = streaming;
     }
 
     public InputStream getInputStream(){
         return inputStream;
     }
 
+    /**
+     * @return true if the output is read from the running command. The command has then not completed yet, and {@link #isSuccessful()} only tells that
+     *         it could be started.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     public boolean isSuccessful() {
         return successful;
     }
@@ -1,22 +1,41 @@
 package hudson.plugins.clearcase.command;
 
 import hudson.FilePath;
+import hudson.FilePath.FileCallable;
+import hudson.Launcher.LocalLauncher;
+import hudson.Proc;
 import hudson.model.TaskListener;
 import hudson.plugins.clearcase.ClearToolLauncher;
+import hudson.plugins.clearcase.HudsonClearToolLauncher;
+import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.history.LsHistoryParser;
+import hudson.plugins.clearcase.metrics.CleartoolMetrics;
+import hudson.plugins.clearcase.util.ProcInputStream;
+import hudson.remoting.VirtualChannel;
 import hudson.util.ArgumentListBuilder;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
+import org.jenkinsci.remoting.Role;
+import org.jenkinsci.remoting.RoleChecker;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -26,6 +45,63 @@ import com.google.common.annotations.VisibleForTesting;
  */
 public class LsHistoryCommand implements CleartoolCommand {
 
+    /**
+     * The entries accepted on the node of the view, with the size of the output and the outcome of lshistory for the metrics.
+     */
+    private static final class Parsed implements Serializable {
+        private static final long        serialVersionUID = 1L;
+
+        private final boolean            failed;
+        private final List<HistoryEntry> history;
+        private final long               outputBytes;
+
+        Parsed(List<HistoryEntry> history, long outputBytes, boolean failed) {
+            this.history = history;
+            this.outputBytes = outputBytes;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Runs lshistory on the node of the view and parses its output there.
+     */
+    private static final class ParseOnNode implements FileCallable<Parsed> {
+        private static final long     serialVersionUID = 1L;
+
+        private final String[]        cmd;
+        private final String[]        env;
+        private final LsHistoryParser parser;
+
+        ParseOnNode(String[] cmd, String[] env, LsHistoryParser parser) {
+            this.cmd = cmd;
+            this.env = env;
+            this.parser = parser;
+        }
+
+        @Override
+        public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+            roleChecker.check(this, Role.UNKNOWN);
+        }
+
+        @Override
+        public Parsed invoke(File viewPath, VirtualChannel channel) throws IOException, InterruptedException {
+            Proc proc = new LocalLauncher(TaskListener.NULL).launch().cmds(cmd).envs(env).readStdout().pwd(viewPath).start();
+            ProcInputStream output = new ProcInputStream(proc, proc.getStdout());
+            CountingInputStream counter = new CountingInputStream(output);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(counter));
+            List<HistoryEntry> history = new ArrayList<HistoryEntry>();
+            try {
+                parser.parse(reader, history);
+            } catch (ParseException e) {
+                throw new IOException(e);
+            } finally {
+                // stops lshistory if it is still running
+                reader.close();
+            }
+            return new Parsed(history, counter.getByteCount(), output.getExitCode() > 0);
+        }
+    }
+
     private static final Logger LOGGER = Logger.getLogger(LsHistoryCommand.class.getName());
     /**
      * the name of the branch to get history events for; if null then history events for all branches are listed
@@ -51,6 +127,11 @@ public class LsHistoryCommand implements CleartoolCommand {
      * lists events recorded since (that is, at or after) the specified date-time
      */
     private Date                since;
+    /**
+     * if true the output is read while the command is running instead of being buffered in memory. Enabled by default with the system property
+     * <code>hudson.plugins.clearcase.command.LsHistoryCommand.streaming</code>
+     */
+    private boolean             streaming = Boolean.getBoolean(LsHistoryCommand.class.getName() + ".streaming");
     /**
      * if true use -recurse command, else use -all command (default) this option is mutually exclusive with numberOfLastEvents (see
      * http://publib.boulder.ibm.com/infocenter/cchelp/v7r1m2/index.jsp?topic=%2Fcom.ibm.rational.clearcase.cc_ref.doc%2Ftopics%2Fct_lshistory.htm)
@@ -74,6 +155,15 @@ public class LsHistoryCommand implements CleartoolCommand {
     @Override
     public CleartoolOutput execute(ClearToolLauncher launcher, TaskListener listener) throws IOException, InterruptedException {
         ArgumentListBuilder cmd = generateCommandLine();
+        if (streaming) {
+            LOGGER.log(Level.FINE, "cmd={0} streaming output", cmd.toStringWithQuote());
+            try {
+                return new CleartoolOutput(launcher.runAndStream(cmd.toCommandArray(), viewPath, true), true, true);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, null, e);
+                return new CleartoolOutput(new ByteArrayInputStream(new byte[0]), false);
+            }
+        }
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         boolean successful = false;
         try {
@@ -88,6 +178,45 @@ public class LsHistoryCommand implements CleartoolCommand {
         return new CleartoolOutput(new ByteArrayInputStream(baos.toByteArray()), successful);
     }
 
+    /**
+     * Runs the command on the node of the view, and parses its output there with the given parser, so that only the accepted entries are sent back instead
+     * of the whole output. As when streaming, the exit code of lshistory is ignored. The command line is logged to the listener of the launcher, and the
+     * command is recorded in its metrics.
+     *
+     * @return the accepted entries, or null if the launcher cannot run the command on the node of the view, or if running it there failed, for instance
+     *         because the parser could not be sent to the node: the command must then be run with {@link #execute(ClearToolLauncher, TaskListener)}
+     */
+    public List<HistoryEntry> executeAndParse(ClearToolLauncher launcher, LsHistoryParser parser) throws IOException, InterruptedException, ParseException {
+        if (!(launcher instanceof HudsonClearToolLauncher)) {
+            return null;
+        }
+        HudsonClearToolLauncher hudsonLauncher = (HudsonClearToolLauncher) launcher;
+        ArgumentListBuilder cmd = generateCommandLine();
+        LOGGER.log(Level.FINE, "cmd={0} parsed on the node", cmd.toStringWithQuote());
+        String verb = cmd.toList().get(0);
+        cmd.prepend(hudsonLauncher.getExecutable());
+        hudsonLauncher.getListener().getLogger().println("[" + viewPath.getName() + "] $ " + cmd.toStringWithQuote());
+        CleartoolMetrics metrics = hudsonLauncher.getMetrics();
+        String node = hudsonLauncher.getNodeName();
+        long begin = metrics.begin(node);
+        Parsed parsed = null;
+        try {
+            parsed = viewPath.act(new ParseOnNode(cmd.toCommandArray(), hudsonLauncher.getEnv(), parser));
+            return parsed.history;
+        } catch (IOException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof ParseException) {
+                    throw (ParseException) cause;
+                }
+            }
+            // The exit code of lshistory is never checked, so this is not a cleartool error: let the caller run lshistory the usual way
+            LOGGER.log(Level.FINE, "Unable to parse the output of lshistory on the node of " + viewPath + ", it will be parsed locally", e);
+            return null;
+        } finally {
+            metrics.end(verb, node, begin, parsed == null ? 0 : parsed.outputBytes, parsed == null || parsed.failed);
+        }
+    }
+
     @VisibleForTesting
     void validate() {
         if (useRecurse && numberOfLastEvents != 0) {
@@ -183,6 +312,10 @@ public class LsHistoryCommand implements CleartoolCommand {
         return considerMinorEvents;
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     public boolean isUseRecurse() {
         return useRecurse;
     }
@@ -221,6 +354,10 @@ public class LsHistoryCommand implements CleartoolCommand {
         this.since = since;
     }
 
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public void setUseRecurse(boolean useRecurse) {
         this.useRecurse = useRecurse;
     }
@@ -234,6 +371,11 @@ public class LsHistoryCommand implements CleartoolCommand {
         return this;
     }
 
+    public LsHistoryCommand streaming() {
+        setStreaming(true);
+        return this;
+    }
+
     public LsHistoryCommand useRecurse() {
         setUseRecurse(true);
         return this;
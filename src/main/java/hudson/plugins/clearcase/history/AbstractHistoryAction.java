@@ -30,6 +30,8 @@ import hudson.FilePath;
 import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
+import hudson.plugins.clearcase.util.ConcurrencyUtils;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.BufferedReader;
@@ -41,21 +43,39 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 
+import com.google.common.annotations.VisibleForTesting;
+
 /**
  * @author hlyh
  */
 public abstract class AbstractHistoryAction implements HistoryAction {
 
-    private static final Logger LOG = Logger.getLogger(AbstractHistoryAction.class.getName());
+    private static final Logger LOG                   = Logger.getLogger(AbstractHistoryAction.class.getName());
+
+    /**
+     * Maximum number of lshistory commands run in parallel when several branches are watched. 1 (the default) runs them sequentially.
+     */
+    private static final int    LSHISTORY_CONCURRENCY = Integer.getInteger(AbstractHistoryAction.class.getName() + ".lshistoryConcurrency", 1);
+
+    /**
+     * If true, the lshistory output is parsed and filtered on the node of the view, and only the accepted entries are sent back to the master.
+     */
+    private static final boolean PARSE_ON_NODE        = Boolean.getBoolean(AbstractHistoryAction.class.getName() + ".parseOnNode");
 
     protected ClearTool         cleartool;
     protected String            extendedViewPath;
@@ -63,7 +83,21 @@ public abstract class AbstractHistoryAction implements HistoryAction {
     boolean                     useRecurse;
     private ChangeSetLevel      changeset;
     private Filter              filter;
+    /**
+     * true while looking for the first accepted entry only, in which case lshistory is stopped as soon as an entry is accepted
+     */
+    private boolean             firstAcceptedEntryOnly;
+    /**
+     * the lshistory entries already accepted by the filter while parsing, which do not need to be filtered again
+     */
+    private final Set<HistoryEntry> filteredWhileParsing = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<HistoryEntry, Boolean>()));
+    private int                 lshistoryConcurrency  = LSHISTORY_CONCURRENCY;
     private FilePath            updtFile;
+    /**
+     * true while the view was already checked and started for a coordinated poll, in which case lshistory does not start it again
+     */
+    private boolean             viewPrepared;
+    private HistoryWatermark    watermark;
 
     public AbstractHistoryAction(ClearTool cleartool, boolean isDynamicView, Filter filter, ChangeSetLevel changeset, boolean useRecurse) {
         this.cleartool = cleartool;
@@ -94,6 +128,10 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         return extendedViewPath;
     }
 
+    public Filter getFilter() {
+        return filter;
+    }
+
     public String getLsHistoryFormat() {
         return MessageFormat.format("{0}{1}{2}", getHistoryFormatHandler().getFormat(), COMMENT, LINEEND);
     }
@@ -104,11 +142,48 @@ public abstract class AbstractHistoryAction implements HistoryAction {
 
     @Override
     public boolean hasChanges(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException, InterruptedException {
-        if (needsLsHistoryForHasChanges(viewTag, viewPaths)) {
-            List<HistoryEntry> historyEntries = runAndFilterLsHistory(time, viewPath, viewTag, branchNames, viewPaths);
-            return historyEntries.size() > 0;
+        return hasChangesInHistory(time, viewPath, viewTag, branchNames, viewPaths);
+    }
+
+    /**
+     * Tells whether there are changes, sharing the history poll through the given coordinator with the other polls of the same configuration. The view
+     * of this job is checked and started before, since the configuration does not identify it: only the result of lshistory is shared.
+     *
+     * @param configuration
+     *            identifies the branches, the load rules and the filters of the poll, see {@link PollingCoordinator#hasChanges(String, Date, Callable)}
+     */
+    public boolean hasChanges(PollingCoordinator coordinator, String configuration, final Date time, final String viewPath, final String viewTag,
+            final String[] branchNames, final String[] viewPaths) throws IOException, InterruptedException {
+        if (!needsLsHistoryForHasChanges(viewTag, viewPaths)) {
+            return false;
+        }
+        prepareViewForHistory(viewTag);
+        viewPrepared = true;
+        try {
+            return coordinator.hasChanges(configuration, time, new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws IOException, InterruptedException {
+                    return hasAcceptedEntries(time, viewPath, viewTag, branchNames, viewPaths);
+                }
+            });
+        } finally {
+            viewPrepared = false;
         }
-        return false;
+    }
+
+    /**
+     * @return true if lshistory finds an accepted entry
+     */
+    protected boolean hasChangesInHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
+    InterruptedException {
+        return needsLsHistoryForHasChanges(viewTag, viewPaths) && hasAcceptedEntries(time, viewPath, viewTag, branchNames, viewPaths);
+    }
+
+    /**
+     * @return true if the history is only retrieved to know whether there are changes, in which case the retrieval can stop at the first accepted entry
+     */
+    public boolean isFirstAcceptedEntryOnly() {
+        return firstAcceptedEntryOnly;
     }
 
     /**
@@ -127,21 +202,61 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         this.updtFile = updtFile;
     }
 
+    /**
+     * @param lshistoryConcurrency
+     *            the maximum number of lshistory commands run in parallel when several branches are watched, 1 to run them sequentially
+     */
+    @VisibleForTesting
+    void setLshistoryConcurrency(int lshistoryConcurrency) {
+        this.lshistoryConcurrency = lshistoryConcurrency;
+    }
+
+    /**
+     * Sets the watermark telling which part of the history of each branch was already read. lshistory then starts at the watermark, and the events
+     * already seen are skipped. The watermark is updated with the events read.
+     */
+    public void setWatermark(HistoryWatermark watermark) {
+        this.watermark = watermark;
+    }
+
     protected abstract List<? extends Entry> buildChangelog(String viewPath, List<HistoryEntry> entries) throws IOException, InterruptedException;
 
+    /**
+     * Creates the parser used when the lshistory output is parsed on the node of the view. Subclasses overriding
+     * {@link #parseEventLine(ClearToolFormatTokenizer, String)} must return a parser creating the same entries.
+     *
+     * @param entryFilter
+     *            the filter of the entries, null to keep them all
+     * @param stopAtFirstEntry
+     *            true to stop at the first accepted entry
+     */
+    protected LsHistoryParser createLsHistoryParser(Filter entryFilter, boolean stopAtFirstEntry) {
+        return new LsHistoryParser(getHistoryFormatHandler().createTokenizer().getFieldCount(), extendedViewPath, entryFilter, stopAtFirstEntry);
+    }
+
     protected List<HistoryEntry> filterEntries(List<HistoryEntry> entries) throws IOException, InterruptedException {
         if (filter == null) {
             LOG.fine("no filter");
             return entries;
         }
         List<HistoryEntry> filtered = new ArrayList<HistoryEntry>();
+        boolean loggable = LOG.isLoggable(Level.FINE);
         for (HistoryEntry entry : entries) {
+            if (filteredWhileParsing.contains(entry)) {
+                filtered.add(entry);
+                continue;
+            }
             boolean accepted = filter.accept(entry);
-            LOG.log(Level.FINE, "filter={0} entry={1} accepted={2}", new Object[] { filter, entry, accepted });
+            if (loggable) {
+                LOG.log(Level.FINE, "filter={0} entry={1} accepted={2}", new Object[] { filter, entry, accepted });
+            }
             if (accepted) {
                 filtered.add(entry);
             }
         }
+        if (loggable && filter instanceof FilterChain) {
+            LOG.log(Level.FINE, "filter statistics={0}", ((FilterChain) filter).getStatistics());
+        }
         return filtered;
     }
 
@@ -158,23 +273,31 @@ public abstract class AbstractHistoryAction implements HistoryAction {
                 !ArrayUtils.isEmpty(loadRules);
     }
 
-    protected abstract HistoryEntry parseEventLine(Matcher matcher, String line) throws IOException, InterruptedException, ParseException;
+    /**
+     * Creates the entry described by a line of the lshistory output.
+     *
+     * @param fields
+     *            the fields of the line, as found with the history format handler
+     */
+    protected abstract HistoryEntry parseEventLine(ClearToolFormatTokenizer fields, String line) throws IOException, InterruptedException, ParseException;
 
     protected void parseLsHistory(BufferedReader reader, Collection<HistoryEntry> history) throws IOException, InterruptedException, ParseException {
-        HistoryEntry previousEntry = null;
-
-        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-            if (!gotACleartoolError(line)) {
-                Matcher matcher = getHistoryFormatHandler().checkLine(line);
-                if (startOfLsHistoryEntry(matcher)) {
-                    previousEntry = buildHistoryEntry(history, line, matcher);
-                } else {
-                    tryToAttachLineToPreviousEntry(previousEntry, line);
-                }
-            } else {
-                processError(line);
+        parseLsHistory(reader, history, null, false);
+    }
+
+    /**
+     * Parses the lshistory output with {@link #parseEventLine(ClearToolFormatTokenizer, String)}, see {@link LsHistoryParser}.
+     */
+    private void parseLsHistory(BufferedReader reader, Collection<HistoryEntry> history, Filter entryFilter, boolean stopAtFirstEntry) throws IOException,
+    InterruptedException, ParseException {
+        LsHistoryParser parser = new LsHistoryParser(getHistoryFormatHandler().createTokenizer().getFieldCount(), extendedViewPath, entryFilter,
+                stopAtFirstEntry) {
+            @Override
+            protected HistoryEntry parseEventLine(ClearToolFormatTokenizer fields, String line) throws IOException, InterruptedException, ParseException {
+                return AbstractHistoryAction.this.parseEventLine(fields, line);
             }
-        }
+        };
+        parser.parse(reader, history);
     }
 
     protected List<HistoryEntry> runLsHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
@@ -191,14 +314,6 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         return historyEntries;
     }
 
-    private HistoryEntry buildHistoryEntry(Collection<HistoryEntry> history, String line, Matcher matcher) throws IOException, InterruptedException,
-    ParseException {
-        HistoryEntry currentEntry;
-        currentEntry = parseEventLine(matcher, line).normalize(extendedViewPath);
-        history.add(currentEntry);
-        return currentEntry;
-    }
-
     private BufferedReader getLsHistoryBufferedReader(Date time, String viewPath, String[] viewPaths, String branchName) throws IOException,
     InterruptedException {
         return new BufferedReader(getLsHistoryReader(time, viewPath, viewPaths, branchName));
@@ -208,8 +323,16 @@ public abstract class AbstractHistoryAction implements HistoryAction {
         return cleartool.lshistory(getLsHistoryFormat(), time, viewPath, branchName, viewPaths, needMinorEvents(), useRecurse);
     }
 
-    private boolean gotACleartoolError(String line) {
-        return line.startsWith("cleartool: Error:");
+    private boolean hasAcceptedEntries(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
+    InterruptedException {
+        // One accepted entry is enough to know that there are changes
+        firstAcceptedEntryOnly = true;
+        try {
+            List<HistoryEntry> historyEntries = runAndFilterLsHistory(time, viewPath, viewTag, branchNames, viewPaths);
+            return historyEntries.size() > 0;
+        } finally {
+            firstAcceptedEntryOnly = false;
+        }
     }
 
     private boolean needMinorEvents() {
@@ -234,43 +357,120 @@ public abstract class AbstractHistoryAction implements HistoryAction {
     }
 
     private void prepareViewForHistory(String viewTag) throws IOException, InterruptedException {
-        if (isDynamicView) {
+        if (isDynamicView && !viewPrepared) {
             cleartool.startView(viewTag);
         }
     }
 
-    private void processError(String line) {
-        // TODO: better error handling
+    private void retrieveBranchHistoryEntries(Date time, String viewPath, String[] viewPaths, String branchName, Collection<HistoryEntry> historyEntries)
+            throws IOException, InterruptedException, ParseException {
+        Date since = time;
+        Filter branchFilter = filter;
+        if (watermark != null) {
+            since = watermark.getSince(branchName, time);
+            branchFilter = watermark.filter(branchName, filter);
+        } else if (PARSE_ON_NODE) {
+            // the watermark records the events read, so it is only used when the output is parsed here
+            List<HistoryEntry> entries = cleartool.lshistory(createLsHistoryParser(branchFilter, firstAcceptedEntryOnly), getLsHistoryFormat(), since,
+                    viewPath, branchName, viewPaths, needMinorEvents(), useRecurse);
+            if (entries != null) {
+                addFilteredWhileParsing(entries, historyEntries);
+                return;
+            }
+        }
+        List<HistoryEntry> branchEntries = new ArrayList<HistoryEntry>();
+        BufferedReader bufferedReader = getLsHistoryBufferedReader(since, viewPath, viewPaths, branchName);
+        try {
+            // Entries are filtered while parsing to keep only the relevant ones in memory
+            parseLsHistory(bufferedReader, branchEntries, branchFilter, firstAcceptedEntryOnly);
+        } finally {
+            // stops lshistory if it is still running
+            bufferedReader.close();
+        }
+        addFilteredWhileParsing(branchEntries, historyEntries);
+    }
+
+    /**
+     * Adds entries accepted by the filter while parsing, so that {@link #filterEntries(List)} does not evaluate them again.
+     */
+    private void addFilteredWhileParsing(List<HistoryEntry> entries, Collection<HistoryEntry> historyEntries) {
+        if (filter != null) {
+            filteredWhileParsing.addAll(entries);
+        }
+        historyEntries.addAll(entries);
     }
 
     private List<HistoryEntry> retrieveHistoryEntries(Date time, String viewPath, String[] branchNames, String[] viewPaths) throws IOException,
     InterruptedException, ParseException {
+        String[] branches = normalizeBranches(branchNames);
+        if (lshistoryConcurrency > 1 && branches.length > 1) {
+            return retrieveHistoryEntriesInParallel(time, viewPath, branches, viewPaths);
+        }
         List<HistoryEntry> historyEntries = new ArrayList<HistoryEntry>();
-        for (String branchName : normalizeBranches(branchNames)) {
-            BufferedReader bufferedReader = getLsHistoryBufferedReader(time, viewPath, viewPaths, branchName);
-            parseLsHistory(bufferedReader, historyEntries);
-            bufferedReader.close();
+        for (String branchName : branches) {
+            retrieveBranchHistoryEntries(time, viewPath, viewPaths, branchName, historyEntries);
+            if (firstAcceptedEntryOnly && !historyEntries.isEmpty()) {
+                break;
+            }
         }
         return historyEntries;
     }
 
-    private List<HistoryEntry> runAndFilterLsHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
-    InterruptedException {
-        List<HistoryEntry> historyEntries = runLsHistory(time, viewPath, viewTag, branchNames, viewPaths);
-        List<HistoryEntry> filtered = filterEntries(historyEntries);
-        LOG.log(Level.FINE, "@{0} historyEntries={1} -> {2}", new Object[] { time, historyEntries, filtered });
-        return filtered;
-    }
-
-    private boolean startOfLsHistoryEntry(Matcher matcher) {
-        return matcher != null;
+    private List<HistoryEntry> retrieveHistoryEntriesInParallel(final Date time, final String viewPath, String[] branches, final String[] viewPaths)
+            throws IOException, InterruptedException, ParseException {
+        final Semaphore nodeSemaphore = ConcurrencyUtils.getNodeSemaphore(cleartool.getLauncher());
+        ExecutorService executor = ConcurrencyUtils.newExecutor("ClearCase lshistory", Math.min(lshistoryConcurrency, branches.length));
+        try {
+            List<Future<List<HistoryEntry>>> results = new ArrayList<Future<List<HistoryEntry>>>();
+            for (final String branchName : branches) {
+                results.add(executor.submit(new Callable<List<HistoryEntry>>() {
+                    @Override
+                    public List<HistoryEntry> call() throws Exception {
+                        nodeSemaphore.acquire();
+                        try {
+                            List<HistoryEntry> branchEntries = new ArrayList<HistoryEntry>();
+                            retrieveBranchHistoryEntries(time, viewPath, viewPaths, branchName, branchEntries);
+                            return branchEntries;
+                        } finally {
+                            nodeSemaphore.release();
+                        }
+                    }
+                }));
+            }
+            // Merge in the order of the branches, so that the result is the same as when running sequentially
+            List<HistoryEntry> historyEntries = new ArrayList<HistoryEntry>();
+            for (Future<List<HistoryEntry>> result : results) {
+                if (firstAcceptedEntryOnly && !historyEntries.isEmpty()) {
+                    break;
+                }
+                try {
+                    historyEntries.addAll(result.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ParseException) {
+                        throw (ParseException) e.getCause();
+                    }
+                    throw ConcurrencyUtils.unwrap(e);
+                }
+            }
+            return historyEntries;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
-    private void tryToAttachLineToPreviousEntry(HistoryEntry previousEntry, String line) {
-        if (previousEntry != null) {
-            previousEntry.appendComment(line).appendComment("\n");
-        } else {
-            LOG.warning("Got the comment : \"" + line + "\" but couldn't attach it to any entry");
+    private List<HistoryEntry> runAndFilterLsHistory(Date time, String viewPath, String viewTag, String[] branchNames, String[] viewPaths) throws IOException,
+    InterruptedException {
+        List<HistoryEntry> historyEntries;
+        List<HistoryEntry> filtered;
+        try {
+            historyEntries = runLsHistory(time, viewPath, viewTag, branchNames, viewPaths);
+            filtered = filterEntries(historyEntries);
+        } finally {
+            filteredWhileParsing.clear();
+        }
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "@{0} historyEntries={1} -> {2}", new Object[] { time, historyEntries, filtered });
         }
+        return filtered;
     }
 }
@@ -51,4 +51,9 @@ public class DefaultFilter implements Filter {
         return false;
     }
 
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
 }
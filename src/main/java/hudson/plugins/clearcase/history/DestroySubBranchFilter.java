@@ -46,4 +46,9 @@ public class DestroySubBranchFilter implements Filter {
         return false;
     }
 
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
 }
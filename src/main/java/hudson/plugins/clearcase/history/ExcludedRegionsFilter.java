@@ -0,0 +1,134 @@
+package hudson.plugins.clearcase.history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Rejects the entries whose element contains one of the excluded regions.
+ * <p>
+ * It rejects exactly the same entries as one {@link FileFilter} of type {@link FieldFilter.Type#DoesNotContainRegxp} per excluded region, but the
+ * excluded regions are combined into a single alternation, so that each element is searched once instead of once per region. The regions which would
+ * not keep their meaning inside an alternation (back references, named groups, quotations and comments) are still searched separately.
+ * </p>
+ * <p>
+ * Filters are cached by excluded regions, so that polling does not compile the same regions again and again.
+ * </p>
+ */
+public class ExcludedRegionsFilter implements Filter {
+
+    private static final int                                CACHE_SIZE     = 100;
+
+    private static final Map<List<String>, ExcludedRegionsFilter> CACHE    = new LinkedHashMap<List<String>, ExcludedRegionsFilter>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, ExcludedRegionsFilter> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Constructs which depend on their position in the pattern, or which would extend past the end of the region
+     */
+    private static final Pattern                            NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\\\Q|\\(\\?[a-zA-Z-]*x");
+
+    private final Pattern                                   combined;
+    private final List<Pattern>                             separate       = new ArrayList<Pattern>();
+    private final List<String>                              regions;
+
+    /**
+     * @param regions
+     *            the excluded regions, empty ones are ignored
+     * @throws java.util.regex.PatternSyntaxException
+     *             if one of the regions is not a valid regular expression
+     */
+    public ExcludedRegionsFilter(String[] regions) {
+        List<String> nonEmpty = new ArrayList<String>();
+        StringBuilder alternation = new StringBuilder();
+        if (regions != null) {
+            for (String region : regions) {
+                if (StringUtils.isEmpty(region)) {
+                    continue;
+                }
+                nonEmpty.add(region);
+                // compiled even when combined, so that invalid regions are reported as before
+                Pattern pattern = Pattern.compile(region);
+                if (NOT_COMBINABLE.matcher(region).find()) {
+                    separate.add(pattern);
+                } else {
+                    if (alternation.length() > 0) {
+                        alternation.append('|');
+                    }
+                    alternation.append("(?:").append(region).append(')');
+                }
+            }
+        }
+        this.regions = Collections.unmodifiableList(nonEmpty);
+        this.combined = alternation.length() > 0 ? Pattern.compile(alternation.toString()) : null;
+    }
+
+    /**
+     * @return the filter for the given excluded regions, compiled only once
+     */
+    public static ExcludedRegionsFilter get(String[] regions) {
+        List<String> key = new ArrayList<String>();
+        if (regions != null) {
+            for (String region : regions) {
+                if (StringUtils.isNotEmpty(region)) {
+                    key.add(region);
+                }
+            }
+        }
+        synchronized (CACHE) {
+            ExcludedRegionsFilter filter = CACHE.get(key);
+            if (filter == null) {
+                filter = new ExcludedRegionsFilter(key.toArray(new String[key.size()]));
+                CACHE.put(key, filter);
+            }
+            return filter;
+        }
+    }
+
+    @Override
+    public boolean accept(HistoryEntry entry) {
+        return accept(entry.getElement());
+    }
+
+    public boolean accept(String element) {
+        String value = StringUtils.defaultString(element);
+        if (combined != null && combined.matcher(value).find()) {
+            return false;
+        }
+        for (Pattern pattern : separate) {
+            if (pattern.matcher(value).find()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<String> getRegions() {
+        return regions;
+    }
+
+    /**
+     * @return true if there is no excluded region, in which case all the entries are accepted
+     */
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+
+    @Override
+    public boolean requiresMinorEvents() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{regions=" + regions + '}';
+    }
+}
@@ -24,10 +24,14 @@
  */
 package hudson.plugins.clearcase.history;
 
+import java.io.Serializable;
+
 /**
+ * Filters are serializable, so that the history can be filtered on the node where it is read.
+ * 
  * @author Henrik L. Hansen (henrik.lynggaard@gmail.com)
  */
-public interface Filter {
+public interface Filter extends Serializable {
 
     public boolean accept(HistoryEntry element);
 
@@ -24,42 +24,166 @@
  */
 package hudson.plugins.clearcase.history;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A filter that chains a collection of filters. It fill filter all elements that get filtered by any of underlying filters
+ * <p>
+ * The chain counts, for each filter, the entries evaluated and rejected. In adaptive mode, enabled with the system property
+ * <code>hudson.plugins.clearcase.history.FilterChain.adaptive</code>, it also measures the time spent in each filter, and the filters are regularly
+ * reordered from these counters, so that the cheapest and most selective ones run first. Since an entry is accepted only if all the filters accept it,
+ * the order does not change the result.
+ * </p>
  * 
  * @author vlatombe
  */
 public class FilterChain implements Filter {
 
-    private final Collection<Filter> filters;
+    public static final boolean ADAPTIVE         = Boolean.getBoolean(FilterChain.class.getName() + ".adaptive");
+
+    private static final Logger LOG              = Logger.getLogger(FilterChain.class.getName());
+
+    /**
+     * Number of evaluated entries between two reorderings in adaptive mode
+     */
+    private static final int    REORDER_INTERVAL = 256;
+
+    /**
+     * Counters of a filter of the chain.
+     */
+    public static final class FilterStatistics implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicLong evaluated = new AtomicLong();
+        private final Filter     filter;
+        private final AtomicLong nanos     = new AtomicLong();
+        private final AtomicLong rejected  = new AtomicLong();
+
+        private FilterStatistics(Filter filter) {
+            this.filter = filter;
+        }
+
+        /**
+         * @return the mean time spent to evaluate an entry divided by the rejection rate, i.e. the mean cost to reject an entry with this filter
+         */
+        private double getCostPerRejection() {
+            long evaluatedCount = evaluated.get();
+            if (evaluatedCount == 0) {
+                // never evaluated yet: give it a chance to run first
+                return 0;
+            }
+            // each evaluation costs at least a nanosecond, even when the clock is too coarse to measure it
+            return (double) (nanos.get() + evaluatedCount) / (rejected.get() + 1);
+        }
+
+        public long getEvaluated() {
+            return evaluated.get();
+        }
+
+        public Filter getFilter() {
+            return filter;
+        }
+
+        /**
+         * @return the time spent in the filter, only measured in adaptive mode
+         */
+        public long getNanos() {
+            return nanos.get();
+        }
+
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        private void record(boolean accepted, long elapsed) {
+            evaluated.incrementAndGet();
+            nanos.addAndGet(elapsed);
+            if (!accepted) {
+                rejected.incrementAndGet();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return filter + "{evaluated=" + evaluated + ", rejected=" + rejected + ", nanos=" + nanos + '}';
+        }
+    }
+
+    private final boolean                adaptive;
+    private final AtomicLong             evaluations = new AtomicLong();
+    private final Collection<Filter>     filters;
+    private volatile FilterStatistics[]  order;
+    private final List<FilterStatistics> statistics;
 
     public FilterChain(Collection<Filter> filters) {
+        this(filters, ADAPTIVE);
+    }
+
+    /**
+     * @param adaptive
+     *            true to reorder the filters from their measured cost and selectivity
+     */
+    public FilterChain(Collection<Filter> filters, boolean adaptive) {
         super();
         this.filters = (filters != null) ? filters : new ArrayList<Filter>();
+        this.adaptive = adaptive;
+        List<FilterStatistics> list = new ArrayList<FilterStatistics>();
+        for (Filter filter : this.filters) {
+            list.add(new FilterStatistics(filter));
+        }
+        this.statistics = Collections.unmodifiableList(list);
+        this.order = list.toArray(new FilterStatistics[list.size()]);
     }
 
     @Override
     public boolean accept(HistoryEntry element) {
-        for (Filter f : filters) {
-            boolean accepted = f.accept(element);
-            Logger.getLogger(FilterChain.class.getName()).log(Level.FINE, "filter={0} element={1} -> {2}", new Object[] { f, element, accepted });
+        boolean accepted = true;
+        for (FilterStatistics filter : order) {
+            if (adaptive) {
+                long start = System.nanoTime();
+                accepted = filter.filter.accept(element);
+                filter.record(accepted, System.nanoTime() - start);
+            } else {
+                accepted = filter.filter.accept(element);
+                filter.record(accepted, 0);
+            }
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "filter={0} element={1} -> {2}", new Object[] { filter.filter, element, accepted });
+            }
             if (!accepted) {
-                return false;
+                break;
             }
         }
-        return true;
+        if (adaptive && evaluations.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+        return accepted;
     }
 
     public Collection<Filter> getFilters() {
         return Collections.unmodifiableCollection(filters);
     }
 
+    /**
+     * @return the counters of each filter, in the order the filters were given
+     */
+    public List<FilterStatistics> getStatistics() {
+        return statistics;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
     @Override
     public boolean requiresMinorEvents() {
         for (Filter f : filters) {
@@ -75,4 +199,26 @@ public class FilterChain implements Filter {
         return "FilterChain{" + "filters=" + filters + '}';
     }
 
+    private void reorder() {
+        FilterStatistics[] newOrder = order.clone();
+        // the counters change while sorting, so sort a snapshot of the costs
+        final double[] costs = new double[newOrder.length];
+        Integer[] indexes = new Integer[newOrder.length];
+        for (int i = 0; i < newOrder.length; i++) {
+            costs[i] = newOrder[i].getCostPerRejection();
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(costs[o1], costs[o2]);
+            }
+        });
+        FilterStatistics[] sorted = new FilterStatistics[newOrder.length];
+        for (int i = 0; i < indexes.length; i++) {
+            sorted[i] = newOrder[indexes[i]];
+        }
+        order = sorted;
+    }
+
 }
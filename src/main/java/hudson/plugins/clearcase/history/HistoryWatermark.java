@@ -0,0 +1,165 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.Util;
+import hudson.XmlFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Remembers, for each branch, up to which point the history has already been scanned by polling, so that the next poll only reads the new events.
+ * <p>
+ * The watermark of a branch is the timestamp of the newest event seen. The next lshistory starts at this timestamp minus the multi-site poll buffer, and
+ * the events already seen in this window (the events at the boundary, and the ones replicated late) are skipped thanks to their digests.
+ * </p>
+ * <p>
+ * A watermark is only valid for the configuration it was computed with, since events rejected with a configuration may be accepted with another one. It
+ * must only be saved after a poll which did not find any change: otherwise the accepted events would be skipped by the next polls if the build does not
+ * happen.
+ * </p>
+ * Watermarks are enabled with the system property <code>hudson.plugins.clearcase.history.HistoryWatermark.enabled</code>.
+ */
+public class HistoryWatermark {
+
+    public static final boolean ENABLED   = Boolean.getBoolean(HistoryWatermark.class.getName() + ".enabled");
+
+    private static final String FILE_NAME = "clearcase-history-watermark.xml";
+
+    private static final Logger LOG       = Logger.getLogger(HistoryWatermark.class.getName());
+
+    private static final class BranchWatermark {
+        /**
+         * Time of the newest event seen
+         */
+        private long              newest;
+        /**
+         * Digests of the events seen in the window read again by the next lshistory, with their time
+         */
+        private Map<String, Long> seen = new HashMap<String, Long>();
+    }
+
+    private final Map<String, BranchWatermark> branches = new HashMap<String, BranchWatermark>();
+    private final long                         bufferMillis;
+    private final String                       configuration;
+
+    /**
+     * @param configuration
+     *            a digest of the configuration affecting which events are accepted
+     * @param bufferMillis
+     *            the multi-site poll buffer
+     */
+    public HistoryWatermark(String configuration, long bufferMillis) {
+        this.configuration = configuration;
+        this.bufferMillis = bufferMillis;
+    }
+
+    /**
+     * Loads the watermark saved in the given directory, or creates an empty one if there is none or if it was computed with another configuration.
+     */
+    public static HistoryWatermark load(File dir, String configuration, long bufferMillis) {
+        XmlFile file = getFile(dir);
+        if (file.exists()) {
+            try {
+                HistoryWatermark watermark = (HistoryWatermark) file.read();
+                if (StringUtils.equals(configuration, watermark.configuration) && watermark.bufferMillis == bufferMillis) {
+                    return watermark;
+                }
+                LOG.log(Level.FINE, "Configuration changed, ignoring history watermark {0}", file);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to read history watermark " + file, e);
+            } catch (ClassCastException e) {
+                LOG.log(Level.WARNING, "Unable to read history watermark " + file, e);
+            }
+        }
+        return new HistoryWatermark(configuration, bufferMillis);
+    }
+
+    private static XmlFile getFile(File dir) {
+        return new XmlFile(new File(dir, FILE_NAME));
+    }
+
+    /**
+     * Wraps a filter so that the events already seen on the given branch are rejected, and the others are recorded.
+     */
+    public Filter filter(final String branch, final Filter delegate) {
+        return new Filter() {
+            @Override
+            public boolean accept(HistoryEntry entry) {
+                if (!record(branch, entry)) {
+                    return false;
+                }
+                return delegate == null || delegate.accept(entry);
+            }
+
+            @Override
+            public boolean requiresMinorEvents() {
+                return delegate != null && delegate.requiresMinorEvents();
+            }
+        };
+    }
+
+    /**
+     * @param since
+     *            the date history is required from, null for the whole history
+     * @return the date from which the history of the branch must be read
+     */
+    public synchronized Date getSince(String branch, Date since) {
+        BranchWatermark watermark = branches.get(branch);
+        if (watermark == null) {
+            return since;
+        }
+        long start = watermark.newest - bufferMillis;
+        if (since == null || since.getTime() < start) {
+            return new Date(start);
+        }
+        return since;
+    }
+
+    /**
+     * Records an event read on a branch.
+     *
+     * @return false if the event was already seen
+     */
+    public synchronized boolean record(String branch, HistoryEntry entry) {
+        if (entry.getDate() == null) {
+            return true;
+        }
+        BranchWatermark watermark = branches.get(branch);
+        if (watermark == null) {
+            watermark = new BranchWatermark();
+            branches.put(branch, watermark);
+        }
+        long time = entry.getDate().getTime();
+        String digest = Util.getDigestOf(StringUtils.defaultString(entry.getLine()));
+        if (watermark.seen.containsKey(digest)) {
+            return false;
+        }
+        if (time > watermark.newest) {
+            watermark.newest = time;
+            for (Iterator<Long> it = watermark.seen.values().iterator(); it.hasNext();) {
+                if (it.next() < time - bufferMillis) {
+                    it.remove();
+                }
+            }
+        }
+        if (time >= watermark.newest - bufferMillis) {
+            watermark.seen.put(digest, time);
+        }
+        return true;
+    }
+
+    /**
+     * Saves the watermark in the given directory.
+     */
+    public synchronized void save(File dir) throws IOException {
+        getFile(dir).write(this);
+    }
+}
@@ -0,0 +1,188 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.plugins.clearcase.util.PathUtil;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Accepts the entries whose element is under one of the load rules.
+ * <p>
+ * It accepts exactly the same entries as a {@link FileFilter} of type {@link FieldFilter.Type#ContainsRegxp} built with
+ * {@link hudson.plugins.clearcase.AbstractClearCaseScm#getViewPathsRegexp(String[], boolean)}: the element must contain a load rule followed by a file
+ * separator, or end with a load rule. Instead of trying each alternative of the regular expression, the load rules are compiled into an Aho-Corasick
+ * automaton, so that checking an element only takes one pass over it, whatever the number of load rules.
+ * </p>
+ */
+public class LoadRuleFilter implements Filter {
+
+    private static final class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * true if a load rule ends here, i.e. the element matches if it ends here
+         */
+        private boolean    anchored;
+        private Node[]     children = new Node[0];
+        /**
+         * true if a load rule followed by a separator ends here, i.e. the element matches
+         */
+        private boolean    contained;
+        private Node       failure;
+        private char[]     labels   = new char[0];
+        private Map<Character, Node> pending = new TreeMap<Character, Node>();
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrCreate(char c) {
+            Node child = pending.get(c);
+            if (child == null) {
+                child = new Node();
+                pending.put(c, child);
+            }
+            return child;
+        }
+
+        private void freeze() {
+            labels = new char[pending.size()];
+            children = new Node[pending.size()];
+            int i = 0;
+            for (Map.Entry<Character, Node> entry : pending.entrySet()) {
+                labels[i] = entry.getKey();
+                children[i] = entry.getValue();
+                i++;
+            }
+            pending = null;
+        }
+    }
+
+    private final List<String> loadRules = new ArrayList<String>();
+    private final Node         root      = new Node();
+
+    /**
+     * @param loadRules
+     *            the load rules, as given to {@link hudson.plugins.clearcase.AbstractClearCaseScm#getViewPathsRegexp(String[], boolean)}
+     * @param isUnix
+     *            true if the elements are unix paths
+     */
+    public LoadRuleFilter(String[] loadRules, boolean isUnix) {
+        if (loadRules != null) {
+            for (String loadRule : loadRules) {
+                if (StringUtils.isNotEmpty(loadRule)) {
+                    if (loadRule.endsWith("/") || loadRule.endsWith("\\")) {
+                        loadRule = loadRule.substring(0, loadRule.length() - 1);
+                    }
+                    loadRule = PathUtil.convertPathForOS(loadRule, isUnix);
+                    this.loadRules.add(loadRule);
+                    add(loadRule + PathUtil.fileSepForOS(isUnix)).contained = true;
+                    add(loadRule).anchored = true;
+                }
+            }
+        }
+        build();
+    }
+
+    @Override
+    public boolean accept(HistoryEntry entry) {
+        return accept(entry.getElement());
+    }
+
+    public boolean accept(String element) {
+        String value = StringUtils.defaultString(element);
+        int length = value.length();
+        // like $ in a regular expression, a load rule can end before a final line terminator
+        int anchor1 = length;
+        int anchor2 = -1;
+        if (length > 0 && isLineTerminator(value.charAt(length - 1))) {
+            if (value.charAt(length - 1) == '\n' && length > 1 && value.charAt(length - 2) == '\r') {
+                anchor2 = length - 2;
+            } else {
+                anchor2 = length - 1;
+            }
+        }
+        Node state = root;
+        if (state.anchored && (anchor1 == 0 || anchor2 == 0)) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            state = next(state, value.charAt(i));
+            if (state.contained || (state.anchored && (i + 1 == anchor1 || i + 1 == anchor2))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if there is no load rule, in which case no element is accepted
+     */
+    public boolean isEmpty() {
+        return loadRules.isEmpty();
+    }
+
+    @Override
+    public boolean requiresMinorEvents() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{loadRules=" + loadRules + '}';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private Node add(String pattern) {
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            node = node.getOrCreate(pattern.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Computes the failure links breadth first, so that each node also knows the rules ending at its suffixes.
+     */
+    private void build() {
+        root.freeze();
+        LinkedList<Node> queue = new LinkedList<Node>();
+        for (Node child : root.children) {
+            child.failure = root;
+            child.anchored |= root.anchored;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+            node.freeze();
+            for (int i = 0; i < node.labels.length; i++) {
+                Node child = node.children[i];
+                child.failure = next(node.failure, node.labels[i]);
+                child.anchored |= child.failure.anchored;
+                child.contained |= child.failure.contained;
+                queue.add(child);
+            }
+        }
+    }
+
+    private Node next(Node state, char c) {
+        for (Node node = state; node != null; node = node.failure) {
+            Node child = node.child(c);
+            if (child != null) {
+                return child;
+            }
+        }
+        return root;
+    }
+}
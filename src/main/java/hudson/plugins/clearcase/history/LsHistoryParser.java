@@ -0,0 +1,137 @@
+package hudson.plugins.clearcase.history;
+
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Serializable;
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parses the lshistory output line by line. When a filter is given, each entry is filtered as soon as it is complete (i.e. when the next entry starts) and
+ * only the accepted entries are kept, so that the memory used does not depend on the size of the output. When only the first accepted entry is needed, the
+ * parsing stops as soon as there is one.
+ * <p>
+ * The parser is serializable, so that the output can be parsed on the node running lshistory and only the accepted entries sent back.
+ * </p>
+ */
+public class LsHistoryParser implements Serializable {
+
+    private static final Logger LOG              = Logger.getLogger(LsHistoryParser.class.getName());
+
+    private static final long   serialVersionUID = 1L;
+
+    private final String        extendedViewPath;
+    private final int           fieldCount;
+    private final Filter        filter;
+    private final boolean       stopAtFirstEntry;
+
+    /**
+     * @param fieldCount
+     *            the number of fields of the lshistory format
+     * @param extendedViewPath
+     *            the path removed from the elements, see {@link HistoryEntry#normalize(String)}
+     * @param filter
+     *            the filter of the entries, null to keep them all
+     * @param stopAtFirstEntry
+     *            true to stop at the first accepted entry
+     */
+    public LsHistoryParser(int fieldCount, String extendedViewPath, Filter filter, boolean stopAtFirstEntry) {
+        this.fieldCount = fieldCount;
+        this.extendedViewPath = extendedViewPath;
+        this.filter = filter;
+        this.stopAtFirstEntry = stopAtFirstEntry;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public boolean isStopAtFirstEntry() {
+        return stopAtFirstEntry;
+    }
+
+    /**
+     * Adds the accepted entries of the output to the given history.
+     */
+    public void parse(BufferedReader reader, Collection<HistoryEntry> history) throws IOException, InterruptedException, ParseException {
+        HistoryEntry previousEntry = null;
+        ClearToolFormatTokenizer fields = new ClearToolFormatTokenizer(fieldCount);
+
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!gotACleartoolError(line)) {
+                if (fields.tokenize(line)) {
+                    addHistoryEntry(history, previousEntry);
+                    if (stopAtFirstEntry && !history.isEmpty()) {
+                        return;
+                    }
+                    previousEntry = parseEventLine(fields, line).normalize(extendedViewPath);
+                } else {
+                    tryToAttachLineToPreviousEntry(previousEntry, line);
+                }
+            } else {
+                processError(line);
+            }
+        }
+        addHistoryEntry(history, previousEntry);
+    }
+
+    /**
+     * Creates the entry described by a line of the lshistory output. The fields are the ones of the base and UCM history formats: date, user, element,
+     * version, event, operation and, when there is a seventh field, activity.
+     *
+     * @param fields
+     *            the fields of the line
+     */
+    protected HistoryEntry parseEventLine(ClearToolFormatTokenizer fields, String line) throws IOException, InterruptedException, ParseException {
+        HistoryEntry entry = new HistoryEntry();
+        entry.setLine(line);
+
+        entry.setDateText(fields.field(1));
+        entry.setUser(fields.trimmedField(2));
+        entry.setElement(fields.trimmedField(3));
+        entry.setVersionId(fields.trimmedField(4));
+        entry.setEvent(fields.trimmedField(5));
+        entry.setOperation(fields.trimmedField(6));
+        if (fields.getFieldCount() >= 7) {
+            entry.setActivityName(fields.trimmedField(7));
+        }
+        return entry;
+    }
+
+    private void addHistoryEntry(Collection<HistoryEntry> history, HistoryEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (filter == null) {
+            history.add(entry);
+            return;
+        }
+        boolean accepted = filter.accept(entry);
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "filter={0} entry={1} accepted={2}", new Object[] { filter, entry, accepted });
+        }
+        if (accepted) {
+            history.add(entry);
+        }
+    }
+
+    private boolean gotACleartoolError(String line) {
+        return line.startsWith("cleartool: Error:");
+    }
+
+    private void processError(String line) {
+        // TODO: better error handling
+    }
+
+    private void tryToAttachLineToPreviousEntry(HistoryEntry previousEntry, String line) {
+        if (previousEntry != null) {
+            previousEntry.appendComment(line).appendComment("\n");
+        } else {
+            LOG.warning("Got the comment : \"" + line + "\" but couldn't attach it to any entry");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package hudson.plugins.clearcase.history;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares the history polls of the jobs watching the same branches and load rules with the same filters, so that the load of polling on the VOB servers
+ * depends on the number of distinct configurations rather than on the number of jobs.
+ * <p>
+ * A poll looks for changes since a given time. Its result is reused, while it runs and for a short time after it completed, by the polls with the same
+ * configuration and the same time. When it did not find any change, it is also reused by the polls looking for changes since a later time, since they
+ * would not find any either. A poll which failed is not reused: the polls waiting for it run their own.
+ * </p>
+ * Polls are shared when the system property <code>hudson.plugins.clearcase.history.PollingCoordinator.enabled</code> is set, for
+ * <code>hudson.plugins.clearcase.history.PollingCoordinator.ttlSeconds</code> (60 by default) after they completed.
+ */
+public class PollingCoordinator {
+
+    public static final boolean             ENABLED  = Boolean.getBoolean(PollingCoordinator.class.getName() + ".enabled");
+
+    private static final PollingCoordinator INSTANCE = new PollingCoordinator(TimeUnit.SECONDS.toMillis(Integer.getInteger(
+                                                             PollingCoordinator.class.getName() + ".ttlSeconds", 60)));
+
+    private static final Logger             LOG      = Logger.getLogger(PollingCoordinator.class.getName());
+
+    /**
+     * A poll, running or completed.
+     */
+    private static final class Poll {
+
+        private volatile long             completed;
+        private final long                since;
+        private final FutureTask<Boolean> task;
+
+        Poll(long since, Callable<Boolean> callable) {
+            this.since = since;
+            this.task = new FutureTask<Boolean>(callable);
+        }
+
+        /**
+         * Waits for the poll.
+         *
+         * @return its result, or null if it failed
+         */
+        Boolean await() throws InterruptedException {
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return completed != 0 && now - completed > ttlMillis;
+        }
+
+        boolean run() throws IOException, InterruptedException {
+            try {
+                task.run();
+                return task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            } finally {
+                completed = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private final ConcurrentMap<String, Poll> polls = new ConcurrentHashMap<String, Poll>();
+    private final long                        ttlMillis;
+
+    PollingCoordinator(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static PollingCoordinator get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Tells whether there are changes since the given time, reusing the result of another poll with the same configuration if possible.
+     *
+     * @param configuration
+     *            identifies the branches, the load rules and the filters of the poll; it must not depend on the job or on the view
+     * @param since
+     *            the time since which changes are looked for
+     * @param poll
+     *            runs the poll, in the calling thread, if no result can be reused
+     */
+    public boolean hasChanges(String configuration, Date since, Callable<Boolean> poll) throws IOException, InterruptedException {
+        long sinceMillis = since.getTime();
+        for (;;) {
+            long now = System.currentTimeMillis();
+            Poll current = polls.get(configuration);
+            if (current != null && !current.isExpired(now, ttlMillis) && current.since <= sinceMillis) {
+                Boolean result = current.await();
+                if (result != null && (!result || current.since == sinceMillis)) {
+                    LOG.log(Level.FINE, "Reusing the poll since {0} of {1}", new Object[] { new Date(current.since), configuration });
+                    return result;
+                }
+            }
+            Poll own = new Poll(sinceMillis, poll);
+            if (current == null ? polls.putIfAbsent(configuration, own) == null : polls.replace(configuration, current, own)) {
+                removeExpired(now);
+                boolean succeeded = false;
+                try {
+                    boolean result = own.run();
+                    succeeded = true;
+                    return result;
+                } finally {
+                    if (!succeeded) {
+                        polls.remove(configuration, own);
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeExpired(long now) {
+        for (Iterator<Poll> it = polls.values().iterator(); it.hasNext();) {
+            if (it.next().isExpired(now, ttlMillis)) {
+                it.remove();
+            }
+        }
+    }
+}
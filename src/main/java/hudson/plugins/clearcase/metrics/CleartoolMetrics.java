@@ -0,0 +1,346 @@
+package hudson.plugins.clearcase.metrics;
+
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Counts, durations, output sizes and failures of the cleartool commands, per verb, and the commands running on each node.
+ * <p>
+ * The controller-wide metrics are {@link #get()}. Each {@link hudson.plugins.clearcase.HudsonClearToolLauncher} also keeps the metrics of its own
+ * commands, so that a checkout can print a summary of the commands it ran.
+ * </p>
+ * <p>
+ * The counters of the {@link UcmMetadataCache} shared by the controller, which saves cleartool commands, are exposed with them. They are counted since the
+ * start of the controller and not reset with the metrics.
+ * </p>
+ */
+public class CleartoolMetrics implements CleartoolMetricsMXBean {
+
+    /**
+     * Metrics of one cleartool verb.
+     */
+    public static class Verb {
+        private final AtomicLong      calls       = new AtomicLong();
+        private final AtomicLong      failures    = new AtomicLong();
+        private final AtomicLongArray histogram   = new AtomicLongArray(DURATION_BUCKETS_MILLIS.length + 1);
+        private final AtomicLong      maxNanos    = new AtomicLong();
+        private final String          name;
+        private final AtomicLong      outputBytes = new AtomicLong();
+        private final AtomicLong      totalNanos  = new AtomicLong();
+
+        Verb(String name) {
+            this.name = name;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * @return the number of calls per duration bucket, the last bucket counting the calls longer than the last bound
+         */
+        public long[] getHistogram() {
+            long[] counts = new long[histogram.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.get(i);
+            }
+            return counts;
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        public long getMeanMillis() {
+            long count = calls.get();
+            return count == 0 ? 0 : getTotalMillis() / count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOutputBytes() {
+            return outputBytes.get();
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+        }
+
+        void record(long nanos, long bytes, boolean failed) {
+            calls.incrementAndGet();
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            outputBytes.addAndGet(bytes);
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < DURATION_BUCKETS_MILLIS.length && millis > DURATION_BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+    }
+
+    /**
+     * Upper bounds, in milliseconds, of the buckets of the duration histograms.
+     */
+    public static final long[]            DURATION_BUCKETS_MILLIS = { 100, 1000, 10000, 60000, 600000 };
+
+    public static final String            OBJECT_NAME             = "hudson.plugins.clearcase:type=CleartoolMetrics";
+
+    private static final CleartoolMetrics INSTANCE                = new CleartoolMetrics(null);
+
+    private static final Logger           LOGGER                  = Logger.getLogger(CleartoolMetrics.class.getName());
+
+    private final ConcurrentMap<String, AtomicInteger> inFlight     = new ConcurrentSkipListMap<String, AtomicInteger>();
+    private final CleartoolMetrics                     parent;
+    private final ConcurrentMap<String, AtomicInteger> peakInFlight = new ConcurrentSkipListMap<String, AtomicInteger>();
+    private final ConcurrentMap<String, Verb>          verbs        = new ConcurrentSkipListMap<String, Verb>();
+
+    /**
+     * @param parent
+     *            the metrics also updated by these ones, or null
+     */
+    public CleartoolMetrics(CleartoolMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return the metrics of the controller
+     */
+    public static CleartoolMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the start of a command.
+     *
+     * @return the start time, to give to {@link #end(String, String, long, long, boolean)}
+     */
+    public long begin(String node) {
+        int count = getOrCreate(inFlight, node).incrementAndGet();
+        AtomicInteger peak = getOrCreate(peakInFlight, node);
+        int max = peak.get();
+        while (count > max && !peak.compareAndSet(max, count)) {
+            max = peak.get();
+        }
+        if (parent != null) {
+            parent.begin(node);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the end of a command.
+     *
+     * @param outputBytes
+     *            the size of the output of the command
+     * @param failed
+     *            whether the command returned a non-zero exit code
+     */
+    public void end(String verb, String node, long begin, long outputBytes, boolean failed) {
+        record(verb, node, System.nanoTime() - begin, outputBytes, failed);
+    }
+
+    @Override
+    public Map<String, Long> getCalls() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Verb verb : verbs.values()) {
+            values.put(verb.getName(), verb.getCalls());
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getDurationBucketsMillis() {
+        return DURATION_BUCKETS_MILLIS.clone();
+    }
+
+    @Override
+    public Map<String, long[]> getDurationHistograms() {
+        Map<String, long[]> values = new TreeMap<String, long[]>();
+        for (Verb verb : verbs.values()) {
+            values.put(verb.getName(), verb.getHistogram());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Verb verb : verbs.values()) {
+            values.put(verb.getName(), verb.getFailures());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Integer> getInFlightCalls() {
+        return toMap(inFlight);
+    }
+
+    @Override
+    public Map<String, Long> getOutputBytes() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Verb verb : verbs.values()) {
+            values.put(verb.getName(), verb.getOutputBytes());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Integer> getPeakInFlightCalls() {
+        return toMap(peakInFlight);
+    }
+
+    @Override
+    public Map<String, Long> getTotalMillis() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Verb verb : verbs.values()) {
+            values.put(verb.getName(), verb.getTotalMillis());
+        }
+        return values;
+    }
+
+    @Override
+    public long getUcmMetadataCacheHits() {
+        return UcmMetadataCache.getInstance().getHitCount();
+    }
+
+    @Override
+    public long getUcmMetadataCacheMisses() {
+        return UcmMetadataCache.getInstance().getMissCount();
+    }
+
+    @Override
+    public long getUcmMetadataCacheSize() {
+        return UcmMetadataCache.getInstance().getSize();
+    }
+
+    /**
+     * @return the metrics of each verb, sorted by verb
+     */
+    public Collection<Verb> getVerbs() {
+        return Collections.unmodifiableCollection(verbs.values());
+    }
+
+    /**
+     * Prints one line per verb, the longest first.
+     */
+    public void printSummary(PrintStream logger) {
+        List<Verb> sorted = new ArrayList<Verb>(verbs.values());
+        if (sorted.isEmpty()) {
+            return;
+        }
+        Collections.sort(sorted, new Comparator<Verb>() {
+            @Override
+            public int compare(Verb v1, Verb v2) {
+                long t1 = v1.getTotalMillis();
+                long t2 = v2.getTotalMillis();
+                return t1 < t2 ? 1 : (t1 == t2 ? v1.getName().compareTo(v2.getName()) : -1);
+            }
+        });
+        logger.println("[INFO] cleartool commands:");
+        for (Verb verb : sorted) {
+            logger.println("[INFO]   " + verb.getName() + ": " + verb.getCalls() + " calls, " + verb.getTotalMillis() + " ms (max " + verb.getMaxMillis()
+                    + " ms), " + FileUtils.byteCountToDisplaySize(verb.getOutputBytes()) + " of output, " + verb.getFailures() + " failed");
+        }
+    }
+
+    /**
+     * Registers the metrics of the controller in the platform MBean server.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Unable to register the cleartool metrics", e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        verbs.clear();
+        peakInFlight.clear();
+    }
+
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Unable to unregister the cleartool metrics", e);
+        }
+    }
+
+    private static <V> V getOrCreate(ConcurrentMap<String, V> map, String key, V value) {
+        V existing = map.putIfAbsent(key, value);
+        return existing == null ? value : existing;
+    }
+
+    private AtomicInteger getOrCreate(ConcurrentMap<String, AtomicInteger> map, String key) {
+        AtomicInteger value = map.get(key);
+        return value == null ? getOrCreate(map, key, new AtomicInteger()) : value;
+    }
+
+    private void record(String verb, String node, long nanos, long outputBytes, boolean failed) {
+        Verb metrics = verbs.get(verb);
+        if (metrics == null) {
+            metrics = getOrCreate(verbs, verb, new Verb(verb));
+        }
+        metrics.record(nanos, outputBytes, failed);
+        getOrCreate(inFlight, node).decrementAndGet();
+        if (parent != null) {
+            parent.record(verb, node, nanos, outputBytes, failed);
+        }
+    }
+
+    private Map<String, Integer> toMap(ConcurrentMap<String, AtomicInteger> counters) {
+        Map<String, Integer> values = new TreeMap<String, Integer>();
+        for (Map.Entry<String, AtomicInteger> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,53 @@
+package hudson.plugins.clearcase.metrics;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.ManagementLink;
+
+import java.io.IOException;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Page of Manage Jenkins showing the {@link CleartoolMetrics} of the controller.
+ */
+@Extension
+public class CleartoolMetricsLink extends ManagementLink {
+
+    @RequirePOST
+    public void doReset(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Hudson.getInstance().checkPermission(Hudson.ADMINISTER);
+        getMetrics().reset();
+        rsp.sendRedirect(".");
+    }
+
+    public long[] getDurationBucketsMillis() {
+        return getMetrics().getDurationBucketsMillis();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Calls, durations, output sizes and failures of the cleartool commands, per verb, and hits of the UCM metadata cache.";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "ClearCase Metrics";
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    public CleartoolMetrics getMetrics() {
+        return CleartoolMetrics.get();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "clearcase-metrics";
+    }
+}
@@ -0,0 +1,40 @@
+package hudson.plugins.clearcase.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link CleartoolMetrics} of the controller, registered as {@value CleartoolMetrics#OBJECT_NAME}. Maps are keyed by cleartool verb, or by
+ * node for the in-flight calls.
+ */
+public interface CleartoolMetricsMXBean {
+
+    Map<String, Long> getCalls();
+
+    /**
+     * @return the number of calls per duration bucket, the bounds of the buckets being {@link #getDurationBucketsMillis()}
+     */
+    Map<String, long[]> getDurationHistograms();
+
+    long[] getDurationBucketsMillis();
+
+    Map<String, Long> getFailures();
+
+    Map<String, Integer> getInFlightCalls();
+
+    Map<String, Long> getOutputBytes();
+
+    Map<String, Integer> getPeakInFlightCalls();
+
+    Map<String, Long> getTotalMillis();
+
+    long getUcmMetadataCacheHits();
+
+    long getUcmMetadataCacheMisses();
+
+    /**
+     * @return the number of values in the UCM metadata cache shared by the controller
+     */
+    long getUcmMetadataCacheSize();
+
+    void reset();
+}
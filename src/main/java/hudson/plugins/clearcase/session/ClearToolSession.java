@@ -0,0 +1,304 @@
+package hudson.plugins.clearcase.session;
+
+import hudson.Launcher;
+import hudson.Proc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A long-lived cleartool process running in interactive mode.
+ * <p>
+ * The process is started with <code>cleartool -status</code>: commands are written one per line on its standard input, and cleartool prints
+ * <code>Command N returned status S</code> after each of them. This line is used as the sentinel separating the output of two consecutive commands, and
+ * gives the exit status of the command.
+ * </p>
+ * <p>
+ * The output is read by a dedicated thread, so that the thread executing a command can give up when it is interrupted or when the command does not
+ * answer in time. The cleartool process is then killed, since the next response could not be told apart from the end of the abandoned one.
+ * </p>
+ * A session is not thread safe, it is meant to be used by one thread at a time through {@link ClearToolSessionPool}.
+ */
+public class ClearToolSession {
+
+    /**
+     * Marks the end of the output
+     */
+    private static final byte[]  EOF            = new byte[0];
+
+    private static final Logger  LOGGER         = Logger.getLogger(ClearToolSession.class.getName());
+
+    /**
+     * ISO-8859-1 maps each byte to one char, so that offsets in the decoded line are offsets in the raw output
+     */
+    private static final Charset RAW            = Charset.forName("ISO-8859-1");
+
+    private static final Pattern SAFE_ARGUMENT  = Pattern.compile("[\\w\\-.,:/@=+%]+");
+
+    private static final Pattern STATUS_PATTERN = Pattern.compile("Command (\\d+) returned status (\\d+)\\s*$");
+
+    private final long                  created;
+    private final BlockingQueue<byte[]> output = new LinkedBlockingQueue<byte[]>();
+    private final InputStream           stdout;
+    private final OutputStream          stdin;
+    private final Proc                  proc;
+    private final long                  timeoutMillis;
+
+    private boolean                     broken;
+    /**
+     * the output read but not processed yet
+     */
+    private byte[]                      chunk  = new byte[0];
+    private int                         chunkPosition;
+    private int                         commandCount;
+    private String                      currentDirectory;
+    private long                        lastUsed;
+
+    /**
+     * @param timeoutMillis
+     *            the maximum time to wait for the response of a command, 0 to wait as long as needed
+     */
+    @VisibleForTesting
+    ClearToolSession(Proc proc, OutputStream stdin, InputStream stdout, long timeoutMillis) {
+        this.proc = proc;
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.timeoutMillis = timeoutMillis;
+        this.created = System.currentTimeMillis();
+        this.lastUsed = created;
+        Thread reader = new Thread("cleartool session output") {
+            @Override
+            public void run() {
+                readOutput();
+            }
+        };
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Starts a new interactive cleartool process.
+     *
+     * @param launcher
+     *            the launcher of the node where the process must run
+     * @param executable
+     *            the cleartool executable
+     * @param timeoutMillis
+     *            the maximum time to wait for the response of a command, 0 to wait as long as needed
+     */
+    public static ClearToolSession start(Launcher launcher, String executable, long timeoutMillis) throws IOException {
+        Proc proc = launcher.launch().cmds(executable, "-status").writeStdin().readStdout().quiet(true).start();
+        return new ClearToolSession(proc, proc.getStdin(), proc.getStdout(), timeoutMillis);
+    }
+
+    /**
+     * Builds the line to send to an interactive cleartool for the given arguments.
+     *
+     * @return the command line, or null if one of the arguments cannot be quoted for the interactive mode (e.g. it contains a line break or both kinds of
+     *         quotes)
+     */
+    public static String toCommandLine(String[] cmd) {
+        StringBuilder line = new StringBuilder();
+        for (String arg : cmd) {
+            if (arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+                return null;
+            }
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            if (SAFE_ARGUMENT.matcher(arg).matches()) {
+                line.append(arg);
+            } else if (arg.indexOf('\'') < 0) {
+                line.append('\'').append(arg).append('\'');
+            } else if (arg.indexOf('"') < 0 && arg.indexOf('\\') < 0) {
+                line.append('"').append(arg).append('"');
+            } else {
+                return null;
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Kills the cleartool process. The session cannot be used anymore afterwards.
+     */
+    public void close() {
+        broken = true;
+        try {
+            stdin.write("quit\n".getBytes(RAW));
+            stdin.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to quit cleartool session", e);
+        }
+        IOUtils.closeQuietly(stdin);
+        IOUtils.closeQuietly(stdout);
+        try {
+            proc.kill();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to kill cleartool session", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executes a command in this session.
+     *
+     * @param commandLine
+     *            the command line, as returned by {@link #toCommandLine(String[])}
+     * @param directory
+     *            optional, the directory where the command must be executed
+     * @param out
+     *            receives the output of the command
+     * @return the exit status of the command
+     * @throws IOException
+     *             if the communication with the cleartool process failed or if the command did not answer in time; the session is then closed
+     * @throws InterruptedException
+     *             if the thread was interrupted while waiting for the response; the session is then closed
+     */
+    public int execute(String commandLine, String directory, OutputStream out) throws IOException, InterruptedException {
+        if (directory != null && !directory.equals(currentDirectory)) {
+            int status = send("cd " + toCommandLine(new String[] { directory }), out);
+            if (status != 0) {
+                return status;
+            }
+            currentDirectory = directory;
+        }
+        return send(commandLine, out);
+    }
+
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Checks that the cleartool process still answers.
+     *
+     * @return true if a trivial command succeeded
+     */
+    public boolean isHealthy() {
+        if (broken) {
+            return false;
+        }
+        try {
+            return send("pwd", new NullOutputStream()) == 0;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "cleartool session failed its health check", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param deadline
+     *            the time after which the command is abandoned, 0 to wait as long as needed
+     * @return the next chunk of output, or {@link #EOF}
+     */
+    private byte[] nextChunk(long deadline) throws IOException, InterruptedException {
+        if (deadline == 0) {
+            return output.take();
+        }
+        byte[] next = output.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        if (next == null) {
+            throw new IOException("cleartool session did not answer within " + timeoutMillis + " ms");
+        }
+        return next;
+    }
+
+    /**
+     * Reads the output of the process until its end, in the reader thread.
+     */
+    private void readOutput() {
+        byte[] buffer = new byte[8192];
+        try {
+            for (int count = stdout.read(buffer); count != -1; count = stdout.read(buffer)) {
+                byte[] read = new byte[count];
+                System.arraycopy(buffer, 0, read, 0, count);
+                output.add(read);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "cleartool session output failed", e);
+        } finally {
+            output.add(EOF);
+        }
+    }
+
+    private int readResponse(int expectedCommand, OutputStream out) throws IOException, InterruptedException {
+        long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        for (;;) {
+            if (chunkPosition == chunk.length) {
+                chunk = nextChunk(deadline);
+                chunkPosition = 0;
+                if (chunk == EOF) {
+                    line.writeTo(out);
+                    throw new IOException("cleartool session terminated unexpectedly");
+                }
+            }
+            while (chunkPosition < chunk.length) {
+                byte b = chunk[chunkPosition++];
+                line.write(b);
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    Matcher matcher = STATUS_PATTERN.matcher(new String(bytes, RAW));
+                    if (matcher.find() && Integer.parseInt(matcher.group(1)) == expectedCommand) {
+                        // output not ending with a line break is followed by the status on the same line
+                        out.write(bytes, 0, matcher.start());
+                        return Integer.parseInt(matcher.group(2));
+                    }
+                    out.write(bytes);
+                    line.reset();
+                }
+            }
+        }
+    }
+
+    private int send(String commandLine, OutputStream out) throws IOException, InterruptedException {
+        if (broken) {
+            throw new IOException("cleartool session is closed");
+        }
+        boolean completed = false;
+        try {
+            stdin.write((commandLine + "\n").getBytes(Charset.defaultCharset()));
+            stdin.flush();
+            int status = readResponse(++commandCount, out);
+            completed = true;
+            return status;
+        } finally {
+            lastUsed = System.currentTimeMillis();
+            if (!completed && !broken) {
+                // kills a process which may still be running the command
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package hudson.plugins.clearcase.session;
+
+import hudson.Launcher;
+import hudson.remoting.VirtualChannel;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.ObjectUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Bounded pools of interactive cleartool sessions, one per node and cleartool executable.
+ * <p>
+ * The pools are configured with system properties:
+ * <ul>
+ * <li><code>hudson.plugins.clearcase.session.ClearToolSessionPool.enabled</code>: use interactive sessions (default false)</li>
+ * <li><code>hudson.plugins.clearcase.session.ClearToolSessionPool.maxSessionsPerNode</code>: maximum number of sessions per node (default 4)</li>
+ * <li><code>hudson.plugins.clearcase.session.ClearToolSessionPool.maxCommandsPerSession</code>: a session is recycled after this number of commands
+ * (default 1000)</li>
+ * <li><code>hudson.plugins.clearcase.session.ClearToolSessionPool.maxIdleSeconds</code>: an idle session is closed after this delay (default 300)</li>
+ * <li><code>hudson.plugins.clearcase.session.ClearToolSessionPool.healthCheckSeconds</code>: a session idle for longer than this delay is checked before
+ * being reused (default 30)</li>
+ * <li><code>hudson.plugins.clearcase.session.ClearToolSessionPool.commandTimeoutSeconds</code>: a session is killed when a command does not answer within
+ * this delay (default 0, no timeout)</li>
+ * </ul>
+ * </p>
+ */
+public class ClearToolSessionPool {
+
+    private static final String               PREFIX                   = ClearToolSessionPool.class.getName();
+
+    public static final boolean               ENABLED                  = Boolean.getBoolean(PREFIX + ".enabled");
+
+    private static final long                 COMMAND_TIMEOUT_MILLIS   = Long.getLong(PREFIX + ".commandTimeoutSeconds", 0) * 1000;
+
+    private static final long                 HEALTH_CHECK_MILLIS      = Long.getLong(PREFIX + ".healthCheckSeconds", 30) * 1000;
+
+    private static final ClearToolSessionPool INSTANCE                 = new ClearToolSessionPool(Integer.getInteger(PREFIX + ".maxSessionsPerNode", 4),
+                                                                               Integer.getInteger(PREFIX + ".maxCommandsPerSession", 1000), Long.getLong(
+                                                                                       PREFIX + ".maxIdleSeconds", 300) * 1000);
+
+    private static final Logger               LOGGER                   = Logger.getLogger(ClearToolSessionPool.class.getName());
+
+    private final int                         maxCommandsPerSession;
+    private final long                        maxIdleMillis;
+    private final int                         maxSessionsPerNode;
+    private final ConcurrentMap<Key, NodePool> pools                   = new ConcurrentHashMap<Key, NodePool>();
+    private final Map<ClearToolSession, NodePool> borrowed             = new ConcurrentHashMap<ClearToolSession, NodePool>();
+
+    @VisibleForTesting
+    ClearToolSessionPool(int maxSessionsPerNode, int maxCommandsPerSession, long maxIdleMillis) {
+        this.maxSessionsPerNode = maxSessionsPerNode;
+        this.maxCommandsPerSession = maxCommandsPerSession;
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    public static ClearToolSessionPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes a session out of the pool of the given node, starting a new one if none is idle. Blocks while the maximum number of sessions of the node are in
+     * use. The session must be given back with {@link #release(ClearToolSession)}.
+     */
+    public ClearToolSession borrow(Launcher launcher, String executable) throws IOException, InterruptedException {
+        Key key = new Key(launcher.getChannel(), executable);
+        NodePool pool = pools.get(key);
+        if (pool == null) {
+            NodePool newPool = new NodePool(maxSessionsPerNode);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        pool.permits.acquire();
+        try {
+            ClearToolSession session = pool.pollReusable();
+            if (session == null) {
+                session = createSession(launcher, executable);
+            }
+            borrowed.put(session, pool);
+            return session;
+        } catch (IOException e) {
+            pool.permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back a session obtained with {@link #borrow(Launcher, String)}. Broken or worn out sessions are closed.
+     */
+    public void release(ClearToolSession session) {
+        NodePool pool = borrowed.remove(session);
+        if (pool == null) {
+            session.close();
+            return;
+        }
+        try {
+            if (session.isBroken() || session.getCommandCount() >= maxCommandsPerSession) {
+                session.close();
+            } else {
+                pool.offer(session);
+            }
+        } finally {
+            pool.permits.release();
+        }
+    }
+
+    /**
+     * Closes the sessions idle for too long, and forgets the nodes without any session.
+     */
+    public void reap() {
+        long now = System.currentTimeMillis();
+        for (Iterator<NodePool> it = pools.values().iterator(); it.hasNext();) {
+            NodePool pool = it.next();
+            pool.closeIdleSince(now - maxIdleMillis);
+            if (pool.isUnused(maxSessionsPerNode)) {
+                it.remove();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    ClearToolSession createSession(Launcher launcher, String executable) throws IOException {
+        LOGGER.log(Level.FINE, "Starting interactive cleartool session with {0}", executable);
+        return ClearToolSession.start(launcher, executable, COMMAND_TIMEOUT_MILLIS);
+    }
+
+    private static final class Key {
+        private final VirtualChannel channel;
+        private final String         executable;
+
+        Key(VirtualChannel channel, String executable) {
+            this.channel = channel;
+            this.executable = executable;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return channel == other.channel && ObjectUtils.equals(executable, other.executable);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(channel) * 31 + ObjectUtils.hashCode(executable);
+        }
+    }
+
+    private static final class NodePool {
+        /**
+         * Idle sessions, the most recently used first
+         */
+        private final LinkedList<ClearToolSession> idle = new LinkedList<ClearToolSession>();
+        private final Semaphore                    permits;
+
+        NodePool(int maxSessions) {
+            permits = new Semaphore(maxSessions, true);
+        }
+
+        void closeIdleSince(long time) {
+            LinkedList<ClearToolSession> expired = new LinkedList<ClearToolSession>();
+            synchronized (idle) {
+                while (!idle.isEmpty() && idle.getLast().getLastUsed() < time) {
+                    expired.add(idle.removeLast());
+                }
+            }
+            for (ClearToolSession session : expired) {
+                session.close();
+            }
+        }
+
+        boolean isUnused(int maxSessions) {
+            synchronized (idle) {
+                return idle.isEmpty() && permits.availablePermits() == maxSessions;
+            }
+        }
+
+        void offer(ClearToolSession session) {
+            synchronized (idle) {
+                idle.addFirst(session);
+            }
+        }
+
+        ClearToolSession pollReusable() {
+            while (true) {
+                ClearToolSession session;
+                synchronized (idle) {
+                    session = idle.poll();
+                }
+                if (session == null) {
+                    return null;
+                }
+                if (System.currentTimeMillis() - session.getLastUsed() < HEALTH_CHECK_MILLIS || session.isHealthy()) {
+                    return session;
+                }
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package hudson.plugins.clearcase.session;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+/**
+ * Periodically closes the interactive cleartool sessions that stayed idle for too long.
+ */
+@Extension
+public class ClearToolSessionReaper extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+        return MIN;
+    }
+
+    @Override
+    protected void doRun() {
+        ClearToolSessionPool.get().reap();
+    }
+}
@@ -0,0 +1,201 @@
+package hudson.plugins.clearcase.ucm;
+
+import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_CONTRIBUTING;
+import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_HEADLINE;
+import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_STREAM;
+import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Lists the headline, stream and user of UCM activities, and the activities contributing to the integration activities, level by level.
+ * <p>
+ * The activities of a level are listed with one lsactivity command per format, and each activity is listed once: an activity contributing to several
+ * activities, or already in the changelog, is the same {@link UcmActivity} instance everywhere, unless sharing it would make a cycle.
+ * </p>
+ */
+public class ContributingActivityResolver {
+
+    private static final String[]        ACTIVITY_FORMAT             = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, };
+
+    private static final String[]        INTEGRATION_ACTIVITY_FORMAT = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, UCM_ACTIVITY_CONTRIBUTING };
+
+    private static final Logger          LOG                         = Logger.getLogger(ContributingActivityResolver.class.getName());
+
+    private final ClearTool              cleartool;
+
+    private final ClearToolFormatHandler activityHandler             = new ClearToolFormatHandler(ACTIVITY_FORMAT);
+
+    private final ClearToolFormatHandler integrationActivityHandler  = new ClearToolFormatHandler(INTEGRATION_ACTIVITY_FORMAT);
+
+    private final int                    maxDepth;
+
+    private final String                 viewPath;
+
+    /**
+     * @param maxDepth
+     *            the number of levels of contributing activities to follow
+     */
+    public ContributingActivityResolver(ClearTool cleartool, String viewPath, int maxDepth) {
+        this.cleartool = cleartool;
+        this.viewPath = viewPath;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Lists the given activities and their contributing activities.
+     */
+    public void resolve(List<UcmActivity> activities) throws IOException, InterruptedException {
+        Map<String, UcmActivity> known = new HashMap<String, UcmActivity>();
+        for (UcmActivity activity : activities) {
+            known.put(activity.getName(), activity);
+        }
+        List<UcmActivity> level = activities;
+        for (int depth = 0; !level.isEmpty(); depth++) {
+            Map<UcmActivity, String> contributions = list(level);
+            List<UcmActivity> nextLevel = new ArrayList<UcmActivity>();
+            if (depth < maxDepth) {
+                for (UcmActivity activity : level) {
+                    String contributing = contributions.get(activity);
+                    if (contributing == null) {
+                        continue;
+                    }
+                    for (String name : StringUtils.split(contributing, ' ')) {
+                        UcmActivity subActivity = known.get(name);
+                        if (subActivity == null) {
+                            subActivity = new UcmActivity();
+                            subActivity.setName(name);
+                            known.put(name, subActivity);
+                            nextLevel.add(subActivity);
+                        } else if (contains(subActivity, activity, Collections.newSetFromMap(new IdentityHashMap<UcmActivity, Boolean>()))) {
+                            subActivity = new UcmActivity(subActivity);
+                        }
+                        activity.addSubActivity(subActivity);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
+    /**
+     * @return whether the activity is the given one or contains it in its sub activities
+     */
+    private boolean contains(UcmActivity activity, UcmActivity searched, Set<UcmActivity> visited) {
+        if (activity == searched) {
+            return true;
+        }
+        if (!visited.add(activity)) {
+            return false;
+        }
+        for (UcmActivity subActivity : activity.getSubActivities()) {
+            if (contains(subActivity, searched, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the activities of a level.
+     *
+     * @return the contributing activities of the integration activities
+     */
+    private Map<UcmActivity, String> list(List<UcmActivity> activities) throws IOException, InterruptedException {
+        List<UcmActivity> integrationActivities = new ArrayList<UcmActivity>();
+        List<UcmActivity> otherActivities = new ArrayList<UcmActivity>();
+        for (UcmActivity activity : activities) {
+            if (StringUtils.isBlank(activity.getName())) {
+                activity.setName("Unable to get activity name");
+            } else if (activity.isIntegrationActivity()) {
+                integrationActivities.add(activity);
+            } else {
+                otherActivities.add(activity);
+            }
+        }
+        Map<UcmActivity, String> contributions = new IdentityHashMap<UcmActivity, String>();
+        list(otherActivities, activityHandler, contributions);
+        list(integrationActivities, integrationActivityHandler, contributions);
+        return contributions;
+    }
+
+    private void list(List<UcmActivity> activities, ClearToolFormatHandler handler, Map<UcmActivity, String> contributions) throws IOException,
+            InterruptedException {
+        if (activities.size() > 1 && listTogether(activities, handler, contributions)) {
+            return;
+        }
+        for (UcmActivity activity : activities) {
+            Reader reader = cleartool.lsactivity(activity.getName(), handler.getFormat(), viewPath);
+            try {
+                read(activity, handler.checkLine(new BufferedReader(reader).readLine()), contributions);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Lists activities with a single command, which outputs one line per activity.
+     *
+     * @return false if the command failed or did not output a valid line per activity
+     */
+    private boolean listTogether(List<UcmActivity> activities, ClearToolFormatHandler handler, Map<UcmActivity, String> contributions)
+            throws InterruptedException {
+        String[] names = new String[activities.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = activities.get(i).getName();
+        }
+        List<String> lines;
+        try {
+            Reader reader = cleartool.lsactivity(names, handler.getFormat(), viewPath);
+            try {
+                lines = IOUtils.readLines(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Unable to list " + names.length + " activities together", e);
+            return false;
+        }
+        Matcher[] matchers = new Matcher[names.length];
+        for (int i = 0; i < names.length; i++) {
+            matchers[i] = lines.size() == names.length ? handler.checkLine(lines.get(i)) : null;
+            if (matchers[i] == null) {
+                LOG.fine("Unexpected output when listing " + names.length + " activities together: " + lines);
+                return false;
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            read(activities.get(i), matchers[i], contributions);
+        }
+        return true;
+    }
+
+    private void read(UcmActivity activity, Matcher matcher, Map<UcmActivity, String> contributions) {
+        if (matcher != null) {
+            activity.setHeadline(matcher.group(1));
+            activity.setStream(matcher.group(2));
+            activity.setUser(matcher.group(3));
+            if (activity.isIntegrationActivity()) {
+                contributions.put(activity, matcher.group(4));
+            }
+        }
+    }
+}
@@ -25,15 +25,22 @@
 package hudson.plugins.clearcase.ucm;
 
 import hudson.model.AbstractBuild;
+import hudson.plugins.clearcase.util.ChangeLogBinaryFile;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
+import hudson.plugins.clearcase.util.ChangeLogXmlReader;
 import hudson.scm.ChangeLogParser;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import org.apache.commons.digester.Digester;
 import org.xml.sax.SAXException;
 
 /**
@@ -43,6 +50,8 @@ import org.xml.sax.SAXException;
  */
 public class UcmChangeLogParser extends ChangeLogParser {
 
+    private static final Logger LOGGER = Logger.getLogger(UcmChangeLogParser.class.getName());
+
     /**
      * Parses the change log file and returns a ClearCase change log set.
      * 
@@ -54,10 +63,29 @@ public class UcmChangeLogParser extends ChangeLogParser {
      */
     @Override
     public UcmChangeLogSet parse(AbstractBuild build, File changeLogFile) throws IOException, SAXException {
+        ChangeLogIndex index = ChangeLogIndex.read(changeLogFile);
+        if (index != null && index.size() >= ChangeLogIndex.LAZY_THRESHOLD) {
+            return new UcmChangeLogSet(build, changeLogFile, index);
+        }
+        ChangeLogBinaryFile.Input binaryFile = ChangeLogBinaryFile.open(changeLogFile, UcmChangeLogSet.BINARY_FORMAT);
+        if (binaryFile != null) {
+            try {
+                int count = binaryFile.readInt();
+                List<UcmActivity> history = new ArrayList<UcmActivity>(count);
+                for (int i = 0; i < count; i++) {
+                    history.add(readBinaryActivity(binaryFile, true));
+                }
+                return new UcmChangeLogSet(build, history);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Ignoring invalid binary copy of " + changeLogFile, e);
+            }
+        }
         FileInputStream fileInputStream = new FileInputStream(changeLogFile);
-        UcmChangeLogSet logSet = parse(build, fileInputStream);
-        fileInputStream.close();
-        return logSet;
+        try {
+            return parse(build, new BufferedInputStream(fileInputStream));
+        } finally {
+            fileInputStream.close();
+        }
     }
 
     /**
@@ -70,41 +98,118 @@ public class UcmChangeLogParser extends ChangeLogParser {
      * @return the change log set
      */
     UcmChangeLogSet parse(AbstractBuild<?, ?> build, InputStream changeLogStream) throws IOException, SAXException {
+        return new UcmChangeLogSet(build, parseActivities(changeLogStream));
+    }
+
+    static List<UcmActivity> parseActivities(InputStream changeLogStream) throws IOException, SAXException {
+        final ArrayList<UcmActivity> history = new ArrayList<UcmActivity>();
+
+        // Parse the change log file: entries, with their files and their sub activities at any depth
+        new ChangeLogXmlReader() {
+            private final LinkedList<UcmActivity> activities = new LinkedList<UcmActivity>();
+            private UcmActivity.File file;
+
+            @Override
+            protected void endElement(String name, String text) {
+                if ("entry".equals(name) || "subactivity".equals(name)) {
+                    UcmActivity activity = activities.removeLast();
+                    if ("entry".equals(name)) {
+                        history.add(activity);
+                    } else if (!activities.isEmpty()) {
+                        activities.getLast().addSubActivity(activity);
+                    }
+                } else if (file != null && "file".equals(name)) {
+                    activities.getLast().addFile(file);
+                    file = null;
+                } else if (text != null && file != null) {
+                    setFileProperty(file, name, text);
+                } else if (text != null) {
+                    setActivityProperty(activities.getLast(), name, text, "subactivity".equals(getAncestor(1)));
+                }
+            }
+
+            @Override
+            protected boolean startElement(String name) {
+                if ("entry".equals(name) || "subactivity".equals(name)) {
+                    activities.add(new UcmActivity());
+                    return false;
+                }
+                if (activities.isEmpty()) {
+                    return false;
+                }
+                String parent = getAncestor(1);
+                if (file != null) {
+                    return "file".equals(parent) && "entry".equals(getAncestor(2));
+                }
+                if ("file".equals(name) && "entry".equals(parent)) {
+                    file = new UcmActivity.File();
+                    return false;
+                }
+                return "entry".equals(parent) || "subactivity".equals(parent);
+            }
+        }.read(changeLogStream);
+
+        return history;
+    }
+
+    private static UcmActivity readBinaryActivity(ChangeLogBinaryFile.Input in, boolean topLevel) throws IOException {
+        UcmActivity activity = new UcmActivity();
+        activity.setName(in.readString());
+        activity.setHeadline(in.readString());
+        activity.setStream(in.readString());
+        activity.setUser(in.readString());
+        if (!topLevel) {
+            activity.setModifier(in.readString());
+        }
+        int subActivityCount = in.readInt();
+        for (int i = 0; i < subActivityCount; i++) {
+            activity.addSubActivity(readBinaryActivity(in, false));
+        }
+        if (topLevel) {
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                UcmActivity.File file = new UcmActivity.File();
+                file.setName(in.readPath());
+                file.setDateStr(in.readString());
+                file.setComment(in.readString());
+                file.setVersion(in.readPath());
+                file.setEvent(in.readString());
+                file.setOperation(in.readString());
+                activity.addFile(file);
+            }
+        }
+        return activity;
+    }
+
+    private static void setActivityProperty(UcmActivity activity, String name, String value, boolean subActivity) {
+        if ("name".equals(name)) {
+            activity.setName(value);
+        } else if ("headline".equals(name)) {
+            activity.setHeadline(value);
+        } else if ("stream".equals(name)) {
+            activity.setStream(value);
+        } else if ("user".equals(name)) {
+            activity.setUser(value);
+        } else if (subActivity && "modifier".equals(name)) {
+            // as before, the modifier is only read for sub activities
+            activity.setModifier(value);
+        }
+    }
 
-        ArrayList<UcmActivity> history = new ArrayList<UcmActivity>();
-
-        // Parse the change log file.
-        Digester digester = new Digester();
-        digester.setClassLoader(UcmChangeLogSet.class.getClassLoader());
-        digester.push(history);
-        digester.addObjectCreate("*/entry", UcmActivity.class);
-
-        digester.addBeanPropertySetter("*/entry/name");
-        digester.addBeanPropertySetter("*/entry/headline");
-        digester.addBeanPropertySetter("*/entry/stream");
-        digester.addBeanPropertySetter("*/entry/user");
-
-        digester.addObjectCreate("*/subactivity", UcmActivity.class);
-        digester.addBeanPropertySetter("*/subactivity/name");
-        digester.addBeanPropertySetter("*/subactivity/headline");
-        digester.addBeanPropertySetter("*/subactivity/stream");
-        digester.addBeanPropertySetter("*/subactivity/user");
-        digester.addBeanPropertySetter("*/subactivity/modifier");
-        digester.addSetNext("*/subactivity", "addSubActivity");
-
-        digester.addObjectCreate("*/entry/file", UcmActivity.File.class);
-        digester.addBeanPropertySetter("*/entry/file/name");
-        digester.addBeanPropertySetter("*/entry/file/date", "dateStr");
-        digester.addBeanPropertySetter("*/entry/file/comment");
-        digester.addBeanPropertySetter("*/entry/file/version");
-        digester.addBeanPropertySetter("*/entry/file/event");
-        digester.addBeanPropertySetter("*/entry/file/operation");
-        digester.addSetNext("*/entry/file", "addFile");
-
-        digester.addSetNext("*/entry", "add");
-        digester.parse(changeLogStream);
-
-        return new UcmChangeLogSet(build, history);
+    private static void setFileProperty(UcmActivity.File file, String name, String value) {
+        if ("name".equals(name)) {
+            file.setName(value);
+        } else if ("date".equals(name)) {
+            file.setDateStr(value);
+        } else if ("comment".equals(name)) {
+            file.setComment(value);
+        } else if ("version".equals(name)) {
+            file.setVersion(value);
+        } else if ("event".equals(name)) {
+            file.setEvent(value);
+        } else if ("operation".equals(name)) {
+            file.setOperation(value);
+        }
     }
 
 }
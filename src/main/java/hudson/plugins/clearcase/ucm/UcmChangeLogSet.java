@@ -25,28 +25,46 @@
 package hudson.plugins.clearcase.ucm;
 
 import hudson.model.AbstractBuild;
-import hudson.plugins.clearcase.ClearCaseChangeLogSet;
+import hudson.plugins.clearcase.util.ChangeLogBinaryFile;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
+import hudson.plugins.clearcase.util.ChangeLogXmlWriter;
+import hudson.plugins.clearcase.util.LazyChangeLogList;
 import hudson.scm.ChangeLogSet;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.export.Exported;
+import org.xml.sax.SAXException;
 
 /**
  * UCM ClearCase change log set.
+ * <p>
+ * When a changelog saved with its index has many activities, the activities are read page by page when accessed, and the authors and counts come from
+ * the index. Otherwise, the activities are read from the binary copy of the changelog if it is valid, or from the XML.
+ * </p>
  * 
  * @author Henrik L. Hansen
  */
 public class UcmChangeLogSet extends ChangeLogSet<UcmActivity> {
 
-    static final String[]     ACTIVITY_TAGS = new String[] { "name", "headline", "stream", "user", "modifier" };
-    static final String[]     FILE_TAGS     = new String[] { "name", "date", "comment", "version", "event", "operation" };
-    private List<UcmActivity> history       = null;
+    static final String[]       ACTIVITY_TAGS = new String[] { "name", "headline", "stream", "user", "modifier" };
+    static final String         BINARY_FORMAT = "ucm";
+    static final String[]       FILE_TAGS     = new String[] { "name", "date", "comment", "version", "event", "operation" };
+    private static final Logger LOGGER        = Logger.getLogger(UcmChangeLogSet.class.getName());
+    private List<UcmActivity>   history       = null;
+    private ChangeLogIndex      index;
 
     public UcmChangeLogSet(AbstractBuild<?, ?> build, List<UcmActivity> logs) {
         super(build);
@@ -56,11 +74,90 @@ public class UcmChangeLogSet extends ChangeLogSet<UcmActivity> {
         this.history = Collections.unmodifiableList(logs);
     }
 
+    /**
+     * Creates a change log set reading the activities of an indexed changelog when they are accessed.
+     */
+    UcmChangeLogSet(AbstractBuild<?, ?> build, File changeLogFile, ChangeLogIndex index) {
+        super(build);
+        this.index = index;
+        this.history = new LazyChangeLogList<UcmActivity>(changeLogFile, index, new LazyChangeLogList.PageLoader<UcmActivity>() {
+            @Override
+            public List<UcmActivity> load(InputStream changeLogStream) throws IOException, SAXException {
+                List<UcmActivity> activities = UcmChangeLogParser.parseActivities(changeLogStream);
+                for (UcmActivity activity : activities) {
+                    activity.setParent(UcmChangeLogSet.this);
+                }
+                return activities;
+            }
+        });
+    }
+
+    /**
+     * @return the distinct users of the activities
+     */
+    public Set<String> getAuthorNames() {
+        if (index != null) {
+            return index.getAuthorNames();
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (UcmActivity activity : history) {
+            if (activity.getUser() != null) {
+                names.add(activity.getUser());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @return the total number of files of the activities
+     */
+    public long getElementCount() {
+        if (index != null) {
+            return index.getTotalElementCount();
+        }
+        long count = 0;
+        for (UcmActivity activity : history) {
+            count += activity.getFiles().size();
+        }
+        return count;
+    }
+
     @Exported
     public List<UcmActivity> getLogs() {
         return history;
     }
 
+    /**
+     * @return a page of at most <code>count</code> activities, starting at <code>start</code>
+     */
+    public List<UcmActivity> getLogs(int start, int count) {
+        int from = Math.max(0, Math.min(start, history.size()));
+        return history.subList(from, Math.max(from, Math.min(start + count, history.size())));
+    }
+
+    /**
+     * @return the number of activities shown by a page of the views, all of them unless they are read when accessed
+     */
+    public int getPageSize() {
+        return isLazy() ? LazyChangeLogList.PAGE_SIZE : history.size();
+    }
+
+    /**
+     * @param start
+     *            the <code>start</code> request parameter of the views, may be null
+     * @return the first of the activities shown by the page of the views
+     */
+    public int getPageStart(String start) {
+        return isLazy() ? LazyChangeLogList.pageStart(start, history.size()) : 0;
+    }
+
+    /**
+     * @return true if the activities are read when accessed
+     */
+    public boolean isLazy() {
+        return index != null;
+    }
+
     @Override
     public boolean isEmptySet() {
         return history.size() == 0;
@@ -81,44 +178,78 @@ public class UcmChangeLogSet extends ChangeLogSet<UcmActivity> {
      * @throws IOException
      */
     public static void saveToChangeLog(OutputStream outputStream, List<UcmActivity> history) throws IOException {
-        PrintStream stream = new PrintStream(outputStream, false, "UTF-8");
+        saveToChangeLog(new ChangeLogXmlWriter(outputStream), history, null);
+    }
 
-        stream.println("<?xml version='1.0' encoding='UTF-8'?>");
-        stream.println("<history>");
+    /**
+     * Stores the history objects to the change log file as xml, with the index of its activities and its binary copy.
+     * 
+     * @param changeLogFile
+     *            the file to write to
+     * @param history
+     *            the history objects to store
+     * @throws IOException
+     */
+    public static void saveToChangeLog(File changeLogFile, List<UcmActivity> history) throws IOException {
+        ChangeLogIndex.delete(changeLogFile);
+        ChangeLogBinaryFile.delete(changeLogFile);
+        ChangeLogIndex.Builder index = new ChangeLogIndex.Builder();
+        FileOutputStream outputStream = new FileOutputStream(changeLogFile);
+        try {
+            saveToChangeLog(new ChangeLogXmlWriter(outputStream), history, index);
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+        try {
+            index.build(changeLogFile.length()).write(changeLogFile);
+        } catch (IOException e) {
+            // the changelog is complete, it is only read without its index
+            LOGGER.log(Level.WARNING, "Unable to write the index of " + changeLogFile, e);
+            ChangeLogIndex.delete(changeLogFile);
+        }
+        if (!ChangeLogBinaryFile.DISABLED) {
+            try {
+                ChangeLogBinaryFile.Output out = new ChangeLogBinaryFile.Output();
+                out.writeInt(history.size());
+                for (UcmActivity activity : history) {
+                    writeBinaryActivity(out, activity, true);
+                }
+                out.write(changeLogFile, BINARY_FORMAT);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write the binary copy of " + changeLogFile, e);
+                ChangeLogBinaryFile.delete(changeLogFile);
+            }
+        }
+    }
+
+    private static void saveToChangeLog(ChangeLogXmlWriter writer, List<UcmActivity> history, ChangeLogIndex.Builder index) throws IOException {
+        writer.line("<?xml version='1.0' encoding='UTF-8'?>");
+        writer.line("<history>");
         for (UcmActivity entry : history) {
-            stream.println("\t<entry>");
+            long offset = index != null ? writer.getPosition() : 0;
+            writer.line("\t<entry>");
             String[] activityValues = getEntryAsStrings(entry);
             for (int tag = 0; tag < ACTIVITY_TAGS.length; tag++) {
-                stream.print("\t\t<");
-                stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
-                stream.print('>');
-                stream.print(ClearCaseChangeLogSet.escapeForXml(activityValues[tag]));
-                stream.print("</");
-                stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
-                stream.println('>');
+                writer.element("\t\t", UcmChangeLogSet.ACTIVITY_TAGS[tag], activityValues[tag]);
             }
             for (UcmActivity subActivity : entry.getSubActivities()) {
-                writeSubActivity(stream, subActivity);
+                writeSubActivity(writer, subActivity);
             }
             for (UcmActivity.File file : entry.getFiles()) {
-                stream.println("\t\t<file>");
+                writer.line("\t\t<file>");
                 String[] fileValues = getFileAsStrings(file);
                 for (int tag = 0; tag < FILE_TAGS.length; tag++) {
-                    stream.print("\t\t\t<");
-                    stream.print(UcmChangeLogSet.FILE_TAGS[tag]);
-                    stream.print('>');
-                    stream.print(ClearCaseChangeLogSet.escapeForXml(fileValues[tag]));
-                    stream.print("</");
-                    stream.print(UcmChangeLogSet.FILE_TAGS[tag]);
-                    stream.println('>');
-
+                    writer.element("\t\t\t", UcmChangeLogSet.FILE_TAGS[tag], fileValues[tag]);
                 }
-                stream.println("\t\t</file>");
+                writer.line("\t\t</file>");
+            }
+            writer.line("\t</entry>");
+            if (index != null) {
+                index.add(offset, writer.getPosition(), entry.getUser(), entry.getFiles().size());
             }
-            stream.println("\t</entry>");
         }
-        stream.println("</history>");
-        stream.close();
+        writer.line("</history>");
+        writer.close();
     }
 
     private static String[] getEntryAsStrings(UcmActivity entry) {
@@ -142,22 +273,39 @@ public class UcmChangeLogSet extends ChangeLogSet<UcmActivity> {
         return array;
     }
 
-    private static void writeSubActivity(PrintStream stream, UcmActivity activity) {
-        stream.println("<subactivity>");
+    /**
+     * Writes what the XML holds: the files of the activities, but not of their sub activities, and the modifier of the sub activities only.
+     */
+    private static void writeBinaryActivity(ChangeLogBinaryFile.Output out, UcmActivity activity, boolean topLevel) throws IOException {
+        String[] activityValues = getEntryAsStrings(activity);
+        out.writeString(activityValues[0]).writeString(activityValues[1]).writeString(activityValues[2]).writeString(activityValues[3]);
+        if (!topLevel) {
+            out.writeString(activityValues[4]);
+        }
+        out.writeInt(activity.getSubActivities().size());
+        for (UcmActivity subActivity : activity.getSubActivities()) {
+            writeBinaryActivity(out, subActivity, false);
+        }
+        if (topLevel) {
+            out.writeInt(activity.getFiles().size());
+            for (UcmActivity.File file : activity.getFiles()) {
+                String[] fileValues = getFileAsStrings(file);
+                out.writePath(fileValues[0]).writeString(fileValues[1]).writeString(fileValues[2]).writePath(fileValues[3]).writeString(fileValues[4])
+                        .writeString(fileValues[5]);
+            }
+        }
+    }
+
+    private static void writeSubActivity(ChangeLogXmlWriter writer, UcmActivity activity) throws IOException {
+        writer.line("<subactivity>");
         String[] activityValues = getEntryAsStrings(activity);
         for (int tag = 0; tag < ACTIVITY_TAGS.length; tag++) {
-            stream.print("\t<");
-            stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
-            stream.print('>');
-            stream.print(ClearCaseChangeLogSet.escapeForXml(activityValues[tag]));
-            stream.print("</");
-            stream.print(UcmChangeLogSet.ACTIVITY_TAGS[tag]);
-            stream.println('>');
+            writer.element("\t", UcmChangeLogSet.ACTIVITY_TAGS[tag], activityValues[tag]);
         }
         for (UcmActivity subActivity : activity.getSubActivities()) {
-            writeSubActivity(stream, subActivity);
+            writeSubActivity(writer, subActivity);
         }
-        stream.println("</subactivity>");
+        writer.line("</subactivity>");
 
     }
 
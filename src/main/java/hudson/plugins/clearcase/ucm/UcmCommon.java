@@ -45,6 +45,30 @@ import org.apache.commons.lang.StringUtils;
  */
 public class UcmCommon {
 
+    /**
+     * Describes the components of baselines with a single cleartool command
+     * 
+     * @param clearTool
+     * @param baselineSelectors
+     * @return the non blank lines of the output, which are the selectors of the components in the order of the baselines
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static List<String> describeComponents(ClearTool clearTool, String[] baselineSelectors) throws IOException, InterruptedException {
+        BufferedReader br = new BufferedReader(clearTool.describe("%[component]Xp\\n", null, baselineSelectors));
+        List<String> components = new ArrayList<String>();
+        try {
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                if (StringUtils.isNotBlank(line)) {
+                    components.add(line);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return components;
+    }
+
     /**
      * Takes a list of baselines as argument, and return the load rules for all components matching these baselines
      * 
@@ -72,11 +96,15 @@ public class UcmCommon {
         }
         Reader reader = clearTool.describe("%[root_dir]p\\n", components.toArray(new String[components.size()]));
         BufferedReader br = new BufferedReader(reader);
-        for (String line = br.readLine(); line != null; line = br.readLine()) {
-            String loadRule = StringUtils.isNotBlank(line) ? line.substring(1) : null;
-            if (loadRule != null) {
-                loadRules.add(loadRule);
+        try {
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                String loadRule = StringUtils.isNotBlank(line) ? line.substring(1) : null;
+                if (loadRule != null) {
+                    loadRules.add(loadRule);
+                }
             }
+        } finally {
+            br.close();
         }
         return loadRules.toArray(new String[loadRules.size()]);
     }
@@ -154,14 +182,17 @@ public class UcmCommon {
         BufferedReader br = new BufferedReader(rd);
 
         List<String> versionList = new ArrayList<String>();
-        // remove ">>" from result
-        for (String line = br.readLine(); br.ready(); line = br.readLine()) {
-            if (line.startsWith(">>")) {
-                line = line.replaceAll(">>", "");
-                versionList.add(line.trim());
+        try {
+            // remove ">>" from result
+            for (String line = br.readLine(); br.ready(); line = br.readLine()) {
+                if (line.startsWith(">>")) {
+                    line = line.replaceAll(">>", "");
+                    versionList.add(line.trim());
+                }
             }
+        } finally {
+            br.close();
         }
-        br.close();
 
         return versionList;
     }
@@ -265,8 +296,12 @@ public class UcmCommon {
         Reader reader = clearTool.describe(null, null, "stream:" + streamName);
         BufferedReader bufferedReader = new BufferedReader(reader);
         StringBuilder sb = new StringBuilder();
-        while (bufferedReader.ready()) {
-            sb.append(bufferedReader.readLine());
+        try {
+            while (bufferedReader.ready()) {
+                sb.append(bufferedReader.readLine());
+            }
+        } finally {
+            bufferedReader.close();
         }
         String output = sb.toString();
 
@@ -308,8 +343,12 @@ public class UcmCommon {
         Reader rd = clearTool.describe(format, null, version);
         BufferedReader bufferedReader = new BufferedReader(rd);
         StringBuilder sb = new StringBuilder();
-        while (bufferedReader.ready()) {
-            sb.append(bufferedReader.readLine());
+        try {
+            while (bufferedReader.ready()) {
+                sb.append(bufferedReader.readLine());
+            }
+        } finally {
+            bufferedReader.close();
         }
         return sb.toString();
     }
@@ -358,14 +397,11 @@ public class UcmCommon {
                     + "\" or no available baseline found");
         }
         List<Baseline> foundationBaselines = new ArrayList<Baseline>();
-        BufferedReader br = new BufferedReader(clearTool.describe("%[component]Xp\\n", baselines.toArray(new String[baselines.size()])));
         Iterator<String> blIterator = baselines.iterator();
-        for (String line = br.readLine(); line != null; line = br.readLine()) {
-            if (StringUtils.isNotBlank(line)) {
-                String simpleBaseline = StringUtils.removeStart(blIterator.next(), "baseline:");
-                String simpleComponent = StringUtils.removeStart(line, "component:");
-                foundationBaselines.add(new Baseline(simpleBaseline, simpleComponent));
-            }
+        for (String line : describeComponents(clearTool, baselines.toArray(new String[baselines.size()]))) {
+            String simpleBaseline = StringUtils.removeStart(blIterator.next(), "baseline:");
+            String simpleComponent = StringUtils.removeStart(line, "component:");
+            foundationBaselines.add(new Baseline(simpleBaseline, simpleComponent));
         }
         return foundationBaselines;
     }
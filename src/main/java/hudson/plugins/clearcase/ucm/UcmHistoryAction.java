@@ -29,9 +29,6 @@ import static hudson.plugins.clearcase.util.OutputFormat.EVENT;
 import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
 import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
 import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_CONTRIBUTING;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_HEADLINE;
-import static hudson.plugins.clearcase.util.OutputFormat.UCM_ACTIVITY_STREAM;
 import static hudson.plugins.clearcase.util.OutputFormat.UCM_VERSION_ACTIVITY;
 import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
 import hudson.model.TaskListener;
@@ -40,6 +37,7 @@ import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.history.AbstractHistoryAction;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.HistoryEntry;
+import hudson.plugins.clearcase.history.PollingCoordinator;
 import hudson.plugins.clearcase.ucm.model.ActivitiesDelta;
 import hudson.plugins.clearcase.ucm.model.Activity;
 import hudson.plugins.clearcase.ucm.model.Baseline;
@@ -47,9 +45,9 @@ import hudson.plugins.clearcase.ucm.model.Component;
 import hudson.plugins.clearcase.ucm.service.BaselineService;
 import hudson.plugins.clearcase.ucm.service.FacadeService;
 import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
 import hudson.scm.ChangeLogSet.Entry;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.MessageFormat;
@@ -60,11 +58,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -74,13 +73,9 @@ public class UcmHistoryAction extends AbstractHistoryAction {
 
     static final Logger                  LOG                               = Logger.getLogger(UcmHistoryAction.class.getName());
 
-    private static final String[]        ACTIVITY_FORMAT                   = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, };
-
     private static final String[]        HISTORY_FORMAT                    = { DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION,
         UCM_VERSION_ACTIVITY                                          };
 
-    private static final String[]        INTEGRATION_ACTIVITY_FORMAT       = { UCM_ACTIVITY_HEADLINE, UCM_ACTIVITY_STREAM, USER_ID, UCM_ACTIVITY_CONTRIBUTING };
-
     private static final int             MAX_DEPTH_CONTRIBUTING_ACTIVITIES = 3;
 
     private EntryListAdapter             entryListAdapter                  = new EntryListAdapter();
@@ -119,6 +114,22 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         return hasChangesOnBaseline(time, viewPath, viewTag, branchNames, viewPaths) || super.hasChanges(time, viewPath, viewTag, branchNames, viewPaths);
     }
 
+    /**
+     * Checks the baselines of this job first, they are not shared with the other jobs. Only the lshistory part is shared, unless the history includes the
+     * changes between the baselines.
+     */
+    @Override
+    public boolean hasChanges(PollingCoordinator coordinator, String configuration, Date time, String viewPath, String viewTag, String[] branchNames,
+            String[] viewPaths) throws IOException, InterruptedException {
+        if (hasChangesOnBaseline(time, viewPath, viewTag, branchNames, viewPaths)) {
+            return true;
+        }
+        if (needsHistoryOnAllBranches() && oldBaseline != null) {
+            return hasChangesInHistory(time, viewPath, viewTag, branchNames, viewPaths);
+        }
+        return super.hasChanges(coordinator, configuration, time, viewPath, viewTag, branchNames, viewPaths);
+    }
+
     public void setFacadeService(FacadeService facadeService) {
         this.facadeService = facadeService;
     }
@@ -126,7 +137,7 @@ public class UcmHistoryAction extends AbstractHistoryAction {
     @Override
     protected List<Entry> buildChangelog(String viewPath, List<HistoryEntry> entries) throws IOException, InterruptedException {
         List<Entry> result = new ArrayList<Entry>();
-        Map<String, UcmActivity> activityMap = new HashMap<String, UcmActivity>();
+        Map<String, UcmActivity> activityMap = new LinkedHashMap<String, UcmActivity>();
 
         for (HistoryEntry entry : entries) {
 
@@ -151,16 +162,16 @@ public class UcmHistoryAction extends AbstractHistoryAction {
             }
         }
 
-        for (Entry activity : result) {
-            callLsActivity(activityMap, (UcmActivity) activity, viewPath, MAX_DEPTH_CONTRIBUTING_ACTIVITIES);
-        }
+        new ContributingActivityResolver(cleartool, viewPath, MAX_DEPTH_CONTRIBUTING_ACTIVITIES).resolve(new ArrayList<UcmActivity>(activityMap.values()));
 
         return result;
     }
 
     protected List<HistoryEntry> compareBaselines(String viewPath) throws IOException, InterruptedException {
-        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines());
-        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines());
+        Map<Baseline, Component> components = resolveComponents();
+        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines(), components);
+        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines(), components);
+        compareComponentBaselines(from, to);
         List<HistoryEntry> historyEntries = new ArrayList<HistoryEntry>();
         for (java.util.Map.Entry<Component, Baseline> entry : from.entrySet()) {
             Baseline oldBl = entry.getValue();
@@ -181,8 +192,10 @@ public class UcmHistoryAction extends AbstractHistoryAction {
             return Collections.emptyList();
         if (getNewBaseline() == null)
             return Collections.emptyList();
-        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines());
-        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines());
+        Map<Baseline, Component> components = resolveComponents();
+        Map<Component, Baseline> from = toMap(getOldBaseline().getBaselines(), components);
+        Map<Component, Baseline> to = toMap(getNewBaseline().getBaselines(), components);
+        compareComponentBaselines(from, to);
         List<Entry> entries = new ArrayList<Entry>();
         for (java.util.Map.Entry<Component, Baseline> entry : from.entrySet()) {
             Baseline oldBl = entry.getValue();
@@ -251,18 +264,18 @@ public class UcmHistoryAction extends AbstractHistoryAction {
     }
 
     @Override
-    protected HistoryEntry parseEventLine(Matcher matcher, String line) throws ParseException {
+    protected HistoryEntry parseEventLine(ClearToolFormatTokenizer fields, String line) throws ParseException {
         // read values;
         HistoryEntry entry = new HistoryEntry();
         entry.setLine(line);
 
-        entry.setDateText(matcher.group(1));
-        entry.setUser(matcher.group(2).trim());
-        entry.setElement(matcher.group(3).trim());
-        entry.setVersionId(matcher.group(4).trim());
-        entry.setEvent(matcher.group(5).trim());
-        entry.setOperation(matcher.group(6).trim());
-        entry.setActivityName(matcher.group(7).trim());
+        entry.setDateText(fields.field(1));
+        entry.setUser(fields.trimmedField(2));
+        entry.setElement(fields.trimmedField(3));
+        entry.setVersionId(fields.trimmedField(4));
+        entry.setEvent(fields.trimmedField(5));
+        entry.setOperation(fields.trimmedField(6));
+        entry.setActivityName(fields.trimmedField(7));
         return entry;
     }
 
@@ -271,7 +284,7 @@ public class UcmHistoryAction extends AbstractHistoryAction {
     InterruptedException {
         List<HistoryEntry> history = super.runLsHistory(sinceTime, viewPath, viewTag, branchNames, viewPaths);
         if (needsHistoryOnAllBranches()) {
-            if (oldBaseline == null) {
+            if (oldBaseline == null || (isFirstAcceptedEntryOnly() && !history.isEmpty())) {
                 return history;
             }
             history.addAll(compareBaselines(viewPath));
@@ -279,64 +292,38 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         return history;
     }
 
-    protected Map<Component, Baseline> toMap(Baseline[] baselines) throws IOException, InterruptedException {
+    /**
+     * @param components
+     *            the components of the baselines, as resolved by {@link #resolveComponents()}
+     */
+    protected Map<Component, Baseline> toMap(Baseline[] baselines, Map<Baseline, Component> components) {
         Map<Component, Baseline> result = new HashMap<Component, Baseline>();
         for (Baseline baseline : baselines) {
-            result = addBaselineToResult(baseline, result);
-        }
-        return result;
-    }
-
-    private Map<Component, Baseline> addBaselineToResult(Baseline baseline, Map<Component, Baseline> result) throws IOException, InterruptedException {
-        Baseline oldValue;
-        BaselineService baselineService = getFacadeService().getBaselineService();
-        Component component = baselineService.getComponent(baseline);
-        if ((oldValue = result.put(component, baseline)) != null) {
-            LOG.warning(MessageFormat.format("Skipping {0} for {1}. Replaced by {2}.", oldValue, component, baseline));
+            Baseline oldValue;
+            Component component = components.get(baseline);
+            if ((oldValue = result.put(component, baseline)) != null) {
+                LOG.warning(MessageFormat.format("Skipping {0} for {1}. Replaced by {2}.", oldValue, component, baseline));
+            }
         }
         return result;
     }
 
-    private void callLsActivity(Map<String, UcmActivity> activityMap, UcmActivity activity, String viewPath, int numberOfContributingActivitiesToFollow)
-            throws IOException, InterruptedException {
-        ClearToolFormatHandler handler = new ClearToolFormatHandler(activity.isIntegrationActivity() ? INTEGRATION_ACTIVITY_FORMAT : ACTIVITY_FORMAT);
-        if (StringUtils.isBlank(activity.getName())) {
-            activity.setName("Unable to get activity name");
-            return;
-        }
-
-        BufferedReader reader = new BufferedReader(cleartool.lsactivity(activity.getName(), handler.getFormat(), viewPath));
-
-        String line = reader.readLine();
-        Matcher matcher = handler.checkLine(line);
-        if (matcher != null) {
-            activity.setHeadline(matcher.group(1));
-            activity.setStream(matcher.group(2));
-            activity.setUser(matcher.group(3));
-
-            if (activity.isIntegrationActivity() && numberOfContributingActivitiesToFollow > 0) {
-
-                String contributingActivities = matcher.group(4);
-
-                for (String contributing : contributingActivities.split(" ")) {
-
-                    UcmActivity subActivity = null;
-                    UcmActivity cachedActivity = activityMap.get(contributing);
-
-                    if (cachedActivity == null) {
-                        subActivity = new UcmActivity();
-                        subActivity.setName(contributing);
-                        callLsActivity(activityMap, subActivity, viewPath, --numberOfContributingActivitiesToFollow);
-                        activityMap.put(contributing, subActivity);
-                    } else {
-                        /* do deep copy */
-                        subActivity = new UcmActivity(cachedActivity);
-                    }
-                    activity.addSubActivity(subActivity);
-                }
+    /**
+     * Compares the old and the new baseline of each component at once, so that the comparisons can run in parallel. They are then reused by
+     * {@link BaselineService#compare(Baseline, Baseline)}.
+     */
+    private void compareComponentBaselines(Map<Component, Baseline> from, Map<Component, Baseline> to) throws IOException, InterruptedException {
+        List<Baseline> oldBaselines = new ArrayList<Baseline>();
+        List<Baseline> newBaselines = new ArrayList<Baseline>();
+        for (java.util.Map.Entry<Component, Baseline> entry : from.entrySet()) {
+            Baseline newBl = to.get(entry.getKey());
+            if (newBl != null) {
+                oldBaselines.add(entry.getValue());
+                newBaselines.add(newBl);
             }
         }
-        reader.close();
+        getFacadeService().getBaselineService().compare(oldBaselines.toArray(new Baseline[oldBaselines.size()]),
+                newBaselines.toArray(new Baseline[newBaselines.size()]));
     }
 
     private void fillSubActivities(UcmActivity rootActivity, String modifier, Collection<Activity> subActivities) {
@@ -353,4 +340,19 @@ public class UcmHistoryAction extends AbstractHistoryAction {
         return ChangeSetLevel.ALL.equals(getChangeset());
     }
 
+    /**
+     * Resolves the components of the old and the new baselines at once.
+     *
+     * @return the component of each baseline
+     */
+    private Map<Baseline, Component> resolveComponents() throws IOException, InterruptedException {
+        Baseline[] baselines = (Baseline[]) ArrayUtils.addAll(getOldBaseline().getBaselines(), getNewBaseline().getBaselines());
+        Component[] components = getFacadeService().getBaselineService().getComponents(baselines);
+        Map<Baseline, Component> result = new HashMap<Baseline, Component>();
+        for (int i = 0; i < baselines.length; i++) {
+            result.put(baselines[i], components[i]);
+        }
+        return result;
+    }
+
 }
@@ -28,7 +28,6 @@ import hudson.plugins.clearcase.action.SaveChangeLogAction;
 import hudson.scm.ChangeLogSet.Entry;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
 
@@ -41,8 +40,6 @@ public class UcmSaveChangeLogAction implements SaveChangeLogAction {
         Validate.allElementsOfType(entries, UcmActivity.class);
         @SuppressWarnings("unchecked")
         List<UcmActivity> ucmEntries = (List<UcmActivity>) entries;
-        FileOutputStream fileOutputStream = new FileOutputStream(changeLogFile);
-        UcmChangeLogSet.saveToChangeLog(fileOutputStream, ucmEntries);
-        fileOutputStream.close();
+        UcmChangeLogSet.saveToChangeLog(changeLogFile, ucmEntries);
     }
 }
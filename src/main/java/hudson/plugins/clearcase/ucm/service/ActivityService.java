@@ -33,7 +33,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
 public class ActivityService extends ClearcaseService {
@@ -74,7 +73,7 @@ public class ActivityService extends ClearcaseService {
     }
 
     private String lsActivityToString(Activity activity, String format, String viewPath) throws IOException, InterruptedException {
-        return IOUtils.toString(clearTool.lsactivity(activity.getSelector(), format, viewPath));
+        return toString(clearTool.lsactivity(activity.getSelector(), format, viewPath));
     }
 
 }
@@ -26,11 +26,14 @@ package hudson.plugins.clearcase.ucm.service;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ClearTool.DiffBlOptions;
 import hudson.plugins.clearcase.ConfigSpec;
+import hudson.plugins.clearcase.ucm.UcmCommon;
 import hudson.plugins.clearcase.ucm.model.ActivitiesDelta;
 import hudson.plugins.clearcase.ucm.model.Baseline;
 import hudson.plugins.clearcase.ucm.model.Component;
 import hudson.plugins.clearcase.ucm.model.UcmSelector;
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache.Attribute;
 import hudson.plugins.clearcase.util.ClearCaseUtils;
+import hudson.plugins.clearcase.util.ConcurrencyUtils;
 import hudson.plugins.clearcase.util.PathUtil;
 
 import java.io.IOException;
@@ -39,28 +42,83 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
 
 public class BaselineService extends ClearcaseService {
 
-    @SuppressWarnings("unused")
-    private static final Logger   LOG          = Logger.getLogger(BaselineService.class.getName());
+    /**
+     * Number of baseline comparisons run in parallel by {@link #compare(Baseline[], Baseline[])}.
+     */
+    public static final int                    DIFFBL_CONCURRENCY = Integer.getInteger(BaselineService.class.getName() + ".diffblConcurrency", 1);
 
-    private Map<String, Baseline> baselinePool = new WeakHashMap<String, Baseline>();
+    private static final Logger                LOG                = Logger.getLogger(BaselineService.class.getName());
+
+    private final UcmMetadataCache             cache;
+
+    /**
+     * Comparisons of activities already made by this service, keyed by the selectors of their baselines
+     */
+    private final Map<String, ActivitiesDelta> comparisons        = new ConcurrentHashMap<String, ActivitiesDelta>();
 
     BaselineService(ClearTool clearTool) {
+        this(clearTool, UcmMetadataCache.getInstance());
+    }
+
+    BaselineService(ClearTool clearTool, UcmMetadataCache cache) {
         super(clearTool);
+        this.cache = cache;
     }
 
+    /**
+     * Compares the activities of two baselines. The comparison is made once, and reused by the next calls with the same baselines.
+     */
     public ActivitiesDelta compare(Baseline from, Baseline to) throws IOException {
-        return compare(from, to, EnumSet.of(DiffBlOptions.ACTIVITIES), null);
+        String key = getComparisonKey(from, to);
+        ActivitiesDelta delta = comparisons.get(key);
+        if (delta == null) {
+            delta = compare(from, to, EnumSet.of(DiffBlOptions.ACTIVITIES), null);
+            comparisons.put(key, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Compares the activities of each baseline of <code>from</code> with the baseline at the same index in <code>to</code>. The comparisons not made yet
+     * run in parallel, up to {@link #DIFFBL_CONCURRENCY} at once.
+     */
+    public ActivitiesDelta[] compare(Baseline[] from, Baseline[] to) throws IOException, InterruptedException {
+        Validate.isTrue(from.length == to.length, "Expected as many baselines to compare from as to compare to");
+        Map<String, Integer> pending = new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < from.length; i++) {
+            String key = getComparisonKey(from[i], to[i]);
+            if (!comparisons.containsKey(key) && !StringUtils.equals(from[i].getSelector(), to[i].getSelector()) && !pending.containsKey(key)) {
+                pending.put(key, i);
+            }
+        }
+        if (DIFFBL_CONCURRENCY > 1 && pending.size() > 1) {
+            compareInParallel(from, to, pending.values());
+        }
+        ActivitiesDelta[] result = new ActivitiesDelta[from.length];
+        for (int i = 0; i < from.length; i++) {
+            result[i] = compare(from[i], to[i]);
+        }
+        return result;
     }
 
     public ActivitiesDelta compareWithVersions(Baseline from, Baseline to, String viewPath) throws IOException {
@@ -77,7 +135,7 @@ public class BaselineService extends ClearcaseService {
         String fileSep = PathUtil.fileSepForOS(unix);
         String newLine = PathUtil.newLineForOS(unix);
         sb.append("element * CHECKEDOUT").append(newLine);
-        ComponentService componentService = new ComponentService(clearTool);
+        ComponentService componentService = new ComponentService(clearTool, cache);
         for (Baseline baseline : baselineSet) {
             String rootDir = componentService.getRootDir(getComponent(baseline));
             if (StringUtils.isNotBlank(rootDir)) {
@@ -90,20 +148,50 @@ public class BaselineService extends ClearcaseService {
 
     public Component getComponent(Baseline baseline) throws IOException, InterruptedException {
         if (baseline.getComponent() == null) {
-            String output = IOUtils.toString(clearTool.describe("%[component]Xp", null, baseline.getSelector()));
-            Component component = null;
-            if (ClearCaseUtils.isCleartoolOutputValid(output)) {
-                component = UcmSelector.parse(output, Component.class);
+            String output = cache.get(baseline.getSelector(), Attribute.COMPONENT);
+            if (output == null) {
+                output = describeComponent(baseline.getSelector());
             }
-            baseline.setComponent(component);
+            baseline.setComponent(parseComponent(output));
         }
         return baseline.getComponent();
     }
 
     public Component[] getComponent(Baseline... baselines) throws IOException, InterruptedException {
+        return getComponents(baselines);
+    }
+
+    /**
+     * Returns the components of the given baselines. The baselines whose component is unknown are described together, with a single cleartool command,
+     * and one by one only if this command fails.
+     */
+    public Component[] getComponents(Baseline... baselines) throws IOException, InterruptedException {
+        // the cache is looked up once per baseline, so that its statistics count each baseline once
+        Set<String> selectors = new LinkedHashSet<String>();
+        for (Baseline baseline : baselines) {
+            if (baseline.getComponent() == null && !selectors.contains(baseline.getSelector())) {
+                String output = cache.get(baseline.getSelector(), Attribute.COMPONENT);
+                if (output == null) {
+                    selectors.add(baseline.getSelector());
+                } else {
+                    baseline.setComponent(parseComponent(output));
+                }
+            }
+        }
+        Map<String, String> outputs = new HashMap<String, String>();
+        if (selectors.size() > 1) {
+            outputs = describeComponents(selectors.toArray(new String[selectors.size()]));
+        }
         Component[] result = new Component[baselines.length];
         for (int i = 0; i < baselines.length; i++) {
-            result[i] = getComponent(baselines[i]);
+            Baseline baseline = baselines[i];
+            if (baseline.getComponent() == null && selectors.contains(baseline.getSelector())) {
+                if (!outputs.containsKey(baseline.getSelector())) {
+                    outputs.put(baseline.getSelector(), describeComponent(baseline.getSelector()));
+                }
+                baseline.setComponent(parseComponent(outputs.get(baseline.getSelector())));
+            }
+            result[i] = baseline.getComponent();
         }
         return result;
     }
@@ -118,7 +206,13 @@ public class BaselineService extends ClearcaseService {
      */
     public Baseline[] getDependentBaselines(Baseline baseline) throws IOException, InterruptedException {
         if (baseline.getDependentBaselines() == null) {
-            String output = clearTool.lsbl(baseline.getSelector(), "%[depends_on_closure]Xp");
+            String output = cache.get(baseline.getSelector(), Attribute.DEPENDS_ON_CLOSURE);
+            if (output == null) {
+                output = clearTool.lsbl(baseline.getSelector(), "%[depends_on_closure]Xp");
+                if (ClearCaseUtils.isCleartoolOutputValid(output)) {
+                    cache.put(baseline.getSelector(), Attribute.DEPENDS_ON_CLOSURE, output);
+                }
+            }
             Baseline[] result = null;
             if (ClearCaseUtils.isCleartoolOutputValid(output)) {
                 String[] splitOutput = StringUtils.split(output);
@@ -143,11 +237,7 @@ public class BaselineService extends ClearcaseService {
     }
 
     public Baseline parse(String selector) {
-        String baselineSelector = stripPrefix(selector);
-        if (!baselinePool.containsKey(baselineSelector)) {
-            baselinePool.put(selector, UcmSelector.parse(baselineSelector, Baseline.class));
-        }
-        return baselinePool.get(selector);
+        return UcmSelector.parse(stripPrefix(selector), Baseline.class);
     }
 
     private ActivitiesDelta compare(Baseline from, Baseline to, EnumSet<DiffBlOptions> diffBlOptions, String viewPath) throws IOException {
@@ -160,6 +250,77 @@ public class BaselineService extends ClearcaseService {
         return ActivitiesDelta.parse(reader);
     }
 
+    private void compareInParallel(final Baseline[] from, final Baseline[] to, Collection<Integer> indexes) throws IOException, InterruptedException {
+        final Semaphore nodeSemaphore = ConcurrencyUtils.getNodeSemaphore(clearTool.getLauncher());
+        ExecutorService executor = ConcurrencyUtils.newExecutor("ClearCase diffbl", Math.min(DIFFBL_CONCURRENCY, indexes.size()));
+        try {
+            List<Future<ActivitiesDelta>> results = new ArrayList<Future<ActivitiesDelta>>();
+            for (final int i : indexes) {
+                results.add(executor.submit(new Callable<ActivitiesDelta>() {
+                    @Override
+                    public ActivitiesDelta call() throws Exception {
+                        nodeSemaphore.acquire();
+                        try {
+                            return compare(from[i], to[i]);
+                        } finally {
+                            nodeSemaphore.release();
+                        }
+                    }
+                }));
+            }
+            for (Future<ActivitiesDelta> result : results) {
+                ConcurrencyUtils.getResult(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Describes the component of a baseline, and caches it if the output is valid.
+     */
+    private String describeComponent(String selector) throws IOException, InterruptedException {
+        String output = toString(clearTool.describe("%[component]Xp", null, selector));
+        if (StringUtils.isNotBlank(output) && ClearCaseUtils.isCleartoolOutputValid(output)) {
+            cache.put(selector, Attribute.COMPONENT, output);
+        }
+        return output;
+    }
+
+    private Map<String, String> describeComponents(String[] selectors) throws InterruptedException {
+        Map<String, String> outputs = new HashMap<String, String>();
+        List<String> lines;
+        try {
+            lines = UcmCommon.describeComponents(clearTool, selectors);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Unable to describe the components of " + selectors.length + " baselines together", e);
+            return outputs;
+        }
+        if (lines.size() != selectors.length) {
+            LOG.fine("Unexpected output when describing the components of " + selectors.length + " baselines together: " + lines);
+            return outputs;
+        }
+        for (int i = 0; i < selectors.length; i++) {
+            String output = lines.get(i).trim();
+            if (StringUtils.isNotBlank(output) && ClearCaseUtils.isCleartoolOutputValid(output)) {
+                outputs.put(selectors[i], output);
+                cache.put(selectors[i], Attribute.COMPONENT, output);
+            }
+        }
+        return outputs;
+    }
+
+    private Component parseComponent(String output) {
+        if (ClearCaseUtils.isCleartoolOutputValid(output)) {
+            return UcmSelector.parse(output, Component.class);
+        }
+        return null;
+    }
+
+    private String getComparisonKey(Baseline from, Baseline to) {
+        return from.getSelector() + ' ' + to.getSelector();
+    }
+
     private String stripPrefix(String selector) {
         return StringUtils.removeStart(selector, Baseline.PREFIX);
     }
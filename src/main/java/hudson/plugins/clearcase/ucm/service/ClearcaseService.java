@@ -25,6 +25,11 @@ package hudson.plugins.clearcase.ucm.service;
 
 import hudson.plugins.clearcase.ClearTool;
 
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.commons.io.IOUtils;
+
 /**
  * A Clearcase service relying on a ClearTool instance to perform its operations
  */
@@ -40,4 +45,15 @@ public abstract class ClearcaseService {
         return clearTool;
     }
 
+    /**
+     * Reads the whole output of a cleartool command, and closes it so that its temporary file, if any, is deleted.
+     */
+    protected static String toString(Reader output) throws IOException {
+        try {
+            return IOUtils.toString(output);
+        } finally {
+            output.close();
+        }
+    }
+
 }
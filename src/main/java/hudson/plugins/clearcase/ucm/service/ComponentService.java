@@ -25,19 +25,26 @@ package hudson.plugins.clearcase.ucm.service;
 
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ucm.model.Component;
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache.Attribute;
 import hudson.plugins.clearcase.util.ClearCaseUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
 public class ComponentService extends ClearcaseService {
 
+    private final UcmMetadataCache cache;
+
     ComponentService(ClearTool clearTool) {
+        this(clearTool, UcmMetadataCache.getInstance());
+    }
+
+    ComponentService(ClearTool clearTool, UcmMetadataCache cache) {
         super(clearTool);
+        this.cache = cache;
     }
 
     /**
@@ -46,7 +53,13 @@ public class ComponentService extends ClearcaseService {
      */
     public String getRootDir(Component component) throws IOException, InterruptedException {
         if (component.getRootDir() == null) {
-            String output = IOUtils.toString(clearTool.describe("%[root_dir]Xp", null, component.getSelector()));
+            String output = cache.get(component.getSelector(), Attribute.ROOT_DIR);
+            if (output == null) {
+                output = toString(clearTool.describe("%[root_dir]Xp", null, component.getSelector()));
+                if (ClearCaseUtils.isCleartoolOutputValid(output)) {
+                    cache.put(component.getSelector(), Attribute.ROOT_DIR, output);
+                }
+            }
             String rootDir = null;
             if (ClearCaseUtils.isCleartoolOutputValid(output)) {
                 rootDir = output;
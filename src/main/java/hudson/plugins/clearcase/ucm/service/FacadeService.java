@@ -58,7 +58,7 @@ public class FacadeService extends ClearcaseService {
         Stream stream = streamService.parse(streamSelector);
         Baseline[] foundationBaselines = streamService.getFoundationBaselines(stream);
         Baseline[] baselinesClosure = baselineService.getDependentBaselines(foundationBaselines);
-        Component[] components = baselineService.getComponent(baselinesClosure);
+        Component[] components = baselineService.getComponents(baselinesClosure);
         return componentService.getRootDir(components);
     }
 
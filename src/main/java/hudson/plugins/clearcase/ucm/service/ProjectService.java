@@ -32,7 +32,6 @@ import hudson.plugins.clearcase.util.ClearCaseUtils;
 import java.io.IOException;
 import java.io.Reader;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
 public class ProjectService extends ClearcaseService {
@@ -42,7 +41,7 @@ public class ProjectService extends ClearcaseService {
 
     public Component[] getModifiableComponents(Project project) throws IOException, InterruptedException {
         Reader reader = clearTool.describe("%[mod_comps]Xp", null, project.getSelector());
-        String output = IOUtils.toString(reader);
+        String output = toString(reader);
         if (ClearCaseUtils.isCleartoolOutputValid(output)) {
             String[] split = StringUtils.split(output, ' ');
             Component[] components = new Component[split.length];
@@ -29,12 +29,14 @@ import hudson.plugins.clearcase.model.Versions;
 import hudson.plugins.clearcase.ucm.model.Baseline;
 import hudson.plugins.clearcase.ucm.model.Stream;
 import hudson.plugins.clearcase.ucm.model.UcmSelector;
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache.Attribute;
 import hudson.plugins.clearcase.util.ClearCaseUtils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -46,10 +48,16 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
 public class StreamService extends ClearcaseService {
-    private Cache<String, Stream> streamPool = CacheBuilder.newBuilder().maximumSize(10).build();
+    private final UcmMetadataCache      cache;
+    private final Cache<String, Stream> streamPool = CacheBuilder.newBuilder().maximumSize(10).build();
 
     StreamService(ClearTool clearTool) {
+        this(clearTool, UcmMetadataCache.getInstance());
+    }
+
+    StreamService(ClearTool clearTool, UcmMetadataCache cache) {
         super(clearTool);
+        this.cache = cache;
     }
 
     public boolean exists(Stream stream) throws IOException, InterruptedException {
@@ -63,7 +71,7 @@ public class StreamService extends ClearcaseService {
      */
     public ConfigSpec getConfigSpec(Stream stream) throws IOException, InterruptedException {
         Reader reader = clearTool.describe("%[config_spec]Xp", null, stream.getSelector());
-        String output = IOUtils.toString(reader);
+        String output = toString(reader);
         if (ClearCaseUtils.isCleartoolOutputValid(output)) {
             return new ConfigSpec(output, clearTool.getLauncher().isUnix());
         }
@@ -76,7 +84,7 @@ public class StreamService extends ClearcaseService {
     public Baseline[] getFoundationBaselines(Stream stream) throws IOException, InterruptedException {
         Stream streamFromPool = getFromPool(stream);
         if (streamFromPool.getFoundationBaselines() == null) {
-            streamFromPool.setFoundationBaselines(describeToBaselines(streamFromPool, "%[found_bls]Xp"));
+            streamFromPool.setFoundationBaselines(describeToBaselines(streamFromPool, "%[found_bls]Xp", Attribute.FOUNDATION_BASELINES));
         }
         return streamFromPool.getFoundationBaselines();
     }
@@ -87,7 +95,7 @@ public class StreamService extends ClearcaseService {
     public Baseline[] getLatestBaselines(Stream stream) throws IOException, InterruptedException {
         Stream streamFromPool = getFromPool(stream);
         if (streamFromPool.getLatestBaselines() == null) {
-            streamFromPool.setLatestBaselines(describeToBaselines(streamFromPool, "%[latest_bls]Xp"));
+            streamFromPool.setLatestBaselines(describeToBaselines(streamFromPool, "%[latest_bls]Xp", Attribute.LATEST_BASELINES));
         }
         return streamFromPool.getLatestBaselines();
     }
@@ -138,21 +146,29 @@ public class StreamService extends ClearcaseService {
     
     public Versions getVersions(Stream stream, String viewPath) throws IOException, InterruptedException{
         Reader reader = clearTool.lsactivityIn(stream.getSelector(), "%[versions]p\\n", viewPath);
-        String absoluteViewPath = clearTool.pwv(viewPath);
-        return Versions.parse(reader, absoluteViewPath, null);
+        try {
+            String absoluteViewPath = clearTool.pwv(viewPath);
+            return Versions.parse(reader, absoluteViewPath, null);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
     }
 
-    private Baseline[] describeToBaselines(Stream stream, String format) throws IOException, InterruptedException {
+    private Baseline[] describeToBaselines(Stream stream, String format, Attribute attribute) throws IOException, InterruptedException {
+        String cached = cache.get(stream.getSelector(), attribute);
+        if (cached != null) {
+            return toBaselines(Arrays.asList(StringUtils.split(cached)));
+        }
         Reader reader = clearTool.describe(format, null, stream.getSelector());
         BufferedReader br = new BufferedReader(reader);
-        List<Baseline> baselines = new ArrayList<Baseline>();
+        List<String> selectors = new ArrayList<String>();
         try {
             for (String line = br.readLine(); line != null; line = br.readLine()) {
                 if (ClearCaseUtils.isCleartoolOutputValid(line)) {
                     String[] bl = line.split(" ");
                     for (String b : bl) {
                         if (StringUtils.isNotBlank(b)) {
-                            baselines.add(UcmSelector.parse(b, Baseline.class));
+                            selectors.add(b);
                         }
                     }
                 }
@@ -161,11 +177,13 @@ public class StreamService extends ClearcaseService {
             IOUtils.closeQuietly(br);
             IOUtils.closeQuietly(reader);
         }
-        if (baselines.isEmpty()) {
+        if (selectors.isEmpty()) {
             throw new IOException("Unexpected output for command \"cleartool describe -fmt " + format + " " + stream.getSelector()
                     + "\" or no available baseline found");
         }
-        return baselines.toArray(new Baseline[baselines.size()]);
+        Baseline[] baselines = toBaselines(selectors);
+        cache.put(stream.getSelector(), attribute, StringUtils.join(selectors, ' '));
+        return baselines;
     }
 
     private Stream getFromPool(Stream stream) {
@@ -177,4 +195,12 @@ public class StreamService extends ClearcaseService {
         return streamFromPool;
     }
 
+    private Baseline[] toBaselines(List<String> selectors) {
+        Baseline[] baselines = new Baseline[selectors.size()];
+        for (int i = 0; i < baselines.length; i++) {
+            baselines[i] = UcmSelector.parse(selectors.get(i), Baseline.class);
+        }
+        return baselines;
+    }
+
 }
@@ -0,0 +1,143 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of UCM metadata shared by all the jobs of the controller, so that it survives the services rebuilt for each poll and build.
+ * <p>
+ * Values are cleartool outputs keyed by the selector, including its PVOB, of the described object and by the attribute. Immutable attributes, like the
+ * component of a baseline or the root directory of a component, and mutable ones, like the latest baselines of a stream, are kept in separate caches
+ * with their own size and time to live. Mutable attributes are not shared by default, as a poll must see the baselines created since the previous one.
+ * </p>
+ */
+public class UcmMetadataCache {
+
+    /**
+     * The cached attributes, and whether they can change for a given object.
+     */
+    public enum Attribute {
+        COMPONENT(false), DEPENDS_ON_CLOSURE(false), FOUNDATION_BASELINES(true), LATEST_BASELINES(true), ROOT_DIR(false);
+
+        private final boolean mutable;
+
+        private Attribute(boolean mutable) {
+            this.mutable = mutable;
+        }
+
+        public boolean isMutable() {
+            return mutable;
+        }
+    }
+
+    /**
+     * Maximum number of immutable values kept.
+     */
+    public static final long              IMMUTABLE_MAX_SIZE = Long.getLong(UcmMetadataCache.class.getName() + ".immutableMaxSize", 10000);
+
+    /**
+     * Time to live, in seconds, of the immutable values.
+     */
+    public static final long              IMMUTABLE_TTL      = Long.getLong(UcmMetadataCache.class.getName() + ".immutableTtl", 24 * 3600);
+
+    /**
+     * Maximum number of mutable values kept.
+     */
+    public static final long              MUTABLE_MAX_SIZE   = Long.getLong(UcmMetadataCache.class.getName() + ".mutableMaxSize", 1000);
+
+    /**
+     * Time to live, in seconds, of the mutable values. The default, 0, disables their sharing.
+     */
+    public static final long              MUTABLE_TTL        = Long.getLong(UcmMetadataCache.class.getName() + ".mutableTtl", 0);
+
+    private static final UcmMetadataCache INSTANCE           = new UcmMetadataCache(IMMUTABLE_MAX_SIZE, IMMUTABLE_TTL, MUTABLE_MAX_SIZE, MUTABLE_TTL);
+
+    private final AtomicLong              hits               = new AtomicLong();
+    private final Cache<String, String>   immutableValues;
+    private final AtomicLong              misses             = new AtomicLong();
+    private final Cache<String, String>   mutableValues;
+
+    public UcmMetadataCache(long immutableMaxSize, long immutableTtl, long mutableMaxSize, long mutableTtl) {
+        this.immutableValues = build(immutableMaxSize, immutableTtl);
+        this.mutableValues = build(mutableMaxSize, mutableTtl);
+    }
+
+    /**
+     * @return the cache shared by the controller
+     */
+    public static UcmMetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static Cache<String, String> build(long maxSize, long ttl) {
+        if (ttl <= 0 || maxSize <= 0) {
+            return null;
+        }
+        return CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * @return the cached value, or null if it is not cached
+     */
+    public String get(String selector, Attribute attribute) {
+        Cache<String, String> cache = getCache(attribute);
+        if (cache == null) {
+            return null;
+        }
+        String value = cache.getIfPresent(getKey(selector, attribute));
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getSize() {
+        return size(immutableValues) + size(mutableValues);
+    }
+
+    public void invalidateAll() {
+        if (immutableValues != null) {
+            immutableValues.invalidateAll();
+        }
+        if (mutableValues != null) {
+            mutableValues.invalidateAll();
+        }
+    }
+
+    public void put(String selector, Attribute attribute, String value) {
+        Cache<String, String> cache = getCache(attribute);
+        if (cache != null && value != null) {
+            cache.put(getKey(selector, attribute), value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UcmMetadataCache [size=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
+
+    private Cache<String, String> getCache(Attribute attribute) {
+        return attribute.isMutable() ? mutableValues : immutableValues;
+    }
+
+    private String getKey(String selector, Attribute attribute) {
+        return attribute.name() + ' ' + selector;
+    }
+
+    private long size(Cache<String, String> cache) {
+        return cache == null ? 0 : cache.size();
+    }
+}
@@ -0,0 +1,222 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact binary copy of a changelog, stored next to it and read instead of the XML when it matches the changelog, i.e. when the changelog still has the
+ * length and the modification time it had when the copy was written.
+ * <p>
+ * Strings are stored once in a string table and referenced by index, paths and versions being split into their directory, or branch, and their last
+ * name, which repeat heavily. Values are stored as they are read back from the XML: trimmed, with normalized line ends, and empty instead of null.
+ * </p>
+ */
+public class ChangeLogBinaryFile {
+
+    /**
+     * Builds the binary changelog.
+     */
+    public static class Output {
+        private final ByteArrayOutputStream bytes   = new ByteArrayOutputStream();
+        private final DataOutputStream      data    = new DataOutputStream(bytes);
+        private final List<String>          strings = new ArrayList<String>();
+        private final Map<String, Integer>  table   = new HashMap<String, Integer>();
+
+        /**
+         * Writes the binary changelog next to the changelog, which must have been written.
+         *
+         * @param format
+         *            the format of the entries, checked when reading
+         */
+        public void write(File changeLogFile, String format) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getFile(changeLogFile))));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(format);
+                out.writeLong(changeLogFile.length());
+                out.writeLong(changeLogFile.lastModified());
+                out.writeInt(strings.size());
+                for (String string : strings) {
+                    writeLongUTF(out, string);
+                }
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            } finally {
+                out.close();
+            }
+        }
+
+        public Output writeInt(int value) throws IOException {
+            int remaining = value;
+            while ((remaining & ~0x7f) != 0) {
+                data.writeByte((remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            data.writeByte(remaining);
+            return this;
+        }
+
+        /**
+         * Writes a path or a version, as its directory or branch and its last name.
+         */
+        public Output writePath(String value) throws IOException {
+            String normalized = normalize(value);
+            int separator = Math.max(normalized.lastIndexOf('/'), normalized.lastIndexOf('\\')) + 1;
+            writeReference(normalized.substring(0, separator));
+            writeReference(normalized.substring(separator));
+            return this;
+        }
+
+        public Output writeString(String value) throws IOException {
+            writeReference(normalize(value));
+            return this;
+        }
+
+        private void writeReference(String value) throws IOException {
+            Integer index = table.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.add(value);
+                table.put(value, index);
+            }
+            writeInt(index);
+        }
+    }
+
+    /**
+     * Reads the binary changelog.
+     */
+    public static class Input {
+        private final DataInputStream data;
+        private final String[]        strings;
+
+        Input(String[] strings, byte[] bytes) {
+            this.strings = strings;
+            this.data = new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        public int readInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = data.readUnsignedByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid integer in the binary changelog");
+        }
+
+        public String readPath() throws IOException {
+            String directory = readString();
+            String name = readString();
+            return directory.length() == 0 ? name : directory.concat(name);
+        }
+
+        public String readString() throws IOException {
+            int index = readInt();
+            if (index >= strings.length) {
+                throw new IOException("Invalid string reference in the binary changelog");
+            }
+            return strings[index];
+        }
+    }
+
+    /**
+     * Set to true to neither write nor read the binary changelogs.
+     */
+    public static final boolean DISABLED = Boolean.getBoolean(ChangeLogBinaryFile.class.getName() + ".disabled");
+
+    private static final Logger LOGGER   = Logger.getLogger(ChangeLogBinaryFile.class.getName());
+    private static final int    MAGIC    = 0x4343424c;
+    private static final String SUFFIX   = ".bin";
+    private static final int    VERSION  = 2;
+
+    /**
+     * Deletes the binary copy of a changelog, which is about to be rewritten.
+     */
+    public static void delete(File changeLogFile) {
+        File file = getFile(changeLogFile);
+        if (file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Unable to delete {0}", file);
+        }
+    }
+
+    public static File getFile(File changeLogFile) {
+        return new File(changeLogFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * Opens the binary copy of a changelog.
+     *
+     * @return the binary changelog, or null if there is none, if it does not match the changelog or if it is disabled
+     */
+    public static Input open(File changeLogFile, String format) {
+        File file = getFile(changeLogFile);
+        if (DISABLED || !file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !format.equals(in.readUTF()) || in.readLong() != changeLogFile.length()
+                        || in.readLong() != changeLogFile.lastModified()) {
+                    return null;
+                }
+                String[] strings = new String[in.readInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = readLongUTF(in);
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new Input(strings, bytes);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable binary changelog " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the value as it is read back from the XML changelog
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String trimmed = value.trim();
+        if (trimmed.indexOf('\r') < 0) {
+            return trimmed;
+        }
+        return trimmed.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    private static String readLongUTF(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeLongUTF(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -33,20 +33,32 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Class that merges log entries into
+ * <p>
+ * An entry is merged into the first entry created for the same user with the same comment whose oldest or newest date is close enough. To avoid
+ * comparing each entry with all the entries of its user, the merged entries are grouped by user and comment, and each group indexes its entries by their
+ * oldest and newest dates: only the entries with a date in the time window of the new entry are considered.
+ * </p>
  */
 public class ChangeLogEntryMerger {
 
     private static class MergedLogEntry {
         private ClearCaseChangeLogEntry entry;
+        /**
+         * rank of creation, the first matching entry is the oldest created
+         */
+        private final int               index;
         private Date                    newest;
         private Date                    oldest;
 
-        public MergedLogEntry(ClearCaseChangeLogEntry entry) {
+        public MergedLogEntry(ClearCaseChangeLogEntry entry, int index) {
             this.entry = entry;
+            this.index = index;
             oldest = entry.getDate();
             newest = entry.getDate();
         }
@@ -64,10 +76,65 @@ public class ChangeLogEntryMerger {
         }
     }
 
+    /**
+     * The merged entries of a user with the same comment, indexed by their oldest and newest dates
+     */
+    private static class MergeGroup {
+        private final NavigableMap<Long, List<MergedLogEntry>> byDate = new TreeMap<Long, List<MergedLogEntry>>();
+
+        private void add(long time, MergedLogEntry entry) {
+            List<MergedLogEntry> entries = byDate.get(time);
+            if (entries == null) {
+                entries = new ArrayList<MergedLogEntry>(1);
+                byDate.put(time, entries);
+            }
+            if (!entries.contains(entry)) {
+                entries.add(entry);
+            }
+        }
+
+        private void add(MergedLogEntry entry) {
+            add(entry.oldest.getTime(), entry);
+            add(entry.newest.getTime(), entry);
+        }
+
+        /**
+         * @return the first created entry whose oldest or newest date is in the given window (bounds excluded)
+         */
+        private MergedLogEntry find(long from, long to) {
+            MergedLogEntry first = null;
+            for (List<MergedLogEntry> entries : byDate.subMap(from, false, to, false).values()) {
+                for (MergedLogEntry entry : entries) {
+                    if (first == null || entry.index < first.index) {
+                        first = entry;
+                    }
+                }
+            }
+            return first;
+        }
+
+        private void remove(long time, MergedLogEntry entry) {
+            List<MergedLogEntry> entries = byDate.get(time);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    byDate.remove(time);
+                }
+            }
+        }
+
+        private void remove(MergedLogEntry entry) {
+            remove(entry.oldest.getTime(), entry);
+            remove(entry.newest.getTime(), entry);
+        }
+    }
+
     private transient int                     maxTimeDifference;
 
     private Map<String, List<MergedLogEntry>> userEntries = new HashMap<String, List<MergedLogEntry>>();
 
+    private Map<String, Map<String, MergeGroup>> userGroups = new HashMap<String, Map<String, MergeGroup>>();
+
     public ChangeLogEntryMerger() {
         this(0);
     }
@@ -78,18 +145,21 @@ public class ChangeLogEntryMerger {
 
     public List<ClearCaseChangeLogEntry> getMergedList(List<ClearCaseChangeLogEntry> orgList) {
         userEntries.clear();
+        userGroups.clear();
+        int count = 0;
         for (ClearCaseChangeLogEntry entry : orgList) {
-            boolean wasMerged = false;
             List<MergedLogEntry> entries = getUserEntries(entry.getUser());
-            for (MergedLogEntry storedEntry : entries) {
-                if (canBeMerged(storedEntry, entry)) {
-                    storedEntry.merge(entry);
-                    wasMerged = true;
-                    break;
-                }
-            }
-            if (!wasMerged) {
-                entries.add(new MergedLogEntry(entry));
+            MergeGroup group = getGroup(entry.getUser(), entry.getComment());
+            long time = entry.getDate().getTime();
+            MergedLogEntry storedEntry = group.find(time - maxTimeDifference, time + maxTimeDifference);
+            if (storedEntry != null) {
+                group.remove(storedEntry);
+                storedEntry.merge(entry);
+                group.add(storedEntry);
+            } else {
+                MergedLogEntry mergedEntry = new MergedLogEntry(entry, count++);
+                entries.add(mergedEntry);
+                group.add(mergedEntry);
             }
         }
         List<ClearCaseChangeLogEntry> list = getList();
@@ -102,14 +172,18 @@ public class ChangeLogEntryMerger {
         return list;
     }
 
-    private boolean canBeMerged(MergedLogEntry entryOne, ClearCaseChangeLogEntry entryTwo) {
-        if (entryOne.entry.getComment().equals(entryTwo.getComment())) {
-
-            long oldestDiff = Math.abs(entryOne.oldest.getTime() - entryTwo.getDate().getTime());
-            long newestDiff = Math.abs(entryOne.newest.getTime() - entryTwo.getDate().getTime());
-            return (oldestDiff < maxTimeDifference) || (newestDiff < maxTimeDifference);
+    private MergeGroup getGroup(String user, String comment) {
+        Map<String, MergeGroup> groups = userGroups.get(user);
+        if (groups == null) {
+            groups = new HashMap<String, MergeGroup>();
+            userGroups.put(user, groups);
+        }
+        MergeGroup group = groups.get(comment);
+        if (group == null) {
+            group = new MergeGroup();
+            groups.put(comment, group);
         }
-        return false;
+        return group;
     }
 
     private List<ClearCaseChangeLogEntry> getList() {
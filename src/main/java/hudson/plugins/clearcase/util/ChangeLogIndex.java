@@ -0,0 +1,218 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the entries of a changelog file, stored next to it.
+ * <p>
+ * For each entry, it records the offset and the length of its bytes in the changelog, its user and its number of elements, so that the entries can be
+ * counted, their authors listed and a page of entries read without parsing the whole changelog. The index also records the length of the changelog,
+ * and is ignored if the changelog does not have this length anymore.
+ * </p>
+ */
+public class ChangeLogIndex {
+
+    /**
+     * Builds the index while the changelog is written.
+     */
+    public static class Builder {
+        private int      count;
+        private int[]    elementCounts = new int[64];
+        private int[]    lengths       = new int[64];
+        private long[]   offsets       = new long[64];
+        private String[] users         = new String[64];
+
+        /**
+         * Adds the next entry of the changelog.
+         *
+         * @param offset
+         *            the position of the first byte of the entry
+         * @param end
+         *            the position following the last byte of the entry
+         */
+        public Builder add(long offset, long end, String user, int elementCount) {
+            if (count == offsets.length) {
+                int capacity = count * 2;
+                elementCounts = Arrays.copyOf(elementCounts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                users = Arrays.copyOf(users, capacity);
+            }
+            elementCounts[count] = elementCount;
+            lengths[count] = (int) (end - offset);
+            offsets[count] = offset;
+            users[count] = user;
+            count++;
+            return this;
+        }
+
+        public ChangeLogIndex build(long changeLogLength) {
+            return new ChangeLogIndex(changeLogLength, Arrays.copyOf(offsets, count), Arrays.copyOf(lengths, count), Arrays.copyOf(elementCounts, count),
+                    Arrays.copyOf(users, count));
+        }
+    }
+
+    /**
+     * Number of entries from which the changelog sets read their entries page by page instead of parsing the whole changelog.
+     */
+    public static final int     LAZY_THRESHOLD = Integer.getInteger(ChangeLogIndex.class.getName() + ".lazyThreshold", 1000);
+
+    private static final Logger LOGGER         = Logger.getLogger(ChangeLogIndex.class.getName());
+    private static final int    MAGIC          = 0x43434c49;
+    private static final String SUFFIX         = ".index";
+    private static final int    VERSION        = 1;
+
+    private final long          changeLogLength;
+    private final int[]         elementCounts;
+    private final int[]         lengths;
+    private final long[]        offsets;
+    private final String[]      users;
+
+    ChangeLogIndex(long changeLogLength, long[] offsets, int[] lengths, int[] elementCounts, String[] users) {
+        this.changeLogLength = changeLogLength;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.elementCounts = elementCounts;
+        this.users = users;
+    }
+
+    /**
+     * Deletes the index of a changelog, which is about to be rewritten.
+     */
+    public static void delete(File changeLogFile) {
+        File file = getFile(changeLogFile);
+        if (file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Unable to delete {0}", file);
+        }
+    }
+
+    public static File getFile(File changeLogFile) {
+        return new File(changeLogFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * Reads the index of a changelog.
+     *
+     * @return the index, or null if there is none or if it does not match the changelog
+     */
+    public static ChangeLogIndex read(File changeLogFile) {
+        File file = getFile(changeLogFile);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                long changeLogLength = in.readLong();
+                if (changeLogLength != changeLogFile.length()) {
+                    return null;
+                }
+                int count = in.readInt();
+                long[] offsets = new long[count];
+                int[] lengths = new int[count];
+                int[] elementCounts = new int[count];
+                String[] users = new String[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = in.readLong();
+                    lengths[i] = in.readInt();
+                    elementCounts[i] = in.readInt();
+                    users[i] = in.readBoolean() ? in.readUTF() : null;
+                }
+                return new ChangeLogIndex(changeLogLength, offsets, lengths, elementCounts, users);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable changelog index " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the distinct users of the entries, in the order of the changelog
+     */
+    public Set<String> getAuthorNames() {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String user : users) {
+            if (user != null) {
+                names.add(user);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    public long getChangeLogLength() {
+        return changeLogLength;
+    }
+
+    public int getElementCount(int entry) {
+        return elementCounts[entry];
+    }
+
+    public int getLength(int entry) {
+        return lengths[entry];
+    }
+
+    public long getOffset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * @return the total number of elements of the entries
+     */
+    public long getTotalElementCount() {
+        long total = 0;
+        for (int elementCount : elementCounts) {
+            total += elementCount;
+        }
+        return total;
+    }
+
+    public String getUser(int entry) {
+        return users[entry];
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Writes the index next to its changelog.
+     */
+    public void write(File changeLogFile) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getFile(changeLogFile))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(changeLogLength);
+            out.writeInt(offsets.length);
+            for (int i = 0; i < offsets.length; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                out.writeInt(elementCounts[i]);
+                out.writeBoolean(users[i] != null);
+                if (users[i] != null) {
+                    out.writeUTF(users[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Streaming reader of the changelog files.
+ * <p>
+ * The file is read with StAX, and each element is reported to the subclass with its trimmed text, as the digester rules previously used did. Only the
+ * text of the elements the subclass is interested in is kept.
+ * </p>
+ */
+public abstract class ChangeLogXmlReader {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final List<String>           path    = new ArrayList<String>();
+    private final List<StringBuilder>    texts   = new ArrayList<StringBuilder>();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Reads the whole stream, which is not closed.
+     */
+    public void read(InputStream in) throws IOException, SAXException {
+        path.clear();
+        texts.clear();
+        XMLStreamReader reader = null;
+        try {
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(in);
+            }
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String name = reader.getLocalName();
+                    path.add(name);
+                    texts.add(startElement(name) ? new StringBuilder() : null);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    StringBuilder text = texts.isEmpty() ? null : texts.get(texts.size() - 1);
+                    if (text != null) {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    StringBuilder elementText = texts.remove(texts.size() - 1);
+                    endElement(reader.getLocalName(), elementText == null ? null : elementText.toString().trim());
+                    path.remove(path.size() - 1);
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing to release, the stream is closed by the caller
+                }
+            }
+        }
+    }
+
+    /**
+     * Called at the end of an element, while it is still the current element.
+     *
+     * @param text
+     *            the trimmed text of the element, null if {@link #startElement(String)} did not ask for it
+     */
+    protected abstract void endElement(String name, String text);
+
+    /**
+     * @param level
+     *            1 for the parent of the current element, 2 for its grand parent...
+     * @return the name of the ancestor of the current element, or null if there is none
+     */
+    protected String getAncestor(int level) {
+        int index = path.size() - 1 - level;
+        return index >= 0 ? path.get(index) : null;
+    }
+
+    /**
+     * Called at the start of an element, which is the current element.
+     *
+     * @return true if the text of the element is needed
+     */
+    protected abstract boolean startElement(String name);
+}
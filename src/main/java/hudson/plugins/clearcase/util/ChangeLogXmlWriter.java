@@ -0,0 +1,161 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Streaming writer of the changelog files.
+ * <p>
+ * It writes the same bytes as the <code>PrintStream</code> previously used: UTF-8, platform line separators, and values escaped and trimmed like
+ * {@link hudson.plugins.clearcase.ClearCaseChangeLogSet#escapeForXml(String)}, but values are escaped directly into a buffered writer instead of
+ * building intermediate strings.
+ * </p>
+ * <p>
+ * The number of bytes written so far is available through {@link #getPosition()}, which is used to index the entries of the file.
+ * </p>
+ */
+public class ChangeLogXmlWriter {
+
+    /**
+     * Counts the bytes written, and only flushes the underlying stream when closed, so that the position can be asked for each entry.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(new BufferedOutputStream(out));
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public void flush() {
+            // flushed on close
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+    }
+
+    private static final String        LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final CountingOutputStream counter;
+    private final Writer               writer;
+
+    public ChangeLogXmlWriter(OutputStream out) throws IOException {
+        this.counter = new CountingOutputStream(out);
+        this.writer = new BufferedWriter(new OutputStreamWriter(counter, "UTF-8"));
+    }
+
+    /**
+     * Flushes and closes the underlying stream.
+     */
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Writes <code>&lt;tag&gt;value&lt;/tag&gt;</code> on one line.
+     */
+    public ChangeLogXmlWriter element(String indent, String tag, String value) throws IOException {
+        writer.write(indent);
+        writer.write('<');
+        writer.write(tag);
+        writer.write('>');
+        escaped(value);
+        writer.write("</");
+        writer.write(tag);
+        writer.write('>');
+        writer.write(LINE_SEPARATOR);
+        return this;
+    }
+
+    /**
+     * Writes a value, escaped for XML and trimmed.
+     */
+    public ChangeLogXmlWriter escaped(String value) throws IOException {
+        if (value == null) {
+            return this;
+        }
+        // escaping neither adds nor removes whitespaces, so trimming first gives the same result
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int written = start;
+        for (int i = start; i < end; i++) {
+            String entity;
+            switch (value.charAt(i)) {
+            case '&':
+                entity = "&amp;";
+                break;
+            case '<':
+                entity = "&lt;";
+                break;
+            case '>':
+                entity = "&gt;";
+                break;
+            case '\'':
+                entity = "&apos;";
+                break;
+            case '\"':
+                entity = "&quot;";
+                break;
+            default:
+                continue;
+            }
+            writer.write(value, written, i - written);
+            writer.write(entity);
+            written = i + 1;
+        }
+        writer.write(value, written, end - written);
+        return this;
+    }
+
+    /**
+     * Writes a value escaped for XML and trimmed, on its own line.
+     */
+    public ChangeLogXmlWriter escapedLine(String value) throws IOException {
+        escaped(value);
+        writer.write(LINE_SEPARATOR);
+        return this;
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public long getPosition() throws IOException {
+        writer.flush();
+        return counter.count;
+    }
+
+    /**
+     * Writes a line.
+     */
+    public ChangeLogXmlWriter line(String text) throws IOException {
+        writer.write(text);
+        writer.write(LINE_SEPARATOR);
+        return this;
+    }
+}
@@ -53,6 +53,13 @@ public class ClearToolFormatHandler {
         return null;
     }
 
+    /**
+     * @return a tokenizer finding the same fields as {@link #checkLine(String)}, which is cheaper when many lines are read
+     */
+    public ClearToolFormatTokenizer createTokenizer() {
+        return new ClearToolFormatTokenizer(groupCount);
+    }
+
     public String getFormat() {
         return format;
     }
@@ -0,0 +1,203 @@
+package hudson.plugins.clearcase.util;
+
+/**
+ * Splits the lines produced with a {@link ClearToolFormatHandler} format into fields, without regular expression.
+ * <p>
+ * It finds the same fields as the pattern of the handler: each field is enclosed in double quotes, and only whitespaces can separate the closing quote of
+ * a field from the opening quote of the next one. As fields may themselves contain quotes, ambiguities are resolved like the greedy pattern does: the
+ * fields start at the first possible quote, and each field is as long as possible provided the following fields can still be found. Like <code>.</code>
+ * in the pattern, a field cannot contain a line terminator.
+ * </p>
+ * <p>
+ * The quotes of the line are found in one pass, then the field boundaries are computed from them without any backtracking. Fields are given as offsets
+ * in the line, and are only extracted on demand. A tokenizer reuses its buffers from one line to the next, so it must not be shared between threads.
+ * </p>
+ */
+public class ClearToolFormatTokenizer {
+
+    /**
+     * start (inclusive) and end (exclusive) offset of each field
+     */
+    private final int[] bounds;
+    /**
+     * for each quote, the number of fields (up to fieldCount) which can be found when a field starts at this quote
+     */
+    private int[]       chains = new int[16];
+    private final int   fieldCount;
+    /**
+     * for each quote, the index of the last quote before the next line terminator, i.e. the last quote which can end a field starting at this quote
+     */
+    private int[]       last   = new int[16];
+    private String      line;
+    /**
+     * for each quote, the index of the quote which can start the next field if this quote ends a field, -1 otherwise
+     */
+    private int[]       next   = new int[16];
+    /**
+     * offsets of the quotes of the line
+     */
+    private int[]       quotes = new int[16];
+
+    public ClearToolFormatTokenizer(int fieldCount) {
+        this.fieldCount = fieldCount;
+        this.bounds = new int[2 * fieldCount];
+    }
+
+    private static boolean isWhitespace(char c) {
+        // same as \s in a regular expression
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        // not matched by . in a regular expression
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * @param index
+     *            the index of the field, starting at 1 like the groups of a matcher
+     * @return the end offset (exclusive) of the field in the line
+     */
+    public int end(int index) {
+        checkTokenized();
+        return bounds[2 * index - 1];
+    }
+
+    /**
+     * @param index
+     *            the index of the field, starting at 1 like the groups of a matcher
+     * @return the content of the field, as <code>matcher.group(index)</code> would return it
+     */
+    public String field(int index) {
+        return line.substring(start(index), end(index));
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @param index
+     *            the index of the field, starting at 1 like the groups of a matcher
+     * @return the start offset of the field in the line
+     */
+    public int start(int index) {
+        checkTokenized();
+        return bounds[2 * index - 2];
+    }
+
+    /**
+     * Finds the fields of the given line.
+     *
+     * @return true if the line contains the expected fields, in which case they can be read until the next call
+     */
+    public boolean tokenize(String line) {
+        this.line = null;
+        if (line == null) {
+            return false;
+        }
+        int count = 0;
+        int segmentStart = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (count == quotes.length) {
+                    grow();
+                }
+                quotes[count++] = i;
+            } else if (isLineTerminator(c)) {
+                endSegment(segmentStart, count);
+                segmentStart = count;
+            }
+        }
+        endSegment(segmentStart, count);
+        if (count < 2 * fieldCount) {
+            // each field needs its own opening and closing quotes
+            return false;
+        }
+        for (int q = 0; q < count; q++) {
+            int position = quotes[q] + 1;
+            while (position < length && isWhitespace(line.charAt(position))) {
+                position++;
+            }
+            next[q] = position < length && line.charAt(position) == '"' ? q + 1 : -1;
+        }
+        // best number of fields which can follow a field ending after the current quote
+        int best = 0;
+        for (int q = count - 1; q >= 0; q--) {
+            if (last[q] == q) {
+                // no quote can end a field starting here
+                chains[q] = 0;
+                best = 0;
+            } else {
+                chains[q] = Math.min(fieldCount, 1 + best);
+            }
+            if (next[q] != -1) {
+                best = Math.max(best, chains[next[q]]);
+            }
+        }
+        int start = 0;
+        while (start < count && chains[start] < fieldCount) {
+            start++;
+        }
+        if (start == count) {
+            return false;
+        }
+        for (int field = 0; field < fieldCount - 1; field++) {
+            int remaining = fieldCount - field - 1;
+            int end = last[start];
+            while (next[end] == -1 || chains[next[end]] < remaining) {
+                end--;
+            }
+            bounds[2 * field] = quotes[start] + 1;
+            bounds[2 * field + 1] = quotes[end];
+            start = next[end];
+        }
+        bounds[2 * fieldCount - 2] = quotes[start] + 1;
+        bounds[2 * fieldCount - 1] = quotes[last[start]];
+        this.line = line;
+        return true;
+    }
+
+    /**
+     * @param index
+     *            the index of the field, starting at 1 like the groups of a matcher
+     * @return the content of the field without leading and trailing whitespaces, as <code>matcher.group(index).trim()</code> would return it
+     */
+    public String trimmedField(int index) {
+        int start = start(index);
+        int end = end(index);
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return line.substring(start, end);
+    }
+
+    private void checkTokenized() {
+        if (line == null) {
+            throw new IllegalStateException("No line tokenized");
+        }
+    }
+
+    private void endSegment(int start, int end) {
+        for (int q = start; q < end; q++) {
+            last[q] = end - 1;
+        }
+    }
+
+    private void grow() {
+        int size = quotes.length * 2;
+        int[] newQuotes = new int[size];
+        System.arraycopy(quotes, 0, newQuotes, 0, quotes.length);
+        quotes = newQuotes;
+        int[] newLast = new int[size];
+        System.arraycopy(last, 0, newLast, 0, last.length);
+        last = newLast;
+        next = new int[size];
+        chains = new int[size];
+    }
+}
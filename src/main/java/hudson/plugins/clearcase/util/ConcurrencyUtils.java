@@ -0,0 +1,95 @@
+package hudson.plugins.clearcase.util;
+
+import hudson.Launcher;
+import hudson.plugins.clearcase.ClearToolLauncher;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Helpers to run cleartool commands in parallel.
+ * <p>
+ * Whatever the parallelism of each operation, the number of cleartool commands run in parallel on a node is limited by the system property
+ * <code>hudson.plugins.clearcase.util.ConcurrencyUtils.maxParallelCommandsPerNode</code> (default 4), so that parallel polls do not overload the ClearCase
+ * servers.
+ * </p>
+ */
+public final class ConcurrencyUtils {
+
+    public static final int                 MAX_PARALLEL_COMMANDS_PER_NODE = Integer.getInteger(ConcurrencyUtils.class.getName()
+                                                                                   + ".maxParallelCommandsPerNode", 4);
+
+    /**
+     * Key used when the node is unknown
+     */
+    private static final Object             UNKNOWN_NODE                   = new Object();
+
+    private static final Map<Object, Semaphore> NODE_SEMAPHORES            = new WeakHashMap<Object, Semaphore>();
+
+    private ConcurrencyUtils() {}
+
+    /**
+     * @return the semaphore limiting the number of cleartool commands run in parallel on the node of the given launcher
+     */
+    public static Semaphore getNodeSemaphore(ClearToolLauncher launcher) {
+        Object key = UNKNOWN_NODE;
+        Launcher nodeLauncher = launcher == null ? null : launcher.getLauncher();
+        if (nodeLauncher != null && nodeLauncher.getChannel() != null) {
+            key = nodeLauncher.getChannel();
+        }
+        synchronized (NODE_SEMAPHORES) {
+            Semaphore semaphore = NODE_SEMAPHORES.get(key);
+            if (semaphore == null) {
+                semaphore = new Semaphore(MAX_PARALLEL_COMMANDS_PER_NODE, true);
+                NODE_SEMAPHORES.put(key, semaphore);
+            }
+            return semaphore;
+        }
+    }
+
+    /**
+     * Waits for the result of a task, unwrapping the exception thrown by the task.
+     */
+    public static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Creates a thread pool made of daemon threads, which must be shut down after use.
+     */
+    public static ExecutorService newExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, new NamingThreadFactory(new DaemonThreadFactory(), name));
+    }
+
+    /**
+     * Rethrows the cause of the given exception if it is unchecked, or returns it as an {@link IOException}.
+     */
+    public static IOException unwrap(ExecutionException e) throws InterruptedException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
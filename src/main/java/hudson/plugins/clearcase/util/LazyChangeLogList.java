@@ -0,0 +1,130 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Read-only list of the entries of an indexed changelog, which are parsed page by page when accessed.
+ * <p>
+ * Only the last pages accessed are kept in memory, so iterating over a huge changelog does not retain all its entries.
+ * </p>
+ */
+public class LazyChangeLogList<T> extends AbstractList<T> {
+
+    /**
+     * Parses the entries of a page, given as a changelog containing only these entries.
+     */
+    public interface PageLoader<T> {
+        List<T> load(InputStream changeLogStream) throws IOException, SAXException;
+    }
+
+    /**
+     * Number of entries parsed at once.
+     */
+    public static final int             PAGE_SIZE    = Integer.getInteger(LazyChangeLogList.class.getName() + ".pageSize", 200);
+
+    private static final int            CACHED_PAGES = 4;
+    private static final byte[]         END          = "</history>".getBytes();
+    private static final byte[]         START        = "<history>".getBytes();
+
+    private final File                  file;
+    private final ChangeLogIndex        index;
+    private final PageLoader<T>         loader;
+    private final int                   pageSize;
+    private final Map<Integer, List<T>> pages;
+
+    public LazyChangeLogList(File file, ChangeLogIndex index, PageLoader<T> loader) {
+        this(file, index, loader, PAGE_SIZE);
+    }
+
+    public LazyChangeLogList(File file, ChangeLogIndex index, PageLoader<T> loader, int pageSize) {
+        this.file = file;
+        this.index = index;
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<T>>(CACHED_PAGES * 2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+    }
+
+    @Override
+    public T get(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+        }
+        return getPage(i / pageSize).get(i % pageSize);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @param start
+     *            the <code>start</code> request parameter of a page of the changelog views, may be null
+     * @param size
+     *            the number of entries of the changelog
+     * @return the first entry of the page, 0 if the parameter is not an entry
+     */
+    public static int pageStart(String start, int size) {
+        if (start == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Math.min(Integer.parseInt(start), size - 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private synchronized List<T> getPage(int page) {
+        List<T> entries = pages.get(page);
+        if (entries == null) {
+            int first = page * pageSize;
+            int last = Math.min(first + pageSize, size()) - 1;
+            try {
+                entries = loader.load(new SequenceInputStream(new ByteArrayInputStream(START), new SequenceInputStream(new ByteArrayInputStream(readBytes(first,
+                        last)), new ByteArrayInputStream(END))));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read the entries " + first + " to " + last + " of " + file, e);
+            } catch (SAXException e) {
+                throw new IllegalStateException("Unable to parse the entries " + first + " to " + last + " of " + file, e);
+            }
+            if (entries.size() != last - first + 1) {
+                throw new IllegalStateException("Found " + entries.size() + " entries instead of " + (last - first + 1) + " in " + file
+                        + ", its index is invalid");
+            }
+            pages.put(page, entries);
+        }
+        return entries;
+    }
+
+    private byte[] readBytes(int first, int last) throws IOException {
+        long offset = index.getOffset(first);
+        byte[] bytes = new byte[(int) (index.getOffset(last) + index.getLength(last) - offset)];
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            in.seek(offset);
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
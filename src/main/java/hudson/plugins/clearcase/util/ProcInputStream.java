@@ -0,0 +1,75 @@
+package hudson.plugins.clearcase.util;
+
+import hudson.Proc;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * The output of a running process. Data is read directly from the process, so that a slow reader slows the process down instead of having its output
+ * buffered in memory.
+ * <p>
+ * Closing the stream before its end kills the process; closing it once the end has been reached waits for the process termination.
+ * </p>
+ */
+public class ProcInputStream extends FilterInputStream {
+
+    private boolean    closed;
+    private boolean    endReached;
+    private int        exitCode = -1;
+    private final Proc proc;
+
+    /**
+     * @param proc
+     *            the running process
+     * @param output
+     *            the output of the process
+     */
+    public ProcInputStream(Proc proc, InputStream output) {
+        super(output);
+        this.proc = proc;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (endReached) {
+                exitCode = proc.join();
+            } else {
+                proc.kill();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for cleartool termination");
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * @return the exit code of the process, or -1 if the stream was closed before its end or is not closed yet
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        endReached |= b == -1;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        endReached |= count == -1;
+        return count;
+    }
+}
@@ -0,0 +1,152 @@
+package hudson.plugins.clearcase.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Output of a command, kept in memory up to a threshold and written to a temporary file beyond it.
+ * <p>
+ * Once written, the output is read back once, through {@link #getInputStream()} or {@link #getReader()}, without copying the memory buffer. The temporary
+ * file, if any, is deleted when the returned stream is closed, or by {@link #discard()} when the output is not read.
+ * </p>
+ */
+public class SpillingOutputStream extends OutputStream {
+
+    /**
+     * Memory buffer whose content is read without being copied.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(8192);
+        }
+
+        InputStream getInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * Number of bytes kept in memory before the output is written to a temporary file.
+     */
+    public static final int     THRESHOLD = Integer.getInteger(SpillingOutputStream.class.getName() + ".threshold", 1024 * 1024);
+
+    private static final Logger LOGGER    = Logger.getLogger(SpillingOutputStream.class.getName());
+
+    private File                file;
+    private Buffer              memory    = new Buffer();
+    private OutputStream        out;
+    private final String        prefix;
+    private final int           threshold;
+
+    /**
+     * @param prefix
+     *            the prefix of the temporary file
+     */
+    public SpillingOutputStream(String prefix) {
+        this(prefix, THRESHOLD);
+    }
+
+    public SpillingOutputStream(String prefix, int threshold) {
+        this.prefix = prefix;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    /**
+     * Releases the output without reading it.
+     */
+    public void discard() {
+        try {
+            close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to close " + file, e);
+        }
+        memory = null;
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.log(Level.WARNING, "Unable to delete {0}", file);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * @return the output, which must be closed
+     */
+    public InputStream getInputStream() throws IOException {
+        close();
+        if (file != null) {
+            return new DeleteOnCloseFileInputStream(file);
+        }
+        return memory.getInputStream();
+    }
+
+    /**
+     * @return the output, decoded with the platform charset, which must be closed
+     */
+    public Reader getReader() throws IOException {
+        return new InputStreamReader(getInputStream());
+    }
+
+    /**
+     * @return whether the output was written to a temporary file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (file == null && memory.size() + len > threshold) {
+            spill();
+        }
+        if (file == null) {
+            memory.write(b, off, len);
+        } else {
+            out.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (file == null && memory.size() >= threshold) {
+            spill();
+        }
+        if (file == null) {
+            memory.write(b);
+        } else {
+            out.write(b);
+        }
+    }
+
+    private void spill() throws IOException {
+        try {
+            file = File.createTempFile(prefix, null);
+        } catch (IOException e) {
+            throw new IOException("Couldn't create a temporary file", e);
+        }
+        out = new BufferedOutputStream(new FileOutputStream(file));
+        memory.writeTo(out);
+        memory = null;
+    }
+}
@@ -25,21 +25,94 @@
 package hudson.plugins.clearcase;
 
 import hudson.plugins.clearcase.ClearCaseChangeLogEntry.FileElement;
+import hudson.plugins.clearcase.util.ChangeLogBinaryFile;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
+import hudson.plugins.clearcase.util.LazyChangeLogList;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.xml.sax.SAXException;
 
 public class ClearCaseChangeLogSetTest {
 
+    @Test
+    public void testBinaryCopyIsReadLikeXml() throws IOException, SAXException {
+        List<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
+        ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry(new Date(1000000000000L), " user ", "line1\r\nline2 & <b> ");
+        entry.addElement(new FileElement("vobs/dir/file.c", "\\main\\branch\\3", null, "checkin"));
+        entry.addElement(new FileElement("vobs/dir/other.c", "\\main\\branch\\4", "action", "mkelem"));
+        history.add(entry);
+        entry = new ClearCaseChangeLogEntry();
+        entry.setDateStr("not a date");
+        history.add(entry);
+
+        File tempLogFile = File.createTempFile("clearcase", "xml");
+        tempLogFile.deleteOnExit();
+        ChangeLogIndex.getFile(tempLogFile).deleteOnExit();
+        ChangeLogBinaryFile.getFile(tempLogFile).deleteOnExit();
+        ClearCaseChangeLogSet.saveToChangeLog(tempLogFile, history);
+        Assert.assertTrue("The binary copy is missing", ChangeLogBinaryFile.getFile(tempLogFile).isFile());
+
+        List<ClearCaseChangeLogEntry> binaryLogs = ClearCaseChangeLogSet.parse(null, tempLogFile).getLogs();
+        FileInputStream fileInputStream = new FileInputStream(tempLogFile);
+        List<ClearCaseChangeLogEntry> xmlLogs = ClearCaseChangeLogSet.parse(null, fileInputStream).getLogs();
+        fileInputStream.close();
+
+        Assert.assertEquals("The number of change log entries is incorrect", xmlLogs.size(), binaryLogs.size());
+        for (int i = 0; i < xmlLogs.size(); i++) {
+            ClearCaseChangeLogEntry xmlEntry = xmlLogs.get(i);
+            ClearCaseChangeLogEntry binaryEntry = binaryLogs.get(i);
+            Assert.assertEquals("The user is incorrect", xmlEntry.getUser(), binaryEntry.getUser());
+            Assert.assertEquals("The comment is incorrect", xmlEntry.getComment(), binaryEntry.getComment());
+            Assert.assertEquals("The date is incorrect", xmlEntry.getDateStr(), binaryEntry.getDateStr());
+            Assert.assertEquals("The number of elements is incorrect", xmlEntry.getElements().size(), binaryEntry.getElements().size());
+            for (int j = 0; j < xmlEntry.getElements().size(); j++) {
+                FileElement xmlElement = xmlEntry.getElements().get(j);
+                FileElement binaryElement = binaryEntry.getElements().get(j);
+                Assert.assertEquals("The file is incorrect", xmlElement.getFile(), binaryElement.getFile());
+                Assert.assertEquals("The version is incorrect", xmlElement.getVersion(), binaryElement.getVersion());
+                Assert.assertEquals("The action is incorrect", xmlElement.getAction(), binaryElement.getAction());
+                Assert.assertEquals("The operation is incorrect", xmlElement.getOperation(), binaryElement.getOperation());
+            }
+        }
+        Assert.assertEquals("The comment is incorrect", "line1\nline2 & <b>", binaryLogs.get(0).getComment());
+
+        // the binary copy does not match a change log rewritten without it
+        FileOutputStream fileOutputStream = new FileOutputStream(tempLogFile);
+        ClearCaseChangeLogSet.saveToChangeLog(fileOutputStream, history.subList(0, 1));
+        fileOutputStream.close();
+        Assert.assertEquals("A stale binary copy is used", 1, ClearCaseChangeLogSet.parse(null, tempLogFile).getLogs().size());
+    }
+
+    @Test
+    public void testBinaryCopyOfChangeLogEditedInPlaceIsIgnored() throws IOException, SAXException {
+        List<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
+        history.add(new ClearCaseChangeLogEntry(new Date(1000000000000L), "user", "original"));
+
+        File tempLogFile = File.createTempFile("clearcase", "xml");
+        tempLogFile.deleteOnExit();
+        ChangeLogIndex.getFile(tempLogFile).deleteOnExit();
+        ChangeLogBinaryFile.getFile(tempLogFile).deleteOnExit();
+        ClearCaseChangeLogSet.saveToChangeLog(tempLogFile, history);
+        long lastModified = tempLogFile.lastModified();
+        FileUtils.writeStringToFile(tempLogFile, FileUtils.readFileToString(tempLogFile, "UTF-8").replace("original", "modified"), "UTF-8");
+        Assert.assertTrue(tempLogFile.setLastModified(lastModified + 2000));
+
+        Assert.assertEquals("A stale binary copy is used", "modified", ClearCaseChangeLogSet.parse(null, tempLogFile).getLogs().get(0).getComment());
+    }
+
     @Test
     public void testGetParent() throws IOException, SAXException {
         ClearCaseChangeLogSet logSet = ClearCaseChangeLogSet.parse(null, ClearCaseChangeLogSetTest.class.getResourceAsStream("changelog.xml"));
@@ -50,6 +123,58 @@ public class ClearCaseChangeLogSetTest {
         }
     }
 
+    @Test
+    public void testIndexedChangeLogIsReadLazily() throws IOException, SAXException {
+        int count = ChangeLogIndex.LAZY_THRESHOLD + 1500;
+        List<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
+        for (int i = 0; i < count; i++) {
+            ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry(new Date(1000000000000L + i * 1000L), "user" + (i % 7), "K\u00E4se <" + i + ">");
+            entry.addElement(new FileElement("file" + i, "\\main\\" + i, "action", "checkin"));
+            history.add(entry);
+        }
+        File tempLogFile = File.createTempFile("clearcase", "xml");
+        tempLogFile.deleteOnExit();
+        ChangeLogIndex.getFile(tempLogFile).deleteOnExit();
+        ChangeLogBinaryFile.getFile(tempLogFile).deleteOnExit();
+        ClearCaseChangeLogSet.saveToChangeLog(tempLogFile, history);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ClearCaseChangeLogSet.saveToChangeLog(out, history);
+        Assert.assertTrue("The indexed change log is different", Arrays.equals(out.toByteArray(), FileUtils.readFileToByteArray(tempLogFile)));
+
+        ClearCaseChangeLogSet logSet = ClearCaseChangeLogSet.parse(null, tempLogFile);
+        Assert.assertTrue("The change log is not read lazily", logSet.isLazy());
+        Assert.assertEquals("The number of change log entries is incorrect", count, logSet.getLogs().size());
+        Assert.assertEquals("The number of authors is incorrect", 7, logSet.getAuthorNames().size());
+        Assert.assertEquals("The number of elements is incorrect", count, logSet.getElementCount());
+        List<ClearCaseChangeLogEntry> page = logSet.getLogs(count - 50, 100);
+        Assert.assertEquals("The size of the last page is incorrect", 50, page.size());
+        Assert.assertEquals("The comment is incorrect", "K\u00E4se <" + (count - 50) + ">", page.get(0).getComment());
+        Assert.assertEquals("The page size is incorrect", LazyChangeLogList.PAGE_SIZE, logSet.getPageSize());
+        Assert.assertEquals("The page start is incorrect", 400, logSet.getPageStart("400"));
+        Assert.assertEquals("The page start is incorrect", count - 1, logSet.getPageStart(String.valueOf(count + 10)));
+        Assert.assertEquals("The page start is incorrect", 0, logSet.getPageStart("first"));
+        Assert.assertEquals("The page start is incorrect", 0, logSet.getPageStart(null));
+        int i = 0;
+        for (ClearCaseChangeLogEntry entry : logSet) {
+            Assert.assertEquals("The comment is incorrect", "K\u00E4se <" + i + ">", entry.getComment());
+            Assert.assertEquals("The file is incorrect", "file" + i, entry.getElements().get(0).getFile());
+            Assert.assertSame("The parent is incorrect", logSet, entry.getParent());
+            i++;
+        }
+        Assert.assertEquals("The number of iterated entries is incorrect", count, i);
+
+        // the index does not match a change log rewritten without it
+        FileOutputStream fileOutputStream = new FileOutputStream(tempLogFile);
+        ClearCaseChangeLogSet.saveToChangeLog(fileOutputStream, history.subList(0, 10));
+        fileOutputStream.close();
+        logSet = ClearCaseChangeLogSet.parse(null, tempLogFile);
+        Assert.assertFalse("A stale index is used", logSet.isLazy());
+        Assert.assertEquals("The number of change log entries is incorrect", 10, logSet.getLogs().size());
+        Assert.assertEquals("All the entries are not on one page", 10, logSet.getPageSize());
+        Assert.assertEquals("The page start is incorrect", 0, logSet.getPageStart("5"));
+    }
+
     @Test
     public void testMultipleFilesInLogEntry() throws IOException, SAXException {
         ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry();
@@ -115,7 +240,47 @@ public class ClearCaseChangeLogSetTest {
         Assert.assertEquals("Version of file element is incorrect", "create version", logs.get(0).getElements().get(2).getAction());
     }
 
+    @Test
+    public void testSaveToChangeLogFormat() throws IOException {
+        ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry();
+        entry.setUser(" user ");
+        entry.setComment("<a & 'b'> \"c\"\n");
+        entry.addElement(new FileElement("dir/file", "\\main\\1", null, "checkin"));
+
+        List<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
+        history.add(entry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ClearCaseChangeLogSet.saveToChangeLog(out, history);
+
+        String eol = System.getProperty("line.separator");
+        String expected = "<?xml version='1.0' encoding='UTF-8'?>" + eol + "<history>" + eol + "\t<entry>" + eol + "\t\t<user>user</user>" + eol
+                + "\t\t<comment>&lt;a &amp; &apos;b&apos;&gt; &quot;c&quot;</comment>" + eol + "\t\t<date></date>" + eol + "\t\t<element>" + eol
+                + "\t\t\t<file>" + eol + "dir/file" + eol + "\t\t\t</file>" + eol + "\t\t\t<action>" + eol + eol + "\t\t\t</action>" + eol
+                + "\t\t\t<version>" + eol + "\\main\\1" + eol + "\t\t\t</version>" + eol + "\t\t\t<operation>" + eol + "checkin" + eol
+                + "\t\t\t</operation>" + eol + "\t\t</element>" + eol + "\t</entry>" + eol + "</history>" + eol;
+        Assert.assertEquals("The change log format changed", expected, out.toString("UTF-8"));
+    }
+
     @SuppressWarnings("deprecation")
+    @Test
+    public void testUnwritableBinaryCopyIsSkipped() throws IOException, SAXException {
+        List<ClearCaseChangeLogEntry> history = new ArrayList<ClearCaseChangeLogEntry>();
+        history.add(new ClearCaseChangeLogEntry(new Date(1000000000000L), "user", "comment"));
+
+        File tempLogFile = File.createTempFile("clearcase", "xml");
+        tempLogFile.deleteOnExit();
+        ChangeLogIndex.getFile(tempLogFile).deleteOnExit();
+        // a directory which cannot be deleted stands in the way of the binary copy
+        File binaryFile = ChangeLogBinaryFile.getFile(tempLogFile);
+        Assert.assertTrue(new File(binaryFile, "blocking").mkdirs());
+        try {
+            ClearCaseChangeLogSet.saveToChangeLog(tempLogFile, history);
+            Assert.assertEquals("The change log is not readable", "comment", ClearCaseChangeLogSet.parse(null, tempLogFile).getLogs().get(0).getComment());
+        } finally {
+            FileUtils.deleteDirectory(binaryFile);
+        }
+    }
+
     @Test
     public void testUnicodeXml() throws IOException, SAXException {
         ClearCaseChangeLogEntry entry = new ClearCaseChangeLogEntry();
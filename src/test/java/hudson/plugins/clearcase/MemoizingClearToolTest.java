@@ -0,0 +1,125 @@
+package hudson.plugins.clearcase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MemoizingClearToolTest {
+
+    @Mock
+    private ClearTool         cleartool;
+
+    @Mock
+    private ClearToolLauncher launcher;
+
+    @Before
+    public void setUp() {
+        when(cleartool.getLauncher()).thenReturn(launcher);
+    }
+
+    @Test
+    public void testResultsAreSharedByTheCleartoolsOfALauncher() throws Exception {
+        when(cleartool.doesViewExist("view")).thenReturn(true);
+        when(cleartool.catcs("view")).thenReturn("element * LATEST");
+
+        assertTrue(MemoizingClearTool.decorate(cleartool).doesViewExist("view"));
+        assertTrue(MemoizingClearTool.decorate(cleartool).doesViewExist("view"));
+        assertEquals("element * LATEST", MemoizingClearTool.decorate(cleartool).catcs("view"));
+        assertEquals("element * LATEST", MemoizingClearTool.decorate(cleartool).catcs("view"));
+
+        verify(cleartool).doesViewExist("view");
+        verify(cleartool).catcs("view");
+    }
+
+    @Test
+    public void testChangingCommandsForgetTheResultsTheyAffect() throws Exception {
+        when(cleartool.doesViewExist("view")).thenReturn(false, true);
+        when(cleartool.lsstream("stream", null, "%n")).thenReturn("stream");
+        ClearTool memoizing = MemoizingClearTool.decorate(cleartool);
+
+        assertFalse(memoizing.doesViewExist("view"));
+        memoizing.lsstream("stream", null, "%n");
+        memoizing.setcs("view", ClearTool.SetcsOption.CURRENT, null);
+        memoizing.lsstream("stream", null, "%n");
+        memoizing.mkview("view", "view", null);
+        assertTrue(memoizing.doesViewExist("view"));
+        memoizing.recommendBaseline("stream");
+        memoizing.lsstream("stream", null, "%n");
+
+        verify(cleartool, times(2)).doesViewExist("view");
+        verify(cleartool, times(2)).lsstream("stream", null, "%n");
+    }
+
+    @Test
+    public void testResultsReadWhileAChangingCommandRunsAreForgotten() throws Exception {
+        when(cleartool.doesViewExist("view")).thenReturn(false, true);
+        final ClearTool memoizing = MemoizingClearTool.decorate(cleartool);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                // a read of another thread while the view starts
+                FutureTask<Boolean> read = new FutureTask<Boolean>(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return memoizing.doesViewExist("view");
+                    }
+                });
+                new Thread(read).start();
+                assertFalse(read.get());
+                return null;
+            }
+        }).when(cleartool).startView("view");
+
+        memoizing.startView("view");
+
+        assertTrue(memoizing.doesViewExist("view"));
+        verify(cleartool, times(2)).doesViewExist("view");
+    }
+
+    @Test
+    public void testDescribeOutputIsReadAgain() throws Exception {
+        when(cleartool.describe("%[component]Xp", "baseline:bl@\\pvob")).thenReturn(new StringReader("component:c@\\pvob"));
+        ClearTool memoizing = MemoizingClearTool.decorate(cleartool);
+
+        assertEquals("component:c@\\pvob", read(memoizing, "baseline:bl@\\pvob"));
+        assertEquals("component:c@\\pvob", read(memoizing, "baseline:bl@\\pvob"));
+
+        verify(cleartool).describe("%[component]Xp", "baseline:bl@\\pvob");
+    }
+
+    @Test
+    public void testLongDescribeOutputIsReadWholeButNotRemembered() throws Exception {
+        String output = StringUtils.repeat("component:c@\\pvob\n", MemoizingClearTool.MAX_OUTPUT_LENGTH / 10);
+        when(cleartool.describe("%[component]Xp", "baseline:bl@\\pvob")).thenReturn(new StringReader(output), new StringReader(output));
+        ClearTool memoizing = MemoizingClearTool.decorate(cleartool);
+
+        assertEquals(output, read(memoizing, "baseline:bl@\\pvob"));
+        assertEquals(output, read(memoizing, "baseline:bl@\\pvob"));
+
+        verify(cleartool, times(2)).describe("%[component]Xp", "baseline:bl@\\pvob");
+    }
+
+    private String read(ClearTool memoizing, String selector) throws IOException, InterruptedException {
+        return IOUtils.toString(memoizing.describe("%[component]Xp", selector));
+    }
+}
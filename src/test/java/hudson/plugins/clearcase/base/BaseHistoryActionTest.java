@@ -32,10 +32,12 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Matchers.notNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.Build;
 import hudson.model.AbstractProject;
@@ -54,13 +56,18 @@ import hudson.plugins.clearcase.history.DestroySubBranchFilter;
 import hudson.plugins.clearcase.history.FileFilter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
+import hudson.plugins.clearcase.history.HistoryEntry;
 import hudson.plugins.clearcase.history.LabelFilter;
+import hudson.plugins.clearcase.history.PollingCoordinator;
 import hudson.plugins.clearcase.util.BuildVariableResolver;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
 import hudson.util.LogTaskListener;
+import hudson.util.StreamTaskListener;
 import hudson.util.VariableResolver;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -71,6 +78,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -148,6 +156,66 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
         verifyCleartoolLsHistoryWithValidHistoryFormat();
     }
 
+    @Test
+    public void assertHasChangesStopsAtFirstAcceptedEntry() throws Exception {
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartoolLsHistoryWithStandardInput()).thenReturn(
+                new StringReader("\"20071015.151822\" \"user\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\1\" \"create version\"  \"mkelem\"\n"
+                        + "\"20071015.151823\" \"user\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\2\" \"create version\"  \"mkelem\"\n"
+                        + "\"20071015.151824\" \"user\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\3\" \"create version\"  \"mkelem\"\n"));
+        final List<HistoryEntry> evaluated = new ArrayList<HistoryEntry>();
+        Filter filter = new Filter() {
+            @Override
+            public boolean accept(HistoryEntry element) {
+                evaluated.add(element);
+                return true;
+            }
+
+            @Override
+            public boolean requiresMinorEvents() {
+                return false;
+            }
+        };
+
+        BaseHistoryAction action = new BaseHistoryAction(cleartool, false, filter, 0);
+        boolean hasChange = action.hasChanges(null, "view", "viewTag", new String[] { "branch" }, new String[] { "vobpath" });
+
+        assertTrue("The hasChanges() method did not report a change", hasChange);
+        // The first entry is filtered while parsing only, the next ones are not even parsed
+        assertEquals(1, evaluated.size());
+        assertEquals("\\main\\sit_r6a\\1", evaluated.get(0).getVersionId());
+        verifyCleartoolLsHistoryWithStandardInput();
+    }
+
+    @Test
+    public void assertLsHistoryEntriesAreFilteredOnce() throws Exception {
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartoolLsHistoryWithValidHistoryFormat()).thenReturn(
+                new StringReader("\"20071015.151822\" \"user\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\1\" \"create version\"  \"mkelem\"\n"
+                        + "\"20071015.151823\" \"user\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\2\" \"create version\"  \"mkelem\"\n"));
+        final List<HistoryEntry> evaluated = new ArrayList<HistoryEntry>();
+        Filter filter = new Filter() {
+            @Override
+            public boolean accept(HistoryEntry element) {
+                evaluated.add(element);
+                return element.getVersionId().endsWith("2");
+            }
+
+            @Override
+            public boolean requiresMinorEvents() {
+                return false;
+            }
+        };
+
+        BaseHistoryAction action = new BaseHistoryAction(cleartool, false, filter, 10000);
+        List<ChangeLogSet.Entry> changes = action.getChanges(new Date(), "viewPath", "viewTag", new String[] { "Release_2_1_int" },
+                new String[] { "vobs/projects/Server" });
+
+        assertEquals(1, changes.size());
+        assertEquals("Each entry should be evaluated once", 2, evaluated.size());
+        verifyCleartoolLsHistoryWithValidHistoryFormat();
+    }
+
     @Test
     public void assertIgnoringDestroySubBranchEvent() throws Exception {
         when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
@@ -279,6 +347,68 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
         verifyCleartoolLsHistoryWithStandardInput();
     }
 
+    @Test
+    public void assertUpdtDescribeErrorOnlyDropsFailingVersion() throws Exception {
+        FilePath updtFile = createUpdtFile("New:   dir\\a.c   \\main\\1", "New:   dir\\b.c   \\main\\1", "Updated:   dir\\c.c   \\main\\1   \\main\\2");
+        BaseHistoryAction action = new BaseHistoryAction(cleartool, false, null, 0);
+        String format = action.getLsHistoryFormat();
+        String validVersions = "\"20071015.151822\" \"user\" \"dir\\b.c\" \"\\main\\1\" \"create version\"  \"mkelem\" \n"
+                + "\"20071015.151823\" \"user\" \"dir\\c.c\" \"\\main\\2\" \"create version\"  \"checkin\" \n";
+        String error = "cleartool: Error: Unable to access \"dir\\a.c@@\\main\\1\": No such file or directory.\n";
+        when(cleartool.describeIgnoringErrors(eq(format), eq("viewPath"),
+                eq(new String[] { "dir\\a.c@@\\main\\1", "dir\\b.c@@\\main\\1", "dir\\c.c@@\\main\\2" }))).thenReturn(new StringReader(error + validVersions));
+        when(cleartool.describeIgnoringErrors(eq(format), eq("viewPath"), eq(new String[] { "dir\\a.c@@\\main\\1" }))).thenReturn(new StringReader(error));
+        when(cleartool.describeIgnoringErrors(eq(format), eq("viewPath"), eq(new String[] { "dir\\b.c@@\\main\\1", "dir\\c.c@@\\main\\2" }))).thenReturn(
+                new StringReader(validVersions));
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        when(cleartool.getLauncher()).thenReturn(clearToolLauncher);
+        when(clearToolLauncher.getListener()).thenReturn(new StreamTaskListener(log));
+
+        List<HistoryEntry> history = action.parseUpdt(updtFile, "viewPath");
+        assertEquals("The versions that could be described are lost", 2, history.size());
+        assertEquals("The history is not in the order of the update", "dir\\b.c", history.get(0).getElement());
+        assertEquals("The history is not in the order of the update", "dir\\c.c", history.get(1).getElement());
+        assertEquals("The dropped version is not reported once", "Unable to describe 1 updated versions, they are not in the change log: dir\\a.c@@\\main\\1",
+                log.toString().trim());
+        verify(cleartool, never()).describe(anyString(), anyString(), any(String[].class));
+    }
+
+    @Test
+    public void assertUpdtVersionsAreDescribedTogether() throws Exception {
+        FilePath updtFile = createUpdtFile("New:   dir\\a.c   \\main\\1", "UnloadDeleted:   dir\\old.c", "New:   dir\\b.c   \\main\\1");
+        BaseHistoryAction action = new BaseHistoryAction(cleartool, false, null, 0);
+        String format = action.getLsHistoryFormat();
+        when(cleartool.describeIgnoringErrors(eq(format), eq("viewPath"), eq(new String[] { "dir\\a.c@@\\main\\1", "dir\\b.c@@\\main\\1" }))).thenReturn(
+                new StringReader("\"20071015.151822\" \"user\" \"dir\\a.c\" \"\\main\\1\" \"create version\"  \"mkelem\" \n"
+                        + "\"20071015.151823\" \"user\" \"dir\\b.c\" \"\\main\\1\" \"create version\"  \"mkelem\" \n"));
+
+        List<HistoryEntry> history = action.parseUpdt(updtFile, "viewPath");
+        assertEquals("The history of the versions is incorrect", 2, history.size());
+        verify(cleartool, never()).describe(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void assertViewIsCheckedAndStartedForEachActionSharingTheHistoryPoll() throws Exception {
+        when(cleartool.doesViewExist("missingTag")).thenReturn(Boolean.FALSE);
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartool.doesViewExist("otherTag")).thenReturn(Boolean.TRUE);
+        when(cleartoolLsHistoryWithAnyHistoryFormat()).thenReturn(
+                new StringReader("\"20071015.151822\" \"user\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\1\" \"create version\"  \"mkelem\" "));
+        String configuration = "assertViewIsCheckedAndStartedForEachActionSharingTheHistoryPoll";
+        Date since = new Date();
+
+        assertFalse("A missing view reported a change", new BaseHistoryAction(cleartool, true, null, 0).hasChanges(PollingCoordinator.get(),
+                configuration, since, "view", "missingTag", new String[] { "branch" }, new String[] { "vobpath" }));
+        assertTrue("The missing view of another action hid the change", new BaseHistoryAction(cleartool, true, null, 0).hasChanges(
+                PollingCoordinator.get(), configuration, since, "view", "viewTag", new String[] { "branch" }, new String[] { "vobpath" }));
+        assertTrue("The shared poll was not reused", new BaseHistoryAction(cleartool, true, null, 0).hasChanges(PollingCoordinator.get(),
+                configuration, since, "view", "otherTag", new String[] { "branch" }, new String[] { "vobpath" }));
+        verify(cleartool, never()).startView("missingTag");
+        verify(cleartool).startView("viewTag");
+        verify(cleartool).startView("otherTag");
+        verify(cleartool).lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), eq(Boolean.FALSE), eq(Boolean.FALSE));
+    }
+
     @Test
     public void assertViewPathIsRemovedFromFilePaths() throws Exception {
 
@@ -400,6 +530,20 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
         assertEquals("File path is incorrect", "sapiciadapter\\Tools\\gplus_tt\\gplus_tt_config.py", entry.getElements().get(0).getFile());
     }
 
+    @Test
+    public void testChunkSelectors() throws Exception {
+        List<String> selectors = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            selectors.add("file" + i + "@@1");
+        }
+        selectors.add("a_very_long_selector@@1");
+        List<String[]> chunks = BaseHistoryAction.chunkSelectors(selectors, 40);
+        assertEquals("The number of chunks is incorrect", 5, chunks.size());
+        assertEquals("The chunk size is incorrect", 3, chunks.get(0).length);
+        assertEquals("The chunk size is incorrect", 1, chunks.get(3).length);
+        assertEquals("A selector longer than the limit is not alone", "a_very_long_selector@@1", chunks.get(4)[0]);
+    }
+
     @Test
     public void testCommentWithEmptyLine() throws Exception {
 
@@ -753,6 +897,17 @@ public class BaseHistoryActionTest extends AbstractWorkspaceTest {
                 eq(Boolean.FALSE));
     }
 
+    private FilePath createUpdtFile(String... lines) throws IOException {
+        File file = File.createTempFile("update", ".updt");
+        file.deleteOnExit();
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+        FileUtils.writeStringToFile(file, content.toString(), "UTF-8");
+        return new FilePath(file);
+    }
+
     private Date getDate(int year, int month, int day, int hour, int min, int sec) {
         Calendar calendar = Calendar.getInstance();
         calendar.setTimeInMillis(0);
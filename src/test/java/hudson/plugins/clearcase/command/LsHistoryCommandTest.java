@@ -1,10 +1,17 @@
 package hudson.plugins.clearcase.command;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import hudson.FilePath;
 import hudson.model.TaskListener;
 import hudson.plugins.clearcase.ClearToolLauncher;
+import hudson.plugins.clearcase.HudsonClearToolLauncher;
+import hudson.plugins.clearcase.history.LsHistoryParser;
+import hudson.plugins.clearcase.metrics.CleartoolMetrics;
+import hudson.util.StreamTaskListener;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -85,6 +92,22 @@ public class LsHistoryCommandTest {
         assertThat(cmd).contains("\"vob/file 1\"");
     }
 
+    @Test
+    public void testExecuteAndParseReturnsNullWhenLshistoryCannotRunOnTheNode() throws Exception {
+        HudsonClearToolLauncher hudsonLauncher = mock(HudsonClearToolLauncher.class);
+        CleartoolMetrics metrics = new CleartoolMetrics(null);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        when(hudsonLauncher.getExecutable()).thenReturn("missing-cleartool-executable");
+        when(hudsonLauncher.getEnv()).thenReturn(new String[] { "CLEARCASE_PRIMARY_GROUP=ccusers" });
+        when(hudsonLauncher.getListener()).thenReturn(new StreamTaskListener(log));
+        when(hudsonLauncher.getMetrics()).thenReturn(metrics);
+        when(hudsonLauncher.getNodeName()).thenReturn("master");
+        assertThat(instance.executeAndParse(hudsonLauncher, new LsHistoryParser(6, null, null, false))).isNull();
+        assertThat(log.toString()).contains("$ missing-cleartool-executable lshistory");
+        assertThat(metrics.getCalls().get("lshistory")).isEqualTo(1L);
+        assertThat(metrics.getFailures().get("lshistory")).isEqualTo(1L);
+    }
+
     private List<String> buildCmd() {
         return instance.generateCommandLine().toList();
     }
@@ -0,0 +1,173 @@
+package hudson.plugins.clearcase.history;
+
+import static hudson.plugins.clearcase.util.OutputFormat.DATE_NUMERIC;
+import static hudson.plugins.clearcase.util.OutputFormat.EVENT;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
+import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
+import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.AbstractClearCaseScm.ChangeSetLevel;
+import hudson.plugins.clearcase.ClearTool;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
+import hudson.scm.ChangeLogSet.Entry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.mockito.stubbing.OngoingStubbing;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AbstractHistoryActionTest {
+
+    private static class TestHistoryAction extends AbstractHistoryAction {
+        private final ClearToolFormatHandler historyHandler = new ClearToolFormatHandler(DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID,
+                                                                    EVENT, OPERATION);
+
+        TestHistoryAction(ClearTool cleartool, Filter filter) {
+            super(cleartool, false, filter, ChangeSetLevel.BRANCH, false);
+            setLshistoryConcurrency(2);
+        }
+
+        @Override
+        protected List<? extends Entry> buildChangelog(String viewPath, List<HistoryEntry> entries) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected ClearToolFormatHandler getHistoryFormatHandler() {
+            return historyHandler;
+        }
+
+        @Override
+        protected HistoryEntry parseEventLine(ClearToolFormatTokenizer fields, String line) throws ParseException {
+            HistoryEntry entry = new HistoryEntry();
+            entry.setLine(line);
+            entry.setDateText(fields.field(1));
+            entry.setUser(fields.trimmedField(2));
+            entry.setElement(fields.trimmedField(3));
+            entry.setVersionId(fields.trimmedField(4));
+            entry.setEvent(fields.trimmedField(5));
+            entry.setOperation(fields.trimmedField(6));
+            return entry;
+        }
+    }
+
+    @Mock
+    private ClearTool cleartool;
+
+    private static String line(String branch, int version) {
+        return "\"20071015.15182" + version + "\" \"user\" \"file\" \"/main/" + branch + "/" + version + "\" \"create version\" \"checkin\"\n";
+    }
+
+    private static List<String> versionIds(List<HistoryEntry> entries) {
+        List<String> versionIds = new ArrayList<String>();
+        for (HistoryEntry entry : entries) {
+            versionIds.add(entry.getVersionId());
+        }
+        return versionIds;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+    }
+
+    @Test
+    public void testParallelResultsKeepTheBranchOrder() throws Exception {
+        final CountDownLatch secondBranchDone = new CountDownLatch(1);
+        whenLsHistory("first").thenAnswer(new Answer<Reader>() {
+            @Override
+            public Reader answer(InvocationOnMock invocation) throws InterruptedException {
+                // the first branch completes after the second one
+                secondBranchDone.await();
+                return new StringReader(line("first", 1) + line("first", 2));
+            }
+        });
+        whenLsHistory("second").thenAnswer(new Answer<Reader>() {
+            @Override
+            public Reader answer(InvocationOnMock invocation) {
+                secondBranchDone.countDown();
+                return new StringReader(line("second", 1));
+            }
+        });
+
+        List<HistoryEntry> entries = new TestHistoryAction(cleartool, null).runLsHistory(new Date(), "view", "viewTag",
+                new String[] { "first", "second" }, new String[] { "vob" });
+
+        assertThat(versionIds(entries)).isEqualTo(Arrays.asList("/main/first/1", "/main/first/2", "/main/second/1"));
+    }
+
+    @Test
+    public void testFirstFailureIsRethrown() throws Exception {
+        whenLsHistory("first").thenReturn(new StringReader(line("first", 1)));
+        whenLsHistory("second").thenThrow(new IOException("second failed"));
+        whenLsHistory("third").thenThrow(new IOException("third failed"));
+
+        try {
+            new TestHistoryAction(cleartool, null).runLsHistory(new Date(), "view", "viewTag", new String[] { "first", "second", "third" },
+                    new String[] { "vob" });
+            fail("the failure of lshistory should be rethrown");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("second failed");
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHasChangesStopsAtFirstAcceptedEntry() throws Exception {
+        whenLsHistory("first").thenReturn(new StringReader(line("first", 1) + line("first", 2)));
+        whenLsHistory("second").thenAnswer(new Answer<Reader>() {
+            @Override
+            public Reader answer(InvocationOnMock invocation) throws InterruptedException {
+                // never completes unless the task is cancelled
+                new CountDownLatch(1).await();
+                return new StringReader("");
+            }
+        });
+        final List<HistoryEntry> evaluated = Collections.synchronizedList(new ArrayList<HistoryEntry>());
+        Filter filter = new Filter() {
+            @Override
+            public boolean accept(HistoryEntry entry) {
+                evaluated.add(entry);
+                return true;
+            }
+
+            @Override
+            public boolean requiresMinorEvents() {
+                return false;
+            }
+        };
+
+        boolean hasChanges = new TestHistoryAction(cleartool, filter).hasChanges(new Date(), "view", "viewTag", new String[] { "first", "second" },
+                new String[] { "vob" });
+
+        assertThat(hasChanges).isTrue();
+        assertThat(versionIds(evaluated)).isEqualTo(Collections.singletonList("/main/first/1"));
+    }
+
+    private OngoingStubbing<Reader> whenLsHistory(String branch) throws IOException, InterruptedException {
+        return when(cleartool.lshistory(anyString(), any(Date.class), anyString(), eq(branch), any(String[].class), anyBoolean(), anyBoolean()));
+    }
+}
@@ -0,0 +1,50 @@
+package hudson.plugins.clearcase.history;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class ExcludedRegionsFilterTest {
+
+    private static final String[] ELEMENTS = { "", "src/Main.java", "SRC/main.JAVA", "doc/readme.txt", "build/build.xml", "lib/lib.jar", "aa/bb",
+            "abab", "x.Q*y", "a|b", "test/MainTest.java" };
+
+    private static final String[] REGIONS  = { ".*\\.txt", "(?i)main\\.java", "^build/", "(ab)\\1", "\\Q.Q*\\E", "(?<dir>lib)/\\k<dir>", "a\\|b",
+            "(?x) Test \\. java # comment", "" };
+
+    @Test
+    public void testSameElementsAsSeparateFilters() {
+        ExcludedRegionsFilter filter = new ExcludedRegionsFilter(REGIONS);
+        for (String element : ELEMENTS) {
+            boolean expected = true;
+            for (String region : REGIONS) {
+                if (!region.isEmpty()) {
+                    expected &= new FileFilter(FileFilter.Type.DoesNotContainRegxp, region).accept(element);
+                }
+            }
+            assertThat(filter.accept(element)).as(element).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testNoRegion() {
+        ExcludedRegionsFilter filter = new ExcludedRegionsFilter(new String[] { "" });
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter.accept("any")).isTrue();
+        assertThat(ExcludedRegionsFilter.get(null).isEmpty()).isTrue();
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidRegion() {
+        new ExcludedRegionsFilter(new String[] { "valid", "(invalid" });
+    }
+
+    @Test
+    public void testFiltersAreCached() {
+        ExcludedRegionsFilter filter = ExcludedRegionsFilter.get(new String[] { "a", "", "b" });
+        assertThat(ExcludedRegionsFilter.get(new String[] { "a", "b" })).isSameAs(filter);
+        assertThat(ExcludedRegionsFilter.get(new String[] { "b", "a" })).isNotSameAs(filter);
+    }
+}
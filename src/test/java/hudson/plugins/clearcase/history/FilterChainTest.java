@@ -0,0 +1,68 @@
+package hudson.plugins.clearcase.history;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FilterChainTest {
+
+    private static class ConstantFilter implements Filter {
+        private final boolean accepted;
+
+        ConstantFilter(boolean accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public boolean accept(HistoryEntry entry) {
+            return accepted;
+        }
+
+        @Override
+        public boolean requiresMinorEvents() {
+            return false;
+        }
+    }
+
+    @Test
+    public void testStatistics() {
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new ConstantFilter(true));
+        filters.add(new ConstantFilter(false));
+        filters.add(new ConstantFilter(true));
+        FilterChain chain = new FilterChain(filters, false);
+        for (int i = 0; i < 10; i++) {
+            assertThat(chain.accept(new HistoryEntry())).isFalse();
+        }
+        List<FilterChain.FilterStatistics> statistics = chain.getStatistics();
+        assertThat(statistics.get(0).getEvaluated()).isEqualTo(10);
+        assertThat(statistics.get(0).getRejected()).isEqualTo(0);
+        assertThat(statistics.get(1).getEvaluated()).isEqualTo(10);
+        assertThat(statistics.get(1).getRejected()).isEqualTo(10);
+        assertThat(statistics.get(2).getEvaluated()).isEqualTo(0);
+        // filters are only timed in adaptive mode
+        assertThat(statistics.get(1).getNanos()).isEqualTo(0);
+    }
+
+    @Test
+    public void testAdaptiveChainRunsSelectiveFiltersFirst() {
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new ConstantFilter(true));
+        filters.add(new ConstantFilter(false));
+        FilterChain chain = new FilterChain(filters, true);
+        int count = 4096;
+        for (int i = 0; i < count; i++) {
+            assertThat(chain.accept(new HistoryEntry())).isFalse();
+        }
+        assertThat(chain.getStatistics().get(1).getEvaluated()).isEqualTo(count);
+        assertThat(chain.getStatistics().get(0).getEvaluated()).isLessThan(count);
+    }
+
+    @Test
+    public void testEmptyChainAcceptsEverything() {
+        assertThat(new FilterChain(null).accept(new HistoryEntry())).isTrue();
+    }
+}
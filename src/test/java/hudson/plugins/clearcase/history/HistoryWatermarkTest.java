@@ -0,0 +1,65 @@
+package hudson.plugins.clearcase.history;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.text.ParseException;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistoryWatermarkTest {
+
+    private static final long BUFFER = 60 * 1000;
+
+    private HistoryWatermark  instance;
+
+    @Before
+    public void setUp() {
+        instance = new HistoryWatermark("config", BUFFER);
+    }
+
+    @Test
+    public void testSinceWithoutWatermark() {
+        Date since = new Date(1000);
+        assertThat(instance.getSince("branch", since)).isSameAs(since);
+        assertThat(instance.getSince("branch", null)).isNull();
+    }
+
+    @Test
+    public void testSinceStartsAtNewestEventMinusBuffer() throws ParseException {
+        HistoryEntry entry = createEntry("20140101.120000", "a");
+        instance.record("branch", entry);
+        long expected = entry.getDate().getTime() - BUFFER;
+        assertThat(instance.getSince("branch", null).getTime()).isEqualTo(expected);
+        assertThat(instance.getSince("branch", new Date(expected - 1)).getTime()).isEqualTo(expected);
+        assertThat(instance.getSince("branch", new Date(expected + 1)).getTime()).isEqualTo(expected + 1);
+        assertThat(instance.getSince("other", null)).isNull();
+    }
+
+    @Test
+    public void testSeenEventsAreRejected() throws ParseException {
+        Filter filter = instance.filter("branch", null);
+        assertThat(filter.accept(createEntry("20140101.120000", "a"))).isTrue();
+        assertThat(filter.accept(createEntry("20140101.120000", "a"))).isFalse();
+        assertThat(filter.accept(createEntry("20140101.120000", "b"))).isTrue();
+        assertThat(instance.filter("other", null).accept(createEntry("20140101.120000", "a"))).isTrue();
+    }
+
+    @Test
+    public void testEventsOutOfTheBufferAreForgotten() throws ParseException {
+        assertThat(instance.record("branch", createEntry("20140101.120000", "a"))).isTrue();
+        assertThat(instance.record("branch", createEntry("20140101.120030", "b"))).isTrue();
+        assertThat(instance.record("branch", createEntry("20140101.120200", "c"))).isTrue();
+        // "a" and "b" are before the start of the next lshistory, they cannot be read again
+        assertThat(instance.record("branch", createEntry("20140101.120000", "a"))).isTrue();
+        assertThat(instance.record("branch", createEntry("20140101.120200", "c"))).isFalse();
+    }
+
+    private HistoryEntry createEntry(String date, String line) throws ParseException {
+        HistoryEntry entry = new HistoryEntry();
+        entry.setDateText(date);
+        entry.setLine(line);
+        return entry;
+    }
+}
@@ -0,0 +1,67 @@
+package hudson.plugins.clearcase.history;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import hudson.plugins.clearcase.AbstractClearCaseScm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LoadRuleFilterTest {
+
+    private static final char[] ALPHABET = { 'a', 'b', '/', '\\', '\n', '\r' };
+
+    @Test
+    public void testUnixLoadRules() {
+        LoadRuleFilter filter = new LoadRuleFilter(new String[] { "vobs/proj/src/", "/vobs/other" }, true);
+        assertThat(filter.accept("/view/vobs/proj/src/Main.java")).isTrue();
+        assertThat(filter.accept("/view/vobs/proj/src")).isTrue();
+        assertThat(filter.accept("/view/vobs/proj/srcs/Main.java")).isFalse();
+        assertThat(filter.accept("/view/vobs/other/file")).isTrue();
+        assertThat(filter.accept("/view/vobs/proj/Main.java")).isFalse();
+        assertThat(filter.accept((String) null)).isFalse();
+    }
+
+    @Test
+    public void testWindowsLoadRules() {
+        LoadRuleFilter filter = new LoadRuleFilter(new String[] { "vobs/proj" }, false);
+        assertThat(filter.accept("D:\\view\\vobs\\proj\\Main.java")).isTrue();
+        assertThat(filter.accept("D:\\view\\vobs\\proj")).isTrue();
+        assertThat(filter.accept("/view/vobs/proj/Main.java")).isFalse();
+    }
+
+    @Test
+    public void testNoLoadRule() {
+        assertThat(new LoadRuleFilter(null, true).isEmpty()).isTrue();
+        assertThat(new LoadRuleFilter(new String[] { "", null }, true).isEmpty()).isTrue();
+        assertThat(new LoadRuleFilter(new String[] { "/" }, true).isEmpty()).isFalse();
+    }
+
+    @Test
+    public void testSameElementsAsViewPathsRegexp() {
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            boolean isUnix = random.nextBoolean();
+            String[] loadRules = new String[1 + random.nextInt(4)];
+            for (int i = 0; i < loadRules.length; i++) {
+                loadRules[i] = randomPath(random, 1 + random.nextInt(4));
+            }
+            FileFilter expected = new FileFilter(FileFilter.Type.ContainsRegxp, AbstractClearCaseScm.getViewPathsRegexp(loadRules, isUnix));
+            LoadRuleFilter filter = new LoadRuleFilter(loadRules, isUnix);
+            for (int j = 0; j < 50; j++) {
+                String element = randomPath(random, random.nextInt(10));
+                assertThat(filter.accept(element)).as(Arrays.toString(loadRules) + " " + element).isEqualTo(expected.accept(element));
+            }
+        }
+    }
+
+    private String randomPath(Random random, int length) {
+        StringBuilder path = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // line terminators are rare, but change the meaning of $
+            path.append(ALPHABET[random.nextInt(random.nextInt(5) == 0 ? ALPHABET.length : 4)]);
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package hudson.plugins.clearcase.history;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LsHistoryParserTest {
+
+    private static final String OUTPUT = "cleartool: Error: Not an object in a vob: \"view.dat\".\n"
+                                               + "\"20071015.151822\" \"user1\" \"/view/vobs/proj/src/A.java\" \"/main/1\" \"create version\" \"checkin\" \"activity1\"\n"
+                                               + "first line of comment\n"
+                                               + "\"20071015.151823\" \"user2\" \"/view/vobs/proj/doc/B.txt\" \"/main/2\" \"create version\" \"checkin\" \"activity2\"\n"
+                                               + "\"20071015.151824\" \"user3\" \"/view/vobs/proj/src/C.java\" \"/main/3\" \"create version\" \"checkin\" \"activity3\"\n";
+
+    private static List<HistoryEntry> parse(LsHistoryParser parser) throws Exception {
+        List<HistoryEntry> history = new ArrayList<HistoryEntry>();
+        parser.parse(new BufferedReader(new StringReader(OUTPUT)), history);
+        return history;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T serializeAndDeserialize(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void testParsesFieldsAndComments() throws Exception {
+        List<HistoryEntry> history = parse(new LsHistoryParser(7, "/view/", null, false));
+        assertThat(history).hasSize(3);
+        HistoryEntry entry = history.get(0);
+        assertThat(entry.getUser()).isEqualTo("user1");
+        assertThat(entry.getElement()).isEqualTo("vobs/proj/src/A.java");
+        assertThat(entry.getVersionId()).isEqualTo("/main/1");
+        assertThat(entry.getOperation()).isEqualTo("checkin");
+        assertThat(entry.getActivityName()).isEqualTo("activity1");
+        assertThat(entry.getComment()).isEqualTo("first line of comment");
+    }
+
+    @Test
+    public void testSerializedParserFiltersLikeTheOriginal() throws Exception {
+        List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new DefaultFilter());
+        filters.add(new LoadRuleFilter(new String[] { "/view/vobs/proj" }, true));
+        filters.add(new ExcludedRegionsFilter(new String[] { ".*\\.txt" }));
+        LsHistoryParser parser = new LsHistoryParser(7, null, new FilterChain(filters), false);
+
+        List<HistoryEntry> expected = parse(parser);
+        assertThat(expected).hasSize(2);
+        List<HistoryEntry> actual = serializeAndDeserialize(parse(serializeAndDeserialize(parser)));
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.get(0).getDate()).isEqualTo(expected.get(0).getDate());
+    }
+
+    @Test
+    public void testStopsAtFirstAcceptedEntry() throws Exception {
+        List<HistoryEntry> history = parse(new LsHistoryParser(7, null, new ExcludedRegionsFilter(new String[] { ".*A\\.java" }), true));
+        assertThat(history).hasSize(1);
+        assertThat(history.get(0).getVersionId()).isEqualTo("/main/2");
+    }
+}
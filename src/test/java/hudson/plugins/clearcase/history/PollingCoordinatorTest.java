@@ -0,0 +1,121 @@
+package hudson.plugins.clearcase.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PollingCoordinatorTest {
+
+    private final PollingCoordinator coordinator = new PollingCoordinator(60000);
+
+    private static class CountingPoll implements Callable<Boolean> {
+        final AtomicInteger calls = new AtomicInteger();
+        final boolean       result;
+
+        CountingPoll(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            calls.incrementAndGet();
+            return result;
+        }
+    }
+
+    @Test
+    public void testNoChangeIsReusedForLaterTimes() throws Exception {
+        CountingPoll poll = new CountingPoll(false);
+        assertFalse(coordinator.hasChanges("config", new Date(1000), poll));
+        assertFalse(coordinator.hasChanges("config", new Date(1000), poll));
+        assertFalse(coordinator.hasChanges("config", new Date(2000), poll));
+        assertEquals(1, poll.calls.get());
+        assertFalse(coordinator.hasChanges("config", new Date(500), poll));
+        assertFalse(coordinator.hasChanges("other", new Date(2000), poll));
+        assertEquals(3, poll.calls.get());
+    }
+
+    @Test
+    public void testChangesAreOnlyReusedForTheSameTime() throws Exception {
+        CountingPoll poll = new CountingPoll(true);
+        assertTrue(coordinator.hasChanges("config", new Date(1000), poll));
+        assertTrue(coordinator.hasChanges("config", new Date(1000), poll));
+        assertEquals(1, poll.calls.get());
+        assertTrue(coordinator.hasChanges("config", new Date(2000), poll));
+        assertEquals(2, poll.calls.get());
+    }
+
+    @Test
+    public void testExpiredPollIsNotReused() throws Exception {
+        PollingCoordinator expiring = new PollingCoordinator(-1);
+        CountingPoll poll = new CountingPoll(false);
+        expiring.hasChanges("config", new Date(1000), poll);
+        expiring.hasChanges("config", new Date(1000), poll);
+        assertEquals(2, poll.calls.get());
+    }
+
+    @Test
+    public void testFailedPollIsNotReused() throws Exception {
+        try {
+            coordinator.hasChanges("config", new Date(1000), new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    throw new IOException("lshistory failed");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("lshistory failed", e.getMessage());
+        }
+        CountingPoll poll = new CountingPoll(true);
+        assertTrue(coordinator.hasChanges("config", new Date(1000), poll));
+        assertEquals(1, poll.calls.get());
+    }
+
+    @Test
+    public void testConcurrentPollsShareTheRunningPoll() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<Boolean> poll = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return true;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Boolean> job = new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return coordinator.hasChanges("config", new Date(1000), poll);
+                }
+            };
+            Future<Boolean> first = executor.submit(job);
+            started.await();
+            Future<Boolean> second = executor.submit(job);
+            Thread.sleep(100);
+            release.countDown();
+            assertTrue(first.get());
+            assertTrue(second.get());
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
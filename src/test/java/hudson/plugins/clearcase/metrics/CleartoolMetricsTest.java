@@ -0,0 +1,61 @@
+package hudson.plugins.clearcase.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache;
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache.Attribute;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+public class CleartoolMetricsTest {
+
+    @Test
+    public void testCommandsAreRecordedPerVerbAndInTheParent() {
+        CleartoolMetrics controller = new CleartoolMetrics(null);
+        CleartoolMetrics build = new CleartoolMetrics(controller);
+
+        long begin = build.begin("node1");
+        assertEquals(Integer.valueOf(1), controller.getInFlightCalls().get("node1"));
+        build.end("describe", "node1", begin, 100, false);
+        build.end("describe", "node1", build.begin("node1"), 50, true);
+        controller.end("lshistory", "node2", controller.begin("node2"), 10, false);
+
+        assertEquals(Long.valueOf(2), build.getCalls().get("describe"));
+        assertEquals(Long.valueOf(1), build.getFailures().get("describe"));
+        assertEquals(Long.valueOf(150), controller.getOutputBytes().get("describe"));
+        assertEquals(2, controller.getCalls().size());
+        assertEquals(1, build.getCalls().size());
+        assertEquals(Integer.valueOf(0), controller.getInFlightCalls().get("node1"));
+        assertEquals(Integer.valueOf(1), controller.getPeakInFlightCalls().get("node1"));
+        assertArrayEquals(new long[] { 2, 0, 0, 0, 0, 0 }, build.getDurationHistograms().get("describe"));
+    }
+
+    @Test
+    public void testUcmMetadataCacheCountersAreExposed() {
+        CleartoolMetrics metrics = new CleartoolMetrics(null);
+        UcmMetadataCache cache = UcmMetadataCache.getInstance();
+        long hits = metrics.getUcmMetadataCacheHits();
+        long misses = metrics.getUcmMetadataCacheMisses();
+
+        cache.put("baseline:testUcmMetadataCacheCountersAreExposed@\\pvob", Attribute.COMPONENT, "component:comp@\\pvob");
+        cache.get("baseline:testUcmMetadataCacheCountersAreExposed@\\pvob", Attribute.COMPONENT);
+        cache.get("baseline:other@\\pvob", Attribute.COMPONENT);
+
+        assertEquals(hits + 1, metrics.getUcmMetadataCacheHits());
+        assertEquals(misses + 1, metrics.getUcmMetadataCacheMisses());
+        assertTrue(metrics.getUcmMetadataCacheSize() > 0);
+    }
+
+    @Test
+    public void testSummaryListsTheVerbs() {
+        CleartoolMetrics metrics = new CleartoolMetrics(null);
+        metrics.end("setcs", "node", metrics.begin("node"), 0, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.printSummary(new PrintStream(out));
+        assertTrue(out.toString().contains("setcs: 1 calls"));
+    }
+}
@@ -0,0 +1,109 @@
+package hudson.plugins.clearcase.session;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.verify;
+import hudson.Proc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClearToolSessionTest {
+    @Mock Proc proc;
+    ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+
+    @Test
+    public void testToCommandLine() {
+        assertThat(ClearToolSession.toCommandLine(new String[] { "lsview", "-cview", "-s" })).isEqualTo("lsview -cview -s");
+        assertThat(ClearToolSession.toCommandLine(new String[] { "describe", "-fmt", "%[component]Xp", "baseline:bl@\\pvob" })).isEqualTo(
+                "describe -fmt '%[component]Xp' 'baseline:bl@\\pvob'");
+        assertThat(ClearToolSession.toCommandLine(new String[] { "mkbl", "-c", "it's" })).isEqualTo("mkbl -c \"it's\"");
+        assertThat(ClearToolSession.toCommandLine(new String[] { "mkbl", "-c", "it's \"quoted\"" })).isNull();
+        assertThat(ClearToolSession.toCommandLine(new String[] { "mkbl", "-c", "two\nlines" })).isNull();
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        ClearToolSession session = createSession("line 1\nline 2\nCommand 1 returned status 0\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(session.execute("lsview -s", null, out)).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo("line 1\nline 2\n");
+        assertThat(stdin.toString()).isEqualTo("lsview -s\n");
+        assertThat(session.getCommandCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecuteOutputWithoutLineEnd() throws Exception {
+        ClearToolSession session = createSession("component:comp@/vobs/pvobCommand 1 returned status 0\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(session.execute("describe -fmt %[component]Xp baseline:bl@/vobs/pvob", null, out)).isEqualTo(0);
+        assertThat(out.toString()).isEqualTo("component:comp@/vobs/pvob");
+    }
+
+    @Test
+    public void testExecuteChangesDirectoryOnce() throws Exception {
+        ClearToolSession session = createSession("Command 1 returned status 0\nCommand 2 returned status 1\nCommand 3 returned status 0\n");
+        assertThat(session.execute("pwv", "/view/dir", new ByteArrayOutputStream())).isEqualTo(1);
+        assertThat(session.execute("pwv", "/view/dir", new ByteArrayOutputStream())).isEqualTo(0);
+        assertThat(stdin.toString()).isEqualTo("cd /view/dir\npwv\npwv\n");
+        assertThat(session.isBroken()).isFalse();
+    }
+
+    @Test
+    public void testTerminatedSessionIsBroken() throws Exception {
+        ClearToolSession session = createSession("partial output");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            session.execute("lsview", null, out);
+        } catch (IOException e) {
+            // expected
+        }
+        assertThat(out.toString()).isEqualTo("partial output");
+        assertThat(session.isBroken()).isTrue();
+        assertThat(session.isHealthy()).isFalse();
+    }
+
+    @Test
+    public void testSessionNotAnsweringIsKilledAfterTimeout() throws Exception {
+        PipedOutputStream neverWritten = new PipedOutputStream();
+        ClearToolSession session = new ClearToolSession(proc, stdin, new PipedInputStream(neverWritten), 100);
+        try {
+            session.execute("lsview", null, new ByteArrayOutputStream());
+            fail("the command should have timed out");
+        } catch (IOException e) {
+            // expected
+        }
+        verify(proc).kill();
+        assertThat(session.isBroken()).isTrue();
+    }
+
+    @Test
+    public void testInterruptedCommandKillsSession() throws Exception {
+        PipedOutputStream neverWritten = new PipedOutputStream();
+        ClearToolSession session = new ClearToolSession(proc, stdin, new PipedInputStream(neverWritten), 0);
+        Thread.currentThread().interrupt();
+        try {
+            session.execute("lsview", null, new ByteArrayOutputStream());
+            fail("the command should have been interrupted");
+        } catch (InterruptedException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+        verify(proc).kill();
+        assertThat(session.isBroken()).isTrue();
+    }
+
+    private ClearToolSession createSession(String output) {
+        return new ClearToolSession(proc, stdin, new ByteArrayInputStream(output.getBytes()), 0);
+    }
+}
@@ -0,0 +1,742 @@
+package hudson.plugins.clearcase.simulator;
+
+import hudson.plugins.clearcase.simulator.SimulatedHistory.Version;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stand-in for cleartool, answering the commands run by the plugin with a {@link SimulatedHistory} instead of a ClearCase server, to load test
+ * polling and builds on a single machine. Run it through the <code>cleartool-simulator</code> script of the test resources, in one-shot mode (
+ * <code>cleartool-simulator lshistory ...</code>) or in interactive mode (<code>cleartool-simulator -status</code>), as used by the pooled sessions.
+ * <p>
+ * The outputs only depend on the seed and on the current time: lshistory, describe, lsactivity, diffbl, lsstream, lsbl and lsproject render the
+ * simulated versions, activities and baselines with the given <code>-fmt</code>; the view and VOB commands give fixed answers; the other commands
+ * succeed without output. The size of the history, the latency of the commands and the rate of failures are set with system properties named after
+ * this class, which the script reads from <code>CLEARTOOL_SIMULATOR_OPTS</code>.
+ */
+public class ClearToolSimulator {
+
+    private static final String   PREFIX                   = ClearToolSimulator.class.getName() + ".";
+
+    private static final long     BASELINE_INTERVAL_MILLIS = Long.getLong(PREFIX + "baselineIntervalMillis", TimeUnit.DAYS.toMillis(1));
+
+    private static final String   BRANCHES                 = System.getProperty(PREFIX + "branches", "main");
+
+    private static final String   COMPONENT_PREFIX         = "sim_comp";
+
+    private static final int      COMPONENTS               = Integer.getInteger(PREFIX + "components", 3);
+
+    private static final int      ELEMENTS                 = Integer.getInteger(PREFIX + "elements", 1000);
+
+    /**
+     * Probability that a command fails, between 0 and 1.
+     */
+    private static final double   FAILURE_RATE             = Double.parseDouble(System.getProperty(PREFIX + "failureRate", "0"));
+
+    /**
+     * Comma separated verbs which may fail; all of them by default.
+     */
+    private static final String   FAILURE_VERBS            = System.getProperty(PREFIX + "failureVerbs", "");
+
+    /**
+     * Number of days listed by lshistory without <code>-since</code>.
+     */
+    private static final int      HISTORY_DAYS             = Integer.getInteger(PREFIX + "historyDays", 30);
+
+    private static final long     LATENCY_JITTER_MILLIS    = Long.getLong(PREFIX + "latencyJitterMillis", 0);
+
+    private static final long     LATENCY_MILLIS           = Long.getLong(PREFIX + "latencyMillis", 0);
+
+    /**
+     * Fixed current time, in milliseconds since the epoch, to get the same outputs whenever the simulator runs; the clock is used by default.
+     */
+    private static final long     NOW                      = Long.getLong(PREFIX + "now", 0);
+
+    private static final String   PVOB                     = "/vobs/pvob";
+
+    private static final String   ROOT                     = "vobs/sim";
+
+    private static final long     SEED                     = Long.getLong(PREFIX + "seed", 0);
+
+    private static final int      USERS                    = Integer.getInteger(PREFIX + "users", 20);
+
+    /**
+     * Options followed by a value, to tell them from the operands.
+     */
+    private static final Set<String> VALUED_OPTIONS        = new HashSet<String>(Arrays.asList("-adepends_on", "-baseline", "-branch", "-c", "-comment",
+                                                                   "-comp", "-ddepends_on", "-fmt", "-gpath", "-host", "-hpath", "-in", "-last", "-level",
+                                                                   "-since", "-stgloc", "-stream", "-tag", "-view", "-vws"));
+
+    private static final long     VERSION_INTERVAL_MILLIS  = Long.getLong(PREFIX + "versionIntervalMillis", TimeUnit.MINUTES.toMillis(1));
+
+    private static final int      VERSIONS_PER_ACTIVITY    = Integer.getInteger(PREFIX + "versionsPerActivity", 5);
+
+    /**
+     * Arguments of a command, split in options and operands.
+     */
+    private static final class Arguments {
+
+        final Set<String>         flags    = new HashSet<String>();
+        final List<String>        operands = new ArrayList<String>();
+        final Map<String, String> values   = new HashMap<String, String>();
+
+        Arguments(String[] args, int start) {
+            for (int i = start; i < args.length; i++) {
+                String arg = args[i];
+                if (VALUED_OPTIONS.contains(arg) && i + 1 < args.length) {
+                    values.put(arg, args[++i]);
+                } else if (arg.startsWith("-") && arg.length() > 1) {
+                    flags.add(arg);
+                } else {
+                    operands.add(arg);
+                }
+            }
+        }
+    }
+
+    /**
+     * Failure of a command, reported as a cleartool error.
+     */
+    private static final class CommandException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        CommandException(String message) {
+            super(message);
+        }
+    }
+
+    private final SimpleDateFormat date        = new SimpleDateFormat("dd-MMM-yy.HH:mm:ss", Locale.US);
+    private final SimpleDateFormat dateNumeric = new SimpleDateFormat("yyyyMMdd.HHmmss");
+    private final SimulatedHistory history;
+    private final long             now;
+    private final Random           random      = new Random();
+
+    private String                 directory;
+
+    /**
+     * @param now
+     *            the fixed current time, or 0 to use the clock
+     */
+    ClearToolSimulator(SimulatedHistory history, String directory, long now) {
+        this.history = history;
+        this.directory = directory;
+        this.now = now;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SimulatedHistory history = new SimulatedHistory(SEED, VERSION_INTERVAL_MILLIS, BASELINE_INTERVAL_MILLIS, ELEMENTS, USERS, VERSIONS_PER_ACTIVITY,
+                COMPONENTS, BRANCHES.split(","));
+        ClearToolSimulator simulator = new ClearToolSimulator(history, System.getProperty("user.dir"), NOW);
+        // flushed after each command, rather than after each line of large outputs
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 65536));
+        if (args.length == 1 && "-status".equals(args[0])) {
+            simulator.interact(new BufferedReader(new InputStreamReader(System.in)), out, System.err);
+            System.exit(0);
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: cleartool-simulator [-status | command [arguments]]");
+            System.exit(1);
+        }
+        System.exit(simulator.execute(args, out, System.err));
+    }
+
+    /**
+     * Splits a command line of the interactive mode in arguments, removing the quotes around them.
+     */
+    static String[] parseCommandLine(String line) {
+        List<String> args = new ArrayList<String>();
+        StringBuilder arg = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (arg != null) {
+                    args.add(arg.toString());
+                    arg = null;
+                }
+            } else {
+                if (arg == null) {
+                    arg = new StringBuilder();
+                }
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                } else {
+                    arg.append(c);
+                }
+            }
+        }
+        if (arg != null) {
+            args.add(arg.toString());
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @return the exit status of the command
+     */
+    int execute(String[] args, PrintStream out, PrintStream err) {
+        String verb = args[0];
+        sleep();
+        try {
+            if (isFailing(verb)) {
+                throw new CommandException("Simulated failure of " + verb + ".");
+            }
+            run(verb, new Arguments(args, 1), out);
+            out.flush();
+            return 0;
+        } catch (CommandException e) {
+            out.flush();
+            err.println("cleartool: Error: " + e.getMessage());
+            err.flush();
+            return 1;
+        }
+    }
+
+    /**
+     * Runs the commands read one per line, printing <code>Command N returned status S</code> after each of them, until <code>quit</code> or the end of
+     * the input.
+     */
+    void interact(BufferedReader in, PrintStream out, PrintStream err) throws IOException {
+        int count = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            String[] args = parseCommandLine(line);
+            if (args.length == 0) {
+                continue;
+            }
+            if ("quit".equals(args[0]) || "exit".equals(args[0])) {
+                return;
+            }
+            int status;
+            if ("cd".equals(args[0]) && args.length == 2) {
+                status = changeDirectory(args[1], err);
+            } else if ("pwd".equals(args[0])) {
+                out.println(directory);
+                status = 0;
+            } else {
+                status = execute(args, out, err);
+            }
+            out.println("Command " + ++count + " returned status " + status);
+            out.flush();
+        }
+    }
+
+    private Map<String, String> activityProperties(long activity) {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("n", history.getActivityName(activity));
+        properties.put("u", history.getActivityUser(activity));
+        properties.put("[headline]", history.getActivityHeadline(activity));
+        properties.put("[stream]", "stream:sim_int@" + PVOB);
+        properties.put("[view]", "sim_int_view");
+        StringBuilder contributing = new StringBuilder();
+        if (history.isDelivery(activity)) {
+            for (long contributor = activity - 9; contributor < activity; contributor++) {
+                if (contributor >= 0) {
+                    append(contributing, "activity:" + history.getActivityName(contributor) + "@" + PVOB, " ");
+                }
+            }
+        }
+        properties.put("[contrib_acts]", contributing.toString());
+        StringBuilder versions = new StringBuilder();
+        String root = componentRoot(history.getComponent(activity));
+        for (long version = activity * VERSIONS_PER_ACTIVITY; version < (activity + 1) * VERSIONS_PER_ACTIVITY; version++) {
+            Version v = history.getVersion(version, root);
+            append(versions, v.element + "@@" + v.getVersionId(), " ");
+        }
+        properties.put("[versions]", versions.toString());
+        return properties;
+    }
+
+    private void append(StringBuilder builder, String value, String separator) {
+        if (builder.length() > 0) {
+            builder.append(separator);
+        }
+        builder.append(value);
+    }
+
+    private String baselineName(int component, long baseline) {
+        return componentName(component) + "_BL_" + baseline;
+    }
+
+    private Map<String, String> baselineProperties(int component, long baseline) {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("n", baselineName(component, baseline));
+        properties.put("[component]", "component:" + componentName(component) + "@" + PVOB);
+        properties.put("[depends_on]", "");
+        properties.put("[depends_on_closure]", "");
+        properties.put("[label_status]", "Full");
+        properties.put("[plevel]", "BUILT");
+        return properties;
+    }
+
+    private int changeDirectory(String path, PrintStream err) {
+        File target = new File(path);
+        if (!target.isAbsolute()) {
+            target = new File(directory, path);
+        }
+        if (!target.isDirectory()) {
+            err.println("cleartool: Error: Unable to change directory to \"" + path + "\": No such file or directory.");
+            return 1;
+        }
+        directory = target.getAbsolutePath();
+        return 0;
+    }
+
+    private String componentName(int component) {
+        return COMPONENT_PREFIX + component;
+    }
+
+    private Map<String, String> componentProperties(int component) {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("n", componentName(component));
+        properties.put("[root_dir]", "/" + componentRoot(component));
+        return properties;
+    }
+
+    private String componentRoot(int component) {
+        return ROOT + "/comp" + component;
+    }
+
+    private String components() {
+        StringBuilder components = new StringBuilder();
+        for (int component = 0; component < history.getComponents(); component++) {
+            append(components, "component:" + componentName(component) + "@" + PVOB, " ");
+        }
+        return components.toString();
+    }
+
+    private String configSpec() {
+        return "element * CHECKEDOUT\nelement * .../sim_int/LATEST\nelement * /main/LATEST -mkbranch sim_int\nload /" + ROOT + "\n";
+    }
+
+    private void describe(Arguments arguments, PrintStream out) throws CommandException {
+        if (arguments.operands.isEmpty()) {
+            throw new CommandException("An object selector is required.");
+        }
+        for (String selector : arguments.operands) {
+            Map<String, String> properties = resolve(selector);
+            String format = arguments.values.get("-fmt");
+            if (format == null) {
+                out.println(properties.get("kind") + " \"" + properties.get("n") + "\"");
+                for (Map.Entry<String, String> property : new TreeMap<String, String>(properties).entrySet()) {
+                    if (property.getKey().startsWith("[")) {
+                        out.println("  " + property.getKey().substring(1, property.getKey().length() - 1) + ": " + property.getValue());
+                    }
+                }
+            } else {
+                out.print(format(format, properties));
+            }
+        }
+    }
+
+    /**
+     * Prints the activities or the versions which differ between two baselines, or between a baseline and the latest baselines of a stream.
+     */
+    private void diffbl(Arguments arguments, PrintStream out) throws CommandException {
+        if (arguments.operands.size() != 2) {
+            throw new CommandException("Two baselines or streams are required.");
+        }
+        long[] left = parseBaselineOrStream(arguments.operands.get(0));
+        long[] right = parseBaselineOrStream(arguments.operands.get(1));
+        String prefix = ">> ";
+        if (left[1] > right[1]) {
+            long[] swap = left;
+            left = right;
+            right = swap;
+            prefix = "<< ";
+        }
+        int component = (int) Math.max(left[0], right[0]);
+        long first = history.getFirstVersionAfter(left[1]);
+        long last = history.getFirstVersionAfter(right[1]) - 1;
+        if (arguments.flags.contains("-versions")) {
+            for (long version = first; version <= last; version++) {
+                int versionComponent = history.getComponent(history.getActivity(version));
+                if (component < 0 || component == versionComponent) {
+                    Version v = history.getVersion(version, componentRoot(versionComponent));
+                    out.println(prefix + v.element + "@@" + v.getVersionId());
+                }
+            }
+        } else if (!arguments.flags.contains("-baselines") && first <= last) {
+            for (long activity = history.getActivity(first); activity <= history.getActivity(last); activity++) {
+                if (component < 0 || component == history.getComponent(activity)) {
+                    out.println(prefix + history.getActivityName(activity) + "@" + PVOB + " \"" + history.getActivityHeadline(activity) + "\"");
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders an object with a cleartool format: the <code>\n</code>, <code>\t</code>, <code>\"</code> and <code>\\</code> escapes, the
+     * <code>%[property]p</code> directives, with the <code>X</code> (selectors) and <code>C</code> (comma separated) modifiers, and the other
+     * directives found in the properties, such as <code>%Nd</code> or <code>%En</code>.
+     */
+    private String format(String format, Map<String, String> properties) {
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i++);
+            if (c == '\\' && i < format.length()) {
+                char escaped = format.charAt(i++);
+                result.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped);
+            } else if (c == '%' && i < format.length()) {
+                if (format.charAt(i) == '%') {
+                    result.append('%');
+                    i++;
+                } else if (format.charAt(i) == '[') {
+                    int end = format.indexOf(']', i);
+                    int directive = format.indexOf('p', end);
+                    if (end < 0 || directive < 0) {
+                        result.append(format.substring(i - 1));
+                        break;
+                    }
+                    String modifiers = format.substring(end + 1, directive);
+                    result.append(formatProperty(properties.get(format.substring(i, end + 1)), modifiers));
+                    i = directive + 1;
+                } else {
+                    int start = i;
+                    while (i < format.length() && Character.isUpperCase(format.charAt(i))) {
+                        i++;
+                    }
+                    i = Math.min(i + 1, format.length());
+                    String value = properties.get(format.substring(start, i));
+                    result.append(value == null ? "" : value);
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private String formatProperty(String value, String modifiers) {
+        if (value == null || value.length() == 0) {
+            return "";
+        }
+        if (value.indexOf(':') < 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            // not a list of selectors, e.g. a headline or a config spec
+            return value;
+        }
+        StringBuilder result = new StringBuilder();
+        for (String selector : value.split(" ")) {
+            if (modifiers.indexOf('X') < 0) {
+                selector = selector.substring(selector.indexOf(':') + 1);
+                if (selector.indexOf('@') > 0) {
+                    selector = selector.substring(0, selector.indexOf('@'));
+                }
+            }
+            append(result, selector, modifiers.indexOf('C') < 0 ? " " : ", ");
+        }
+        return result.toString();
+    }
+
+    private long getNow() {
+        return now > 0 ? now : System.currentTimeMillis();
+    }
+
+    private boolean isFailing(String verb) {
+        if (FAILURE_RATE <= 0) {
+            return false;
+        }
+        if (FAILURE_VERBS.length() > 0 && !Arrays.asList(FAILURE_VERBS.split(",")).contains(verb)) {
+            return false;
+        }
+        return random.nextDouble() < FAILURE_RATE;
+    }
+
+    private void lsactivity(Arguments arguments, PrintStream out) throws CommandException {
+        List<Long> activities = new ArrayList<Long>();
+        if (arguments.values.containsKey("-in")) {
+            long baseline = history.getBaselineAt(getNow());
+            long last = history.getActivity(history.lastVersionAt(getNow()));
+            for (long activity = history.getActivity(history.getFirstVersionAfter(baseline)); activity <= last; activity++) {
+                activities.add(activity);
+            }
+        }
+        for (String operand : arguments.operands) {
+            activities.add(parseActivity(operand));
+        }
+        String format = arguments.values.get("-fmt");
+        for (long activity : activities) {
+            Map<String, String> properties = activityProperties(activity);
+            out.print(format == null ? properties.get("n") + "\n" : format(format, properties));
+        }
+    }
+
+    /**
+     * Prints the versions created since the given date, newest first.
+     */
+    private void lshistory(Arguments arguments, PrintStream out) throws CommandException {
+        long until = getNow();
+        long since = until - TimeUnit.DAYS.toMillis(HISTORY_DAYS);
+        String sinceValue = arguments.values.get("-since");
+        if (sinceValue != null) {
+            SimpleDateFormat formatter = new SimpleDateFormat("d-MMM-yy.HH:mm:ss'UTC'Z", Locale.US);
+            formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+            try {
+                since = formatter.parse(sinceValue).getTime();
+            } catch (ParseException e) {
+                throw new CommandException("Invalid date: \"" + sinceValue + "\".");
+            }
+        }
+        String branch = arguments.values.get("-branch");
+        if (branch != null) {
+            branch = branch.substring(branch.indexOf(':') + 1);
+        }
+        long last = arguments.values.containsKey("-last") ? Long.parseLong(arguments.values.get("-last")) : Long.MAX_VALUE;
+        String format = arguments.values.get("-fmt");
+        if (format == null) {
+            format = "%Nd %u %e \"%n\"\\n  \"%Nc\"\\n";
+        }
+        List<String> roots = new ArrayList<String>(arguments.operands);
+        if (roots.isEmpty()) {
+            roots.add(ROOT);
+        }
+        long first = history.firstVersionAt(since);
+        for (long version = history.lastVersionAt(until); version >= first && last > 0; version--) {
+            if (history.isOnBranch(version, branch)) {
+                out.print(format(format, versionProperties(history.getVersion(version, roots.get((int) (version % roots.size()))), null)));
+                last--;
+            }
+        }
+    }
+
+    private long parseActivity(String selector) throws CommandException {
+        long activity = history.parseActivity(simpleName(selector));
+        if (activity < 0) {
+            throw new CommandException("Activity not found: \"" + selector + "\".");
+        }
+        return activity;
+    }
+
+    /**
+     * @return the component (or -1 for all of them) and the baseline number of a baseline, or of the latest baselines of a stream
+     */
+    private long[] parseBaselineOrStream(String selector) throws CommandException {
+        if (selector.startsWith("stream:")) {
+            return new long[] { -1, history.getBaselineAt(getNow()) };
+        }
+        String name = simpleName(selector);
+        int separator = name.lastIndexOf("_BL_");
+        try {
+            int component = Integer.parseInt(name.substring(COMPONENT_PREFIX.length(), separator));
+            return new long[] { component, Long.parseLong(name.substring(separator + 4)) };
+        } catch (RuntimeException e) {
+            throw new CommandException("Baseline not found: \"" + selector + "\".");
+        }
+    }
+
+    private int parseComponent(String selector) throws CommandException {
+        try {
+            return Integer.parseInt(simpleName(selector).substring(COMPONENT_PREFIX.length()));
+        } catch (RuntimeException e) {
+            throw new CommandException("Component not found: \"" + selector + "\".");
+        }
+    }
+
+    private Map<String, String> projectProperties(String name) {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("n", name);
+        properties.put("[mod_comps]", components());
+        properties.put("[istream]", "stream:sim_int@" + PVOB);
+        return properties;
+    }
+
+    /**
+     * @return the properties of the object of the given selector, and its kind
+     */
+    private Map<String, String> resolve(String selector) throws CommandException {
+        Map<String, String> properties;
+        String kind;
+        if (selector.contains("@@")) {
+            kind = "version";
+            String versionId = selector.substring(selector.indexOf("@@") + 2);
+            long number;
+            try {
+                number = Long.parseLong(versionId.substring(versionId.lastIndexOf('/') + 1));
+            } catch (NumberFormatException e) {
+                number = history.lastVersionAt(getNow());
+            }
+            properties = versionProperties(history.getVersion(number, ROOT), selector.substring(0, selector.indexOf("@@")));
+        } else if (selector.startsWith("activity:")) {
+            kind = "activity";
+            properties = activityProperties(parseActivity(selector));
+        } else if (selector.startsWith("baseline:")) {
+            kind = "baseline";
+            long[] baseline = parseBaselineOrStream(selector);
+            properties = baselineProperties((int) baseline[0], baseline[1]);
+        } else if (selector.startsWith("component:")) {
+            kind = "component";
+            properties = componentProperties(parseComponent(selector));
+        } else if (selector.startsWith("project:")) {
+            kind = "project";
+            properties = projectProperties(simpleName(selector));
+        } else if (selector.startsWith("stream:")) {
+            kind = "stream";
+            properties = streamProperties(simpleName(selector));
+        } else {
+            kind = "version";
+            properties = versionProperties(history.getVersion(history.lastVersionAt(getNow()), ROOT), selector);
+        }
+        properties.put("kind", kind);
+        return properties;
+    }
+
+    private void run(String verb, Arguments arguments, PrintStream out) throws CommandException {
+        String format = arguments.values.get("-fmt");
+        if ("lshistory".equals(verb)) {
+            lshistory(arguments, out);
+        } else if ("desc".equals(verb) || "describe".equals(verb)) {
+            describe(arguments, out);
+        } else if ("lsactivity".equals(verb)) {
+            lsactivity(arguments, out);
+        } else if ("diffbl".equals(verb)) {
+            diffbl(arguments, out);
+        } else if ("lsstream".equals(verb)) {
+            String stream = arguments.operands.isEmpty() ? "sim_int" : simpleName(arguments.operands.get(0));
+            out.print(format == null ? stream + "\n" : format(format, streamProperties(stream)));
+        } else if ("lsbl".equals(verb)) {
+            String baseline = arguments.operands.get(0);
+            Map<String, String> properties = resolve(baseline.startsWith("baseline:") ? baseline : "baseline:" + baseline);
+            out.print(format == null ? properties.get("n") + "\n" : format(format, properties));
+        } else if ("lsproject".equals(verb)) {
+            out.print(format(format == null ? "%n\\n" : format, projectProperties("sim_project")));
+        } else if ("catcs".equals(verb)) {
+            out.print(configSpec());
+        } else if ("pwv".equals(verb)) {
+            out.println(directory);
+        } else if ("lsview".equals(verb)) {
+            if (arguments.flags.contains("-cview")) {
+                out.println(new File(directory).getName());
+            } else if (arguments.flags.contains("-l")) {
+                String tag = arguments.operands.get(0);
+                out.println("Tag: " + tag);
+                out.println("  Global path: /net/simhost/views/" + tag + ".vws");
+                out.println("View uuid: " + Long.toHexString(tag.hashCode() & 0xffffffffL) + ".00000000.0000.0000.0000.000000000000");
+                out.println("View server access path: /views/" + tag + ".vws");
+            } else if (arguments.operands.isEmpty()) {
+                out.println("* sim_int_view         /net/simhost/views/sim_int_view.vws");
+                out.println("  sim_dev_view         /net/simhost/views/sim_dev_view.vws");
+            } else {
+                out.println("* " + arguments.operands.get(0) + "         /net/simhost/views/" + arguments.operands.get(0) + ".vws");
+            }
+        } else if ("lsvob".equals(verb)) {
+            out.println("* /" + ROOT + "          /net/simhost/vobs/sim.vbs public");
+            out.println("* " + PVOB + "        /net/simhost/vobs/pvob.vbs public (ucmvob)");
+        } else if ("mkview".equals(verb)) {
+            if (arguments.flags.contains("-snapshot") && !arguments.operands.isEmpty()) {
+                new File(arguments.operands.get(arguments.operands.size() - 1)).mkdirs();
+            }
+            out.println("Created view.");
+        } else if ("update".equals(verb)) {
+            out.println("Done loading \"" + directory + "\" (0 objects, copied 0 KB).");
+        } else if ("-version".equals(verb) || "-ver".equals(verb) || "version".equals(verb)) {
+            out.println("ClearCase version 8.0.1.0 (simulated)");
+            out.println("cleartool                         8.0.1.0 (simulated)");
+        } else if ("mkbl".equals(verb)) {
+            long baseline = history.getBaselineAt(getNow());
+            for (int component = 0; component < history.getComponents(); component++) {
+                out.println("Created baseline \"" + baselineName(component, baseline) + "\" in component \"" + componentName(component) + "\".");
+            }
+        } else if (!Arrays.asList("chbl", "chstream", "endview", "lock", "mkstream", "mount", "rebase", "rmtag", "rmview", "setcs", "startview",
+                "unlock", "unregister").contains(verb)) {
+            throw new CommandException("Unrecognized command: \"" + verb + "\"");
+        }
+    }
+
+    private String simpleName(String selector) {
+        String name = selector.substring(selector.indexOf(':') + 1);
+        int vob = name.indexOf('@');
+        return vob < 0 ? name : name.substring(0, vob);
+    }
+
+    private void sleep() {
+        long latency = LATENCY_MILLIS;
+        if (LATENCY_JITTER_MILLIS > 0) {
+            latency += (long) (random.nextDouble() * LATENCY_JITTER_MILLIS);
+        }
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Map<String, String> streamProperties(String name) {
+        long latest = history.getBaselineAt(getNow());
+        StringBuilder latestBaselines = new StringBuilder();
+        StringBuilder foundationBaselines = new StringBuilder();
+        for (int component = 0; component < history.getComponents(); component++) {
+            append(latestBaselines, "baseline:" + baselineName(component, latest) + "@" + PVOB, " ");
+            append(foundationBaselines, "baseline:" + baselineName(component, Math.max(0, latest - 7)) + "@" + PVOB, " ");
+        }
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("n", name);
+        properties.put("[components]", components());
+        properties.put("[config_spec]", configSpec());
+        properties.put("[found_bls]", foundationBaselines.toString());
+        properties.put("[latest_bls]", latestBaselines.toString());
+        properties.put("[mod_comps]", components());
+        properties.put("[project]", "project:sim_project@" + PVOB);
+        properties.put("[views]", name + "_view");
+        return properties;
+    }
+
+    /**
+     * @param element
+     *            the element name to show instead of the simulated one, or null
+     */
+    private Map<String, String> versionProperties(Version version, String element) {
+        if (element == null) {
+            element = version.element;
+        }
+        Date date = new Date(version.time);
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("Nd", dateNumeric.format(date));
+        properties.put("d", this.date.format(date));
+        properties.put("u", version.user);
+        properties.put("Fu", "Simulated " + version.user);
+        properties.put("Lu", version.user + ".simgroup");
+        properties.put("Gu", "simgroup");
+        properties.put("En", element);
+        properties.put("Vn", version.getVersionId());
+        properties.put("n", element + "@@" + version.getVersionId());
+        properties.put("e", version.event);
+        properties.put("o", version.operation);
+        properties.put("c", version.comment);
+        properties.put("Nc", version.comment.replace('\n', ' '));
+        properties.put("[activity]", "activity:" + history.getActivityName(version.activity) + "@" + PVOB);
+        return properties;
+    }
+}
@@ -0,0 +1,87 @@
+package hudson.plugins.clearcase.simulator;
+
+import static hudson.plugins.clearcase.util.OutputFormat.DATE_NUMERIC;
+import static hudson.plugins.clearcase.util.OutputFormat.EVENT;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_ELEMENTNAME;
+import static hudson.plugins.clearcase.util.OutputFormat.NAME_VERSIONID;
+import static hudson.plugins.clearcase.util.OutputFormat.OPERATION;
+import static hudson.plugins.clearcase.util.OutputFormat.USER_ID;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import hudson.plugins.clearcase.ucm.model.ActivitiesDelta;
+import hudson.plugins.clearcase.util.ClearToolFormatHandler;
+import hudson.plugins.clearcase.util.ClearToolFormatTokenizer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ClearToolSimulatorTest {
+
+    private static final long NOW = 1400000000000L;
+
+    @Test
+    public void testLsHistoryIsDeterministicAndParseable() {
+        ClearToolFormatHandler handler = new ClearToolFormatHandler(DATE_NUMERIC, USER_ID, NAME_ELEMENTNAME, NAME_VERSIONID, EVENT, OPERATION);
+        String[] cmd = { "lshistory", "-all", "-since", "13-may-14.16:00:00UTC+0000", "-fmt", handler.getFormat() + "%c\\n", "-nco", "vobs/sim/comp0" };
+        String output = run(createSimulator(42), cmd);
+        assertEquals(output, run(createSimulator(42), cmd));
+        assertFalse(output.equals(run(createSimulator(43), cmd)));
+
+        ClearToolFormatTokenizer tokenizer = handler.createTokenizer();
+        int entries = 0;
+        for (String line : output.split("\n")) {
+            if (tokenizer.tokenize(line)) {
+                entries++;
+                assertTrue(tokenizer.field(3).startsWith("vobs/sim/comp0/dir"));
+            }
+        }
+        // one version per minute since 16:00, the clock being at 16:53:20
+        assertEquals(54, entries);
+    }
+
+    @Test
+    public void testDiffblListsTheActivitiesBetweenBaselines() throws IOException {
+        ClearToolSimulator simulator = createSimulator(0);
+        String output = run(simulator, new String[] { "diffbl", "-activities", "baseline:sim_comp1_BL_100@/vobs/pvob", "baseline:sim_comp1_BL_101@/vobs/pvob" });
+        ActivitiesDelta delta = ActivitiesDelta.parse(new StringReader(output));
+        assertTrue(delta.getLeft().isEmpty());
+        assertFalse(delta.getRight().isEmpty());
+        assertTrue(delta.getRight().size() < TimeUnit.DAYS.toMinutes(1) / 5);
+    }
+
+    @Test
+    public void testInteractiveMode() throws IOException {
+        ClearToolSimulator simulator = createSimulator(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        simulator.interact(new BufferedReader(new StringReader("desc -fmt '%[component]Xp' baseline:sim_comp2_BL_7@/vobs/pvob\nfoo\nquit\npwv\n")),
+                new PrintStream(out), new PrintStream(err));
+        assertEquals("component:sim_comp2@/vobs/pvobCommand 1 returned status 0\nCommand 2 returned status 1\n", out.toString());
+        assertTrue(err.toString().startsWith("cleartool: Error: Unrecognized command"));
+    }
+
+    @Test
+    public void testParseCommandLine() {
+        assertArrayEquals(new String[] { "mkbl", "-c", "it's", "%[component]Xp" }, ClearToolSimulator.parseCommandLine("mkbl  -c \"it's\" '%[component]Xp'"));
+    }
+
+    private ClearToolSimulator createSimulator(long seed) {
+        SimulatedHistory history = new SimulatedHistory(seed, TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(1), 100, 10, 5, 3,
+                new String[] { "main" });
+        return new ClearToolSimulator(history, "/views/sim_int_view", NOW);
+    }
+
+    private String run(ClearToolSimulator simulator, String[] cmd) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, simulator.execute(cmd, new PrintStream(out), System.err));
+        return out.toString();
+    }
+}
@@ -0,0 +1,196 @@
+package hudson.plugins.clearcase.simulator;
+
+/**
+ * The versions, activities and baselines of a simulated VOB. Nothing is stored: each object is computed from its number and the seed, so that any part of
+ * a history of millions of versions can be read in constant memory, and two simulators with the same seed give the same outputs.
+ * <p>
+ * Version <i>n</i> is created at <i>n</i> times the version interval since the epoch, so new versions keep appearing while the simulator is polled.
+ * Consecutive versions belong to the same activity, and baseline <i>n</i> of a component contains the versions created before <i>n</i> times the baseline
+ * interval.
+ */
+class SimulatedHistory {
+
+    /**
+     * A version of an element.
+     */
+    static final class Version {
+
+        final long   activity;
+        final String branch;
+        final String comment;
+        final String element;
+        final String event;
+        final long   number;
+        final String operation;
+        final long   time;
+        final String user;
+
+        Version(long number, long time, String element, String branch, String event, String operation, String comment, long activity, String user) {
+            this.number = number;
+            this.time = time;
+            this.element = element;
+            this.branch = branch;
+            this.event = event;
+            this.operation = operation;
+            this.comment = comment;
+            this.activity = activity;
+            this.user = user;
+        }
+
+        String getVersionId() {
+            if ("main".equals(branch)) {
+                return "/main/" + number;
+            }
+            return "/main/" + branch + "/" + number;
+        }
+    }
+
+    private final long     baselineIntervalMillis;
+    private final String[] branches;
+    private final int      components;
+    private final int      elements;
+    private final long     seed;
+    private final int      users;
+    private final long     versionIntervalMillis;
+    private final int      versionsPerActivity;
+
+    SimulatedHistory(long seed, long versionIntervalMillis, long baselineIntervalMillis, int elements, int users, int versionsPerActivity, int components,
+            String[] branches) {
+        this.seed = seed;
+        this.versionIntervalMillis = versionIntervalMillis;
+        this.baselineIntervalMillis = baselineIntervalMillis;
+        this.elements = elements;
+        this.users = users;
+        this.versionsPerActivity = versionsPerActivity;
+        this.components = components;
+        this.branches = branches;
+    }
+
+    /**
+     * @return the number of the last version created at or before the given time
+     */
+    long lastVersionAt(long time) {
+        return time / versionIntervalMillis;
+    }
+
+    /**
+     * @return the number of the first version created at or after the given time
+     */
+    long firstVersionAt(long time) {
+        return (time + versionIntervalMillis - 1) / versionIntervalMillis;
+    }
+
+    long getActivity(long version) {
+        return version / versionsPerActivity;
+    }
+
+    /**
+     * @return the name of an activity; every tenth activity is the integration activity delivering the nine previous ones
+     */
+    String getActivityName(long activity) {
+        if (isDelivery(activity)) {
+            return "deliver.sim_dev." + activity;
+        }
+        return "sim_activity_" + activity;
+    }
+
+    /**
+     * @return the number of the activity of the given name, or -1 if it is not a simulated activity
+     */
+    long parseActivity(String name) {
+        int start = name.lastIndexOf(name.startsWith("deliver.") ? '.' : '_') + 1;
+        try {
+            return Long.parseLong(name.substring(start));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    String getActivityHeadline(long activity) {
+        if (isDelivery(activity)) {
+            return "deliver sim_dev on " + activity;
+        }
+        return "Change " + activity + " of component " + getComponent(activity);
+    }
+
+    String getActivityUser(long activity) {
+        return "user" + hash(activity, 1) % users;
+    }
+
+    boolean isDelivery(long activity) {
+        return activity % 10 == 9;
+    }
+
+    int getComponent(long activity) {
+        return (int) (hash(activity, 2) % components);
+    }
+
+    int getComponents() {
+        return components;
+    }
+
+    /**
+     * @return the number of the latest baseline created at or before the given time
+     */
+    long getBaselineAt(long time) {
+        return time / baselineIntervalMillis;
+    }
+
+    /**
+     * @return the first version which is not in the given baseline
+     */
+    long getFirstVersionAfter(long baseline) {
+        return firstVersionAt(baseline * baselineIntervalMillis);
+    }
+
+    long getVersionTime(long version) {
+        return version * versionIntervalMillis;
+    }
+
+    /**
+     * @param root
+     *            the directory of the element, e.g. the load rule given to lshistory
+     */
+    Version getVersion(long number, String root) {
+        long elementHash = hash(number, 3);
+        int element = (int) (elementHash % elements);
+        String branch = branches[(int) (hash(number, 4) % branches.length)];
+        long activity = getActivity(number);
+        String event = "create version";
+        String operation = "checkin";
+        String name = root + "/dir" + (element % 20) + "/File" + element + ".java";
+        long kind = hash(number, 5) % 100;
+        if (kind < 5) {
+            event = "create directory version";
+            name = root + "/dir" + (element % 20);
+        } else if (kind < 7) {
+            event = "create branch";
+            operation = "mkbranch";
+        } else if (kind < 8) {
+            event = "destroy sub-branch \"" + branch + "\" of branch";
+            operation = "rmbranch";
+        }
+        String comment = getActivityHeadline(activity);
+        if (hash(number, 6) % 4 == 0) {
+            comment += "\nreviewed by user" + hash(number, 7) % users;
+        }
+        return new Version(number, getVersionTime(number), name, branch, event, operation, comment, activity, getActivityUser(activity));
+    }
+
+    /**
+     * @return true if the version is on the given branch, or if no branch is given
+     */
+    boolean isOnBranch(long number, String branch) {
+        return branch == null || branch.equals(branches[(int) (hash(number, 4) % branches.length)]);
+    }
+
+    /**
+     * SplitMix64 finalizer of the seed, the number and the salt, so that each property of each object can be computed independently.
+     */
+    private long hash(long number, int salt) {
+        long z = seed + number * 0x9E3779B97F4A7C15L + salt * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+}
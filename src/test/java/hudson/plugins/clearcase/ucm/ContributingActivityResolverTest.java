@@ -0,0 +1,87 @@
+package hudson.plugins.clearcase.ucm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.plugins.clearcase.ClearTool;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ContributingActivityResolverTest {
+
+    @Mock
+    private ClearTool cleartool;
+
+    @Test
+    public void testActivitiesAreListedOncePerLevel() throws Exception {
+        UcmActivity deliver = createActivity("deliver.dev1");
+        UcmActivity activity = createActivity("act2");
+        when(cleartool.lsactivity(eq("act2"), anyString(), eq("view"))).thenReturn(new StringReader("\"Second\" \"dev\" \"bob\" \n"));
+        when(cleartool.lsactivity(eq("deliver.dev1"), anyString(), eq("view"))).thenReturn(
+                new StringReader("\"Deliver\" \"int\" \"bob\" \"deliver.dev2 act1 act2\" \n"));
+        when(cleartool.lsactivity(eq("deliver.dev2"), anyString(), eq("view"))).thenReturn(
+                new StringReader("\"Deliver dev2\" \"dev2\" \"joe\" \"act1 act3\" \n"));
+        when(cleartool.lsactivity(eq("act1"), anyString(), eq("view"))).thenReturn(new StringReader("\"First\" \"dev\" \"joe\" \n"));
+        when(cleartool.lsactivity(eq("act3"), anyString(), eq("view"))).thenReturn(new StringReader("\"Third\" \"dev2\" \"joe\" \n"));
+
+        new ContributingActivityResolver(cleartool, "view", 3).resolve(Arrays.asList(deliver, activity));
+
+        List<UcmActivity> contributing = deliver.getSubActivities();
+        assertEquals(3, contributing.size());
+        UcmActivity deliverDev2 = contributing.get(0);
+        assertEquals("Deliver dev2", deliverDev2.getHeadline());
+        assertEquals("First", contributing.get(1).getHeadline());
+        assertSame(activity, contributing.get(2));
+        assertSame(contributing.get(1), deliverDev2.getSubActivities().get(0));
+        assertEquals("Third", deliverDev2.getSubActivities().get(1).getHeadline());
+        verify(cleartool).lsactivity(eq("act1"), anyString(), eq("view"));
+    }
+
+    @Test
+    public void testActivitiesOfALevelAreListedTogether() throws Exception {
+        UcmActivity first = createActivity("act1");
+        UcmActivity second = createActivity("act2");
+        when(cleartool.lsactivity(eq(new String[] { "act1", "act2" }), anyString(), eq("view"))).thenReturn(
+                new StringReader("\"First\" \"dev\" \"joe\" \n\"Second\" \"dev\" \"bob\" \n"));
+
+        new ContributingActivityResolver(cleartool, "view", 3).resolve(Arrays.asList(first, second));
+
+        assertEquals("First", first.getHeadline());
+        assertEquals("bob", second.getUser());
+        verify(cleartool, never()).lsactivity(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testActivitiesAreListedOneByOneWhenListingThemTogetherFails() throws Exception {
+        UcmActivity first = createActivity("act1");
+        UcmActivity second = createActivity("act2");
+        when(cleartool.lsactivity(any(String[].class), anyString(), eq("view"))).thenThrow(new IOException("cleartool: Error: act2 not found"));
+        when(cleartool.lsactivity(eq("act1"), anyString(), eq("view"))).thenReturn(new StringReader("\"First\" \"dev\" \"joe\" \n"));
+        when(cleartool.lsactivity(eq("act2"), anyString(), eq("view"))).thenReturn(new StringReader("\"Second\" \"dev\" \"bob\" \n"));
+
+        new ContributingActivityResolver(cleartool, "view", 3).resolve(Arrays.asList(first, second));
+
+        assertEquals("First", first.getHeadline());
+        assertEquals("Second", second.getHeadline());
+    }
+
+    private UcmActivity createActivity(String name) {
+        UcmActivity activity = new UcmActivity();
+        activity.setName(name);
+        return activity;
+    }
+}
@@ -25,6 +25,11 @@
 package hudson.plugins.clearcase.ucm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import hudson.plugins.clearcase.util.ChangeLogBinaryFile;
+import hudson.plugins.clearcase.util.ChangeLogIndex;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -36,6 +41,45 @@ import org.junit.Test;
 
 public class UcmChangeLogSetTest {
 
+    @Test
+    public void assertBinaryCopyIsReadLikeXml() throws Exception {
+        UcmActivity activity = new UcmActivity();
+        activity.setName("deliver.activity");
+        activity.setHeadline(" headline ");
+        activity.setStream("stream");
+        activity.setUser("user");
+        activity.setModifier("add");
+        UcmActivity subActivity = new UcmActivity();
+        subActivity.setName("sub");
+        subActivity.setModifier("delete");
+        activity.addSubActivity(subActivity);
+        UcmActivity.File activityFile = new UcmActivity.File();
+        activityFile.setName("vobs/dir/file1");
+        activityFile.setDateStr("12/03/2009 10:11");
+        activityFile.setVersion("/main/int/2");
+        activity.addFile(activityFile);
+        List<UcmActivity> activities = new ArrayList<UcmActivity>();
+        activities.add(activity);
+
+        File tempLogFile = File.createTempFile("clearcase", "xml");
+        tempLogFile.deleteOnExit();
+        ChangeLogIndex.getFile(tempLogFile).deleteOnExit();
+        ChangeLogBinaryFile.getFile(tempLogFile).deleteOnExit();
+        UcmChangeLogSet.saveToChangeLog(tempLogFile, activities);
+        assertTrue("The binary copy is missing", ChangeLogBinaryFile.getFile(tempLogFile).isFile());
+
+        UcmActivity read = new UcmChangeLogParser().parse(null, tempLogFile).getLogs().get(0);
+        assertEquals("The name is incorrect", "deliver.activity", read.getName());
+        assertEquals("The headline is incorrect", "headline", read.getHeadline());
+        assertNull("The modifier of activities is not saved", read.getModifier());
+        assertEquals("The modifier of sub activities is incorrect", "delete", read.getSubActivities().get(0).getModifier());
+        assertEquals("The headline of sub activities is incorrect", "", read.getSubActivities().get(0).getHeadline());
+        assertEquals("The file name is incorrect", "vobs/dir/file1", read.getFiles().get(0).getName());
+        assertEquals("The file date is incorrect", "12/03/2009 10:11", read.getFiles().get(0).getDateStr());
+        assertEquals("The file version is incorrect", "/main/int/2", read.getFiles().get(0).getVersion());
+        assertEquals("The file comment is incorrect", "", read.getFiles().get(0).getComment());
+    }
+
     @Test
     public void assertSavedLogSetCanBeParsed() throws Exception {
 
@@ -73,4 +117,40 @@ public class UcmChangeLogSetTest {
         assertEquals("The first file name is incorrect", "file1", logs.get(0).getFiles().get(0).getName());
         assertEquals("The first version is incorrect", "version1", logs.get(0).getFiles().get(0).getVersion());
     }
+
+    @Test
+    public void assertIndexedLogSetIsReadLazily() throws Exception {
+        int count = ChangeLogIndex.LAZY_THRESHOLD + 500;
+        List<UcmActivity> activities = new ArrayList<UcmActivity>();
+        for (int i = 0; i < count; i++) {
+            UcmActivity activity = new UcmActivity();
+            activity.setName("activity" + i);
+            activity.setUser("user" + (i % 3));
+            UcmActivity subActivity = new UcmActivity();
+            subActivity.setName("sub" + i);
+            activity.addSubActivity(subActivity);
+            UcmActivity.File activityFile = new UcmActivity.File();
+            activityFile.setName("file" + i);
+            activity.addFile(activityFile);
+            activities.add(activity);
+        }
+        File tempLogFile = File.createTempFile("clearcase", "xml");
+        tempLogFile.deleteOnExit();
+        ChangeLogIndex.getFile(tempLogFile).deleteOnExit();
+        ChangeLogBinaryFile.getFile(tempLogFile).deleteOnExit();
+        UcmChangeLogSet.saveToChangeLog(tempLogFile, activities);
+
+        UcmChangeLogSet logSet = new UcmChangeLogParser().parse(null, tempLogFile);
+        assertTrue("The change log is not read lazily", logSet.isLazy());
+        assertEquals("The number of authors is incorrect", 3, logSet.getAuthorNames().size());
+        assertEquals("The number of files is incorrect", count, logSet.getElementCount());
+        List<UcmActivity> logs = logSet.getLogs();
+        assertEquals("The number of activities is incorrect", count, logs.size());
+        for (int i = count - 1; i >= 0; i -= 97) {
+            assertEquals("The name is incorrect", "activity" + i, logs.get(i).getName());
+            assertEquals("The sub activity is incorrect", "sub" + i, logs.get(i).getSubActivities().get(0).getName());
+            assertEquals("The file is incorrect", "file" + i, logs.get(i).getFiles().get(0).getName());
+            assertSame("The parent is incorrect", logSet, logs.get(i).getParent());
+        }
+    }
 }
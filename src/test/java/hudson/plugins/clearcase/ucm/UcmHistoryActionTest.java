@@ -49,9 +49,14 @@ import hudson.plugins.clearcase.history.DestroySubBranchFilter;
 import hudson.plugins.clearcase.history.FileFilter;
 import hudson.plugins.clearcase.history.Filter;
 import hudson.plugins.clearcase.history.FilterChain;
+import hudson.plugins.clearcase.history.PollingCoordinator;
+import hudson.plugins.clearcase.ucm.model.Baseline;
+import hudson.plugins.clearcase.ucm.model.UcmSelector;
 import hudson.scm.ChangeLogSet;
+import hudson.util.StreamTaskListener;
 import hudson.util.VariableResolver;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
@@ -256,10 +261,11 @@ public class UcmHistoryActionTest extends AbstractWorkspaceTest {
         when(cleartool.lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull())).thenReturn(
                 new StringReader("\"Convert to Java 6\" " + "\"Release_3_3_jdk5\" " + "\"bob\" "
                         + "\"maven2_Release_3_3.20080421.154619 maven2_Release_3_3.20080421.163355\" "));
-        when(cleartool.lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull())).thenReturn(
-                new StringReader("\"Deliver maven2\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" "));
-        when(cleartool.lsactivity(eq("maven2_Release_3_3.20080421.163355"), (String) notNull(), (String) notNull())).thenReturn(
-                new StringReader("\"Deliver maven3\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" "));
+        when(
+                cleartool.lsactivity(eq(new String[] { "maven2_Release_3_3.20080421.154619", "maven2_Release_3_3.20080421.163355" }), (String) notNull(),
+                        (String) notNull())).thenReturn(
+                new StringReader("\"Deliver maven2\" " + "\"Release_3_3\" " + "\"doe\" " + "\"John Doe\" \n" + "\"Deliver maven3\" " + "\"Release_3_3\" "
+                        + "\"doe\" " + "\"John Doe\" \n"));
 
         UcmHistoryAction action = createUcmHistoryAction();
         List<ChangeLogSet.Entry> activities = action.getChanges(null, "IGNORED", "viewTag", new String[] { "Release_2_1_int" },
@@ -275,12 +281,14 @@ public class UcmHistoryActionTest extends AbstractWorkspaceTest {
         assertEquals("There should be 2 sub activities", 2, subActivities.size());
         assertEquals("Name of first sub activity is incorrect", "maven2_Release_3_3.20080421.154619", subActivities.get(0).getName());
         assertEquals("Name of second sub activity is incorrect", "maven2_Release_3_3.20080421.163355", subActivities.get(1).getName());
+        assertEquals("Headline of second sub activity is incorrect", "Deliver maven3", subActivities.get(1).getHeadline());
 
         verify(cleartool).lshistory(anyString(), (Date) isNull(), eq("IGNORED"), eq("Release_2_1_int"), eq(new String[] { "vobs/projects/Server" }),
                 eq(Boolean.FALSE), eq(Boolean.FALSE));
         verify(cleartool).lsactivity(eq("deliver.Release_3_3_jdk5.20080509.155359"), (String) notNull(), (String) notNull());
-        verify(cleartool).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
-        verify(cleartool).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
+        verify(cleartool).lsactivity(eq(new String[] { "maven2_Release_3_3.20080421.154619", "maven2_Release_3_3.20080421.163355" }), (String) notNull(),
+                (String) notNull());
+        verify(cleartool, times(0)).lsactivity(eq("maven2_Release_3_3.20080421.154619"), (String) notNull(), (String) notNull());
     }
 
     @Test
@@ -389,6 +397,31 @@ public class UcmHistoryActionTest extends AbstractWorkspaceTest {
         assertTrue("The hasChanges() method did not report a change", hasChange);
     }
 
+    @Test
+    public void assertBaselinesAreCheckedForEachActionSharingTheHistoryPoll() throws Exception {
+        when(cleartool.doesViewExist("viewTag")).thenReturn(Boolean.TRUE);
+        when(cleartool.getLauncher()).thenReturn(clearToolLauncher);
+        when(clearToolLauncher.getListener()).thenReturn(new StreamTaskListener(new ByteArrayOutputStream()));
+        when(cleartool.lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), anyBoolean(), anyBoolean())).thenReturn(
+                new StringReader(""));
+        Baseline[] baselines = { UcmSelector.parse("baseline:bl1@\\pvob", Baseline.class) };
+        Baseline[] rebasedBaselines = { UcmSelector.parse("baseline:bl2@\\pvob", Baseline.class) };
+        UcmHistoryAction unchanged = new UcmHistoryAction(cleartool, false, null, new UcmRevisionState(baselines, null, 0), new UcmRevisionState(
+                baselines, null, 0), null, null);
+        UcmHistoryAction rebased = new UcmHistoryAction(cleartool, false, null, new UcmRevisionState(baselines, null, 0), new UcmRevisionState(
+                rebasedBaselines, null, 0), null, null);
+        String configuration = "assertBaselinesAreCheckedForEachActionSharingTheHistoryPoll";
+        Date since = new Date();
+
+        assertFalse("The unchanged baselines reported a change", unchanged.hasChanges(PollingCoordinator.get(), configuration, since, "view", "viewTag",
+                new String[] { "branch" }, new String[] { "vobpath" }));
+        assertTrue("The rebase was not reported", rebased.hasChanges(PollingCoordinator.get(), configuration, since, "view", "viewTag",
+                new String[] { "branch" }, new String[] { "vobpath" }));
+        assertFalse("The unchanged baselines reported a change", unchanged.hasChanges(PollingCoordinator.get(), configuration, since, "view", "viewTag",
+                new String[] { "branch" }, new String[] { "vobpath" }));
+        verify(cleartool).lshistory(anyString(), any(Date.class), anyString(), anyString(), any(String[].class), anyBoolean(), anyBoolean());
+    }
+
     private UcmHistoryAction createUcmHistoryAction() {
         return new UcmHistoryAction(cleartool, false, null, null, null, null, null);
     }
@@ -24,8 +24,12 @@
 package hudson.plugins.clearcase.ucm.service;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.plugins.clearcase.ClearTool;
 import hudson.plugins.clearcase.ClearTool.DiffBlOptions;
@@ -49,8 +53,9 @@ import org.mockito.runners.MockitoJUnitRunner;
 public class BaselineServiceTest {
 
     @Mock(answer = Answers.RETURNS_SMART_NULLS)
-    ClearTool       ct;
-    BaselineService instance;
+    ClearTool        ct;
+    UcmMetadataCache cache;
+    BaselineService  instance;
 
     @Test
     public void compareTwoBaselines() throws IOException, InterruptedException {
@@ -65,6 +70,20 @@ public class BaselineServiceTest {
         assertThat(activities.getRight()).hasSize(1);
     }
 
+    @Test
+    public void compareIsMadeOnceForTheSameBaselines() throws IOException, InterruptedException {
+        Baseline from = UcmSelector.parse("b1@\\pvob", Baseline.class);
+        Baseline to = UcmSelector.parse("b2@\\pvob", Baseline.class);
+        when(ct.diffbl(eq(EnumSet.of(DiffBlOptions.ACTIVITIES)), eq("baseline:b1@\\pvob"), eq("baseline:b2@\\pvob"), anyString())).thenReturn(
+                new StringReader(">> act1@\\pvob \"Activity 1\""));
+        ActivitiesDelta[] deltas = instance.compare(new Baseline[] { from, to, from }, new Baseline[] { to, to, to });
+        assertThat(deltas[0].getRight()).hasSize(1);
+        assertThat(deltas[1]).isSameAs(ActivitiesDelta.EMPTY);
+        assertThat(deltas[2]).isSameAs(deltas[0]);
+        assertThat(instance.compare(from, to)).isSameAs(deltas[0]);
+        verify(ct, times(1)).diffbl(eq(EnumSet.of(DiffBlOptions.ACTIVITIES)), eq("baseline:b1@\\pvob"), eq("baseline:b2@\\pvob"), anyString());
+    }
+
     @Test
     public void getComponent() throws IOException, InterruptedException {
         Baseline baseline = UcmSelector.parse("baseline:name@\\pvob", Baseline.class);
@@ -74,9 +93,71 @@ public class BaselineServiceTest {
         assertThat(component.getPvob()).isEqualTo("\\pvob");
     }
 
+    @Test
+    public void getComponentsDescribesUnknownBaselinesTogether() throws IOException, InterruptedException {
+        Baseline known = UcmSelector.parse("baseline:known@\\pvob", Baseline.class);
+        known.setComponent(UcmSelector.parse("component:c0@\\pvob", Component.class));
+        Baseline bl1 = UcmSelector.parse("baseline:bl1@\\pvob", Baseline.class);
+        Baseline bl2 = UcmSelector.parse("baseline:bl2@\\pvob", Baseline.class);
+        when(ct.describe(eq("%[component]Xp\\n"), anyString(), eq(new String[] { "baseline:bl1@\\pvob", "baseline:bl2@\\pvob" }))).thenReturn(
+                new StringReader("component:c1@\\pvob\ncomponent:c2@\\pvob\n"));
+        Component[] components = instance.getComponents(known, bl1, bl2, bl1);
+        assertThat(components).hasSize(4);
+        assertThat(components[0].getName()).isEqualTo("c0");
+        assertThat(components[1].getName()).isEqualTo("c1");
+        assertThat(components[2].getName()).isEqualTo("c2");
+        assertThat(components[3]).isSameAs(components[1]);
+        verify(ct, never()).describe(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void getComponentsDescribesBaselinesOneByOneWhenTheBulkDescribeFails() throws IOException, InterruptedException {
+        Baseline bl1 = UcmSelector.parse("baseline:bl1@\\pvob", Baseline.class);
+        Baseline bl2 = UcmSelector.parse("baseline:bl2@\\pvob", Baseline.class);
+        when(ct.describe(eq("%[component]Xp\\n"), anyString(), any(String[].class))).thenThrow(new IOException("cleartool: Error: bl2 not found"));
+        when(ct.describe(eq("%[component]Xp"), anyString(), eq("baseline:bl1@\\pvob"))).thenReturn(new StringReader("component:c1@\\pvob"));
+        when(ct.describe(eq("%[component]Xp"), anyString(), eq("baseline:bl2@\\pvob"))).thenReturn(new StringReader("component:c2@\\pvob"));
+        Component[] components = instance.getComponents(bl1, bl2);
+        assertThat(components[0].getName()).isEqualTo("c1");
+        assertThat(components[1].getName()).isEqualTo("c2");
+    }
+
+    @Test
+    public void getComponentsLooksUpTheCacheOncePerBaseline() throws IOException, InterruptedException {
+        cache.put("baseline:bl1@\\pvob", UcmMetadataCache.Attribute.COMPONENT, "component:c1@\\pvob");
+        Baseline bl1 = UcmSelector.parse("baseline:bl1@\\pvob", Baseline.class);
+        Baseline bl2 = UcmSelector.parse("baseline:bl2@\\pvob", Baseline.class);
+        Baseline bl3 = UcmSelector.parse("baseline:bl3@\\pvob", Baseline.class);
+        when(ct.describe(eq("%[component]Xp\\n"), anyString(), eq(new String[] { "baseline:bl2@\\pvob", "baseline:bl3@\\pvob" }))).thenReturn(
+                new StringReader("component:c2@\\pvob\ncomponent:c3@\\pvob\n"));
+        Component[] components = instance.getComponents(bl1, bl2, bl3, bl2);
+        assertThat(components[0].getName()).isEqualTo("c1");
+        assertThat(components[1].getName()).isEqualTo("c2");
+        assertThat(components[2].getName()).isEqualTo("c3");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void getComponentIsSharedAcrossServices() throws IOException, InterruptedException {
+        when(ct.describe(eq("%[component]Xp"), anyString(), eq("baseline:name@\\pvob"))).thenReturn(new StringReader("component:cname@\\pvob"));
+        when(ct.lsbl("baseline:name@\\pvob", "%[depends_on_closure]Xp")).thenReturn("bl1@\\pvob bl2@\\pvob");
+        for (int i = 0; i < 2; i++) {
+            BaselineService service = new BaselineService(ct, cache);
+            Baseline baseline = service.parse("baseline:name@\\pvob");
+            assertThat(service.getComponent(baseline).getSelector()).isEqualTo("component:cname@\\pvob");
+            assertThat(service.getDependentBaselines(baseline)).hasSize(2);
+        }
+        verify(ct, times(1)).describe(eq("%[component]Xp"), anyString(), eq("baseline:name@\\pvob"));
+        verify(ct, times(1)).lsbl("baseline:name@\\pvob", "%[depends_on_closure]Xp");
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
     @Before
     public void setUp() {
-        instance = new BaselineService(ct);
+        cache = new UcmMetadataCache(100, 60, 100, 60);
+        instance = new BaselineService(ct, cache);
     }
 
 }
@@ -49,7 +49,7 @@ public class ComponentServiceTest {
 
     @Before
     public void setUp() {
-        instance = new ComponentService(ct);
+        instance = new ComponentService(ct, new UcmMetadataCache(100, 60, 100, 60));
     }
 
     @Test
@@ -52,7 +52,7 @@ public class StreamServiceTest {
 
     @Before
     public void setUp() {
-        instance = new StreamService(ct);
+        instance = new StreamService(ct, new UcmMetadataCache(100, 60, 0, 0));
     }
 
     @Test
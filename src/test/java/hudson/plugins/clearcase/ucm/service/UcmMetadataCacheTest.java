@@ -0,0 +1,36 @@
+package hudson.plugins.clearcase.ucm.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import hudson.plugins.clearcase.ucm.service.UcmMetadataCache.Attribute;
+
+import org.junit.Test;
+
+public class UcmMetadataCacheTest {
+
+    @Test
+    public void testMutableValuesAreNotSharedWhenDisabled() {
+        UcmMetadataCache cache = new UcmMetadataCache(100, 60, 100, 0);
+        cache.put("stream:s@\\pvob", Attribute.LATEST_BASELINES, "baseline:bl@\\pvob");
+        cache.put("baseline:bl@\\pvob", Attribute.COMPONENT, "component:c@\\pvob");
+        assertNull(cache.get("stream:s@\\pvob", Attribute.LATEST_BASELINES));
+        assertEquals("component:c@\\pvob", cache.get("baseline:bl@\\pvob", Attribute.COMPONENT));
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testValuesAreKeyedBySelectorAndAttribute() {
+        UcmMetadataCache cache = new UcmMetadataCache(100, 60, 100, 60);
+        cache.put("stream:s@\\pvob", Attribute.LATEST_BASELINES, "baseline:bl2@\\pvob");
+        cache.put("stream:s@\\pvob", Attribute.FOUNDATION_BASELINES, "baseline:bl1@\\pvob");
+        assertEquals("baseline:bl2@\\pvob", cache.get("stream:s@\\pvob", Attribute.LATEST_BASELINES));
+        assertEquals("baseline:bl1@\\pvob", cache.get("stream:s@\\pvob", Attribute.FOUNDATION_BASELINES));
+        assertNull(cache.get("stream:s@\\otherpvob", Attribute.LATEST_BASELINES));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -30,9 +30,14 @@ import hudson.plugins.clearcase.ClearCaseChangeLogEntry;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -155,6 +160,16 @@ public class ChangeLogEntryMergerTest {
         assertEquals("The date is incorrect in entry 3", createDate(10, 01, 22), mergedList.get(2).getDate());
     }
 
+    @Test
+    public void testSameResultAsComparingAllEntries() {
+        for (long seed = 0; seed < 50; seed++) {
+            int maxTimeDifference = (int) (seed % 5) * 1000;
+            List<String> expected = describe(mergeByComparingAllEntries(createRandomList(seed), maxTimeDifference));
+            List<String> actual = describe(new ChangeLogEntryMerger(maxTimeDifference).getMergedList(createRandomList(seed)));
+            assertEquals("Different merge for seed " + seed, expected, actual);
+        }
+    }
+
     @Test
     public void testTwoUsersOneCommit() {
         changeLogEntryMerger = new ChangeLogEntryMerger();
@@ -166,6 +181,73 @@ public class ChangeLogEntryMergerTest {
         assertEquals("The number of files are incorrect", 1, mergedList.get(1).getAffectedPaths().size());
     }
 
+    private List<ClearCaseChangeLogEntry> createRandomList(long seed) {
+        Random random = new Random(seed);
+        List<ClearCaseChangeLogEntry> entries = new ArrayList<ClearCaseChangeLogEntry>();
+        for (int i = 0; i < 300; i++) {
+            entries.add(new ClearCaseChangeLogEntry(createDate(10, random.nextInt(3), random.nextInt(60)), "user" + random.nextInt(3), "action", "comment"
+                    + random.nextInt(3), "file" + i, "version"));
+        }
+        return entries;
+    }
+
+    private List<String> describe(List<ClearCaseChangeLogEntry> entries) {
+        List<String> descriptions = new ArrayList<String>();
+        for (ClearCaseChangeLogEntry entry : entries) {
+            descriptions.add(entry.getDate().getTime() + " " + entry.getUser() + " " + entry.getComment() + " " + entry.getAffectedPaths());
+        }
+        return descriptions;
+    }
+
+    /**
+     * The original merge, which compares each entry with all the merged entries of its user
+     */
+    private List<ClearCaseChangeLogEntry> mergeByComparingAllEntries(List<ClearCaseChangeLogEntry> entries, int maxTimeDifferenceMillis) {
+        long maxTimeDifference = maxTimeDifferenceMillis + 1000;
+        Map<String, List<ClearCaseChangeLogEntry>> userEntries = new HashMap<String, List<ClearCaseChangeLogEntry>>();
+        Map<ClearCaseChangeLogEntry, Date[]> ranges = new HashMap<ClearCaseChangeLogEntry, Date[]>();
+        for (ClearCaseChangeLogEntry entry : entries) {
+            if (!userEntries.containsKey(entry.getUser())) {
+                userEntries.put(entry.getUser(), new ArrayList<ClearCaseChangeLogEntry>());
+            }
+            List<ClearCaseChangeLogEntry> merged = userEntries.get(entry.getUser());
+            boolean wasMerged = false;
+            for (ClearCaseChangeLogEntry stored : merged) {
+                Date[] range = ranges.get(stored);
+                if (stored.getComment().equals(entry.getComment())
+                        && (Math.abs(range[0].getTime() - entry.getDate().getTime()) < maxTimeDifference || Math.abs(range[1].getTime()
+                                - entry.getDate().getTime()) < maxTimeDifference)) {
+                    if (entry.getDate().after(range[1])) {
+                        range[1] = entry.getDate();
+                    } else if (entry.getDate().before(range[0])) {
+                        range[0] = entry.getDate();
+                    }
+                    stored.addElements(entry.getElements());
+                    wasMerged = true;
+                    break;
+                }
+            }
+            if (!wasMerged) {
+                merged.add(entry);
+                ranges.put(entry, new Date[] { entry.getDate(), entry.getDate() });
+            }
+        }
+        List<ClearCaseChangeLogEntry> result = new ArrayList<ClearCaseChangeLogEntry>();
+        for (String user : userEntries.keySet()) {
+            for (ClearCaseChangeLogEntry entry : userEntries.get(user)) {
+                entry.setDate(ranges.get(entry)[0]);
+                result.add(entry);
+            }
+        }
+        Collections.sort(result, new Comparator<ClearCaseChangeLogEntry>() {
+            @Override
+            public int compare(ClearCaseChangeLogEntry o1, ClearCaseChangeLogEntry o2) {
+                return o2.getDate().compareTo(o1.getDate());
+            }
+        });
+        return result;
+    }
+
     private Date createDate(int hour, int min, int sec) {
         Calendar calendar = Calendar.getInstance();
         calendar.clear();
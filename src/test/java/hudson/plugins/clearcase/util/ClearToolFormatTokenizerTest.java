@@ -0,0 +1,103 @@
+package hudson.plugins.clearcase.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.junit.Test;
+
+public class ClearToolFormatTokenizerTest {
+
+    private static final char[] ALPHABET = { '"', '"', ' ', '\t', 'a', 'b', '\n', '\r', '\u0085', '\u2028', '\u2029' };
+
+    @Test
+    public void testLshistoryLine() {
+        ClearToolFormatTokenizer tokenizer = new ClearToolFormatTokenizer(6);
+        assertThat(tokenizer.tokenize("\"20071015.151822\" \"qrameri\" \"create version\" \"Customer\\DataSet.xsd\" \"\\main\\sit_r6a\\1\"  \"mkelem\"")).isTrue();
+        assertThat(tokenizer.field(1)).isEqualTo("20071015.151822");
+        assertThat(tokenizer.field(2)).isEqualTo("qrameri");
+        assertThat(tokenizer.field(3)).isEqualTo("create version");
+        assertThat(tokenizer.field(4)).isEqualTo("Customer\\DataSet.xsd");
+        assertThat(tokenizer.field(5)).isEqualTo("\\main\\sit_r6a\\1");
+        assertThat(tokenizer.field(6)).isEqualTo("mkelem");
+    }
+
+    @Test
+    public void testTrimmedField() {
+        ClearToolFormatTokenizer tokenizer = new ClearToolFormatTokenizer(2);
+        assertThat(tokenizer.tokenize("\" a b \" \"  \"")).isTrue();
+        assertThat(tokenizer.field(1)).isEqualTo(" a b ");
+        assertThat(tokenizer.trimmedField(1)).isEqualTo("a b");
+        assertThat(tokenizer.trimmedField(2)).isEmpty();
+    }
+
+    @Test
+    public void testLinesWithoutFields() {
+        ClearToolFormatTokenizer tokenizer = new ClearToolFormatTokenizer(3);
+        assertThat(tokenizer.tokenize(null)).isFalse();
+        assertThat(tokenizer.tokenize("")).isFalse();
+        assertThat(tokenizer.tokenize("a comment")).isFalse();
+        assertThat(tokenizer.tokenize("\"a\" \"b\" c \"d\"")).isFalse();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFieldOfRejectedLine() {
+        ClearToolFormatTokenizer tokenizer = new ClearToolFormatTokenizer(1);
+        tokenizer.tokenize("no field");
+        tokenizer.field(1);
+    }
+
+    @Test
+    public void testQuotesInFields() {
+        ClearToolFormatTokenizer tokenizer = new ClearToolFormatTokenizer(2);
+        assertThat(tokenizer.tokenize("x \"a \"quoted\" b\" \"c\" \"d\" y")).isTrue();
+        assertThat(tokenizer.field(1)).isEqualTo("a \"quoted\" b\" \"c");
+        assertThat(tokenizer.field(2)).isEqualTo("d");
+    }
+
+    @Test
+    public void testLineTerminatorsInFields() {
+        ClearToolFormatTokenizer tokenizer = new ClearToolFormatTokenizer(2);
+        assertThat(tokenizer.tokenize("\"a\u2028b\" \"c\"")).isFalse();
+        assertThat(tokenizer.tokenize("\"a\u0085\" \"b\" \"c\"")).isTrue();
+        assertThat(tokenizer.field(1)).isEqualTo(" \"b");
+        assertThat(tokenizer.field(2)).isEqualTo("c");
+        assertThat(tokenizer.tokenize("\"a\"\n\"b\"")).isTrue();
+        assertThat(tokenizer.field(2)).isEqualTo("b");
+    }
+
+    @Test
+    public void testSameFieldsAsPattern() {
+        Random random = new Random(42);
+        for (int fieldCount = 1; fieldCount <= 7; fieldCount++) {
+            String[] elements = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                elements[i] = OutputFormat.USER_ID;
+            }
+            ClearToolFormatHandler handler = new ClearToolFormatHandler(elements);
+            ClearToolFormatTokenizer tokenizer = handler.createTokenizer();
+            for (int n = 0; n < 20000; n++) {
+                String line = randomLine(random);
+                Matcher matcher = handler.checkLine(line);
+                assertThat(tokenizer.tokenize(line)).as(line).isEqualTo(matcher != null);
+                if (matcher != null) {
+                    for (int i = 1; i <= fieldCount; i++) {
+                        assertThat(tokenizer.start(i)).as(line).isEqualTo(matcher.start(i));
+                        assertThat(tokenizer.end(i)).as(line).isEqualTo(matcher.end(i));
+                        assertThat(tokenizer.trimmedField(i)).as(line).isEqualTo(matcher.group(i).trim());
+                    }
+                }
+            }
+        }
+    }
+
+    private String randomLine(Random random) {
+        int length = random.nextInt(30);
+        StringBuilder line = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            line.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return line.toString();
+    }
+}
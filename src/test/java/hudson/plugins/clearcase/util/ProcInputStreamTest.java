@@ -0,0 +1,41 @@
+package hudson.plugins.clearcase.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.Proc;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProcInputStreamTest {
+    @Mock Proc proc;
+
+    @Test
+    public void testCloseAtEndWaitsForTermination() throws Exception {
+        when(proc.join()).thenReturn(1);
+        ProcInputStream instance = new ProcInputStream(proc, new ByteArrayInputStream("output".getBytes()));
+        assertThat(IOUtils.toString(instance)).isEqualTo("output");
+        instance.close();
+        verify(proc, never()).kill();
+        assertThat(instance.getExitCode()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCloseBeforeEndKillsProcess() throws Exception {
+        ProcInputStream instance = new ProcInputStream(proc, new ByteArrayInputStream("output".getBytes()));
+        assertThat(instance.read()).isEqualTo('o');
+        instance.close();
+        instance.close();
+        verify(proc).kill();
+        verify(proc, never()).join();
+        assertThat(instance.getExitCode()).isEqualTo(-1);
+    }
+}
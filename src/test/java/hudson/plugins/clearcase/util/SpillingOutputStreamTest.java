@@ -0,0 +1,42 @@
+package hudson.plugins.clearcase.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class SpillingOutputStreamTest {
+
+    @Test
+    public void testSmallOutputIsKeptInMemory() throws IOException {
+        SpillingOutputStream out = new SpillingOutputStream("test", 16);
+        out.write("line1\n".getBytes());
+        out.write('x');
+        assertFalse(out.isSpilled());
+        assertEquals("line1\nx", read(out));
+    }
+
+    @Test
+    public void testLargeOutputIsWrittenToATemporaryFile() throws IOException {
+        SpillingOutputStream out = new SpillingOutputStream("test", 16);
+        out.write("0123456789".getBytes());
+        out.write("abcdefghij".getBytes(), 0, 8);
+        assertTrue(out.isSpilled());
+        out.write('z');
+        assertEquals("0123456789abcdefghz", read(out));
+    }
+
+    private String read(SpillingOutputStream out) throws IOException {
+        Reader reader = out.getReader();
+        try {
+            return IOUtils.toString(reader);
+        } finally {
+            reader.close();
+        }
+    }
+}